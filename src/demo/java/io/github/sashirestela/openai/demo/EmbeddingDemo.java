@@ -3,6 +3,7 @@ package io.github.sashirestela.openai.demo;
 import io.github.sashirestela.openai.domain.embedding.EmbeddingBase64;
 import io.github.sashirestela.openai.domain.embedding.EmbeddingFloat;
 import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingVector;
 import io.github.sashirestela.openai.service.EmbeddingServices;
 
 import java.util.Arrays;
@@ -52,11 +53,28 @@ public class EmbeddingDemo extends AbstractDemo {
                 .forEach(System.out::println);
     }
 
+    public void demoCallEmbeddingVector() {
+        var embeddingRequest = EmbeddingRequest.builder()
+                .model(this.model)
+                .input(Arrays.asList(
+                        "shiny sun",
+                        "blue sky"))
+                .build();
+        var futureEmbedding = embeddingProvider.embeddings().createVector(embeddingRequest);
+        var embeddingResponse = futureEmbedding.join();
+        embeddingResponse.getData()
+                .stream()
+                .map(EmbeddingVector::getEmbedding)
+                .map(Arrays::toString)
+                .forEach(System.out::println);
+    }
+
     public static void main(String[] args) {
         var demo = new EmbeddingDemo("text-embedding-3-small");
 
         demo.addTitleAction("Call Embedding Float Format", demo::demoCallEmbeddingFloat);
         demo.addTitleAction("Call Embedding Base64 Format", demo::demoCallEmbeddingBase64);
+        demo.addTitleAction("Call Embedding Vector Format", demo::demoCallEmbeddingVector);
 
         demo.run();
     }
@@ -0,0 +1,278 @@
+package io.github.sashirestela.openai;
+
+import io.github.sashirestela.openai.common.function.FunctionExecutor;
+import io.github.sashirestela.openai.domain.assistant.ThreadCreateAndRunRequest;
+import io.github.sashirestela.openai.domain.assistant.ThreadRun;
+import io.github.sashirestela.openai.domain.assistant.ThreadRunRequest;
+import io.github.sashirestela.openai.domain.assistant.ThreadRunSubmitOutputRequest;
+import io.github.sashirestela.openai.domain.assistant.ThreadRunSubmitOutputRequest.ToolOutput;
+import io.github.sashirestela.openai.domain.assistant.events.EventName;
+import io.github.sashirestela.openai.domain.assistant.events.StreamEvent;
+import lombok.NonNull;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+
+/**
+ * Drives assistant runs through their 'requires_action' states.
+ * <p>
+ * The events of a run are published as they are received. When the run requires the outputs of
+ * tool calls, the functions start right away on the {@link FunctionExecutor}, in parallel, and once
+ * they have all returned and the current stream is over, the outputs are submitted in streaming
+ * mode and the events of the resumed run follow in the same publisher. The subscriber sees one
+ * sequence of events from the creation of the run to its terminal state, the run is never polled,
+ * and no thread waits for the server or the functions:
+ * </p>
+ *
+ * <pre>
+ * var driver = new AssistantRunDriver(openAI.streaming(), functionExecutor);
+ * driver.runPublisher(threadId, ThreadRunRequest.builder().assistantId(assistantId).build())
+ *         .subscribe(subscriber);
+ * </pre>
+ * <p>
+ * The demand of the subscriber is carried over from one stream to the next, so the events are read
+ * no faster than they are requested. Cancelling the subscription cancels the current stream and
+ * stops the run from being resumed. A failing function fails the publisher.
+ * </p>
+ */
+public class AssistantRunDriver {
+
+    private final OpenAIStreaming streaming;
+    private final FunctionExecutor functionExecutor;
+
+    /**
+     * Creates a driver.
+     *
+     * @param streaming        The streaming services sending the requests.
+     * @param functionExecutor Executor holding the functions the runs can call.
+     */
+    public AssistantRunDriver(@NonNull OpenAIStreaming streaming, @NonNull FunctionExecutor functionExecutor) {
+        this.streaming = streaming;
+        this.functionExecutor = functionExecutor;
+    }
+
+    /**
+     * Publishes the events of a new run of a thread, until the run reaches a terminal state.
+     *
+     * @param threadId The ID of the thread to run.
+     * @param request  The requirements to create a run.
+     * @return A publisher of the events, creating a new run for each subscription.
+     */
+    public Flow.Publisher<StreamEvent> runPublisher(@NonNull String threadId, @NonNull ThreadRunRequest request) {
+        return new RunPublisher(() -> streaming.threadRunPublisher(threadId, request));
+    }
+
+    /**
+     * Publishes the events of a new thread and its run, until the run reaches a terminal state.
+     *
+     * @param request The requirements to create a thread and run it.
+     * @return A publisher of the events, creating a new thread and run for each subscription.
+     */
+    public Flow.Publisher<StreamEvent> threadAndRunPublisher(@NonNull ThreadCreateAndRunRequest request) {
+        return new RunPublisher(() -> streaming.threadAndRunPublisher(request));
+    }
+
+    private final class RunPublisher implements Flow.Publisher<StreamEvent> {
+
+        private final Supplier<Flow.Publisher<StreamEvent>> firstStream;
+
+        RunPublisher(Supplier<Flow.Publisher<StreamEvent>> firstStream) {
+            this.firstStream = firstStream;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super StreamEvent> subscriber) {
+            Objects.requireNonNull(subscriber);
+            var subscription = new RunSubscription(subscriber);
+            subscriber.onSubscribe(subscription);
+            subscription.follow(firstStream.get());
+        }
+
+    }
+
+    /**
+     * Relays the events of the successive streams of a run to one subscriber.
+     */
+    private final class RunSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super StreamEvent> subscriber;
+        private long demand;
+        private Flow.Subscription upstream;
+        private CompletableFuture<ThreadRunSubmitOutputRequest> toolOutputs;
+        private String threadId;
+        private String runId;
+        private boolean finished;
+
+        RunSubscription(Flow.Subscriber<? super StreamEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            Flow.Subscription current;
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                if (n <= 0) {
+                    current = null;
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    current = upstream;
+                }
+            }
+            if (n <= 0) {
+                fail(new IllegalArgumentException("The number of requested events must be positive."));
+            } else if (current != null) {
+                current.request(n);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription current;
+            CompletableFuture<?> pending;
+            synchronized (this) {
+                finished = true;
+                current = upstream;
+                pending = toolOutputs;
+                upstream = null;
+            }
+            if (current != null) {
+                current.cancel();
+            }
+            if (pending != null) {
+                pending.cancel(true);
+            }
+        }
+
+        void follow(Flow.Publisher<StreamEvent> stream) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                toolOutputs = null;
+            }
+            stream.subscribe(new StreamSubscriber());
+        }
+
+        private void onEvent(StreamEvent event) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                demand--;
+            }
+            if (EventName.THREAD_RUN_REQUIRES_ACTION.equals(event.getName())
+                    && event.getData() instanceof ThreadRun) {
+                startTools((ThreadRun) event.getData());
+            }
+            subscriber.onNext(event);
+        }
+
+        private void startTools(ThreadRun threadRun) {
+            var requiredAction = threadRun.getRequiredAction();
+            if (requiredAction == null || requiredAction.getSubmitToolOutputs() == null) {
+                return;
+            }
+            var outputs = functionExecutor
+                    .executeAllAsync(requiredAction.getSubmitToolOutputs().getToolCalls(),
+                            (toolCallId, output) -> ToolOutput.builder().toolCallId(toolCallId).output(output).build())
+                    .thenApply(list -> ThreadRunSubmitOutputRequest.builder().toolOutputs(list).build());
+            synchronized (this) {
+                threadId = threadRun.getThreadId();
+                runId = threadRun.getId();
+                toolOutputs = outputs;
+            }
+        }
+
+        private void onStreamComplete() {
+            CompletableFuture<ThreadRunSubmitOutputRequest> pending;
+            String resumedThreadId;
+            String resumedRunId;
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                upstream = null;
+                pending = toolOutputs;
+                resumedThreadId = threadId;
+                resumedRunId = runId;
+                if (pending == null) {
+                    finished = true;
+                }
+            }
+            if (pending == null) {
+                subscriber.onComplete();
+                return;
+            }
+            pending.whenComplete((request, throwable) -> {
+                if (throwable != null) {
+                    fail(throwable);
+                } else {
+                    follow(streaming.toolOutputPublisher(resumedThreadId, resumedRunId, request));
+                }
+            });
+        }
+
+        private void fail(Throwable throwable) {
+            Flow.Subscription current;
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                current = upstream;
+                upstream = null;
+            }
+            if (current != null) {
+                current.cancel();
+            }
+            subscriber.onError(throwable);
+        }
+
+        /**
+         * Subscriber of one stream of the run.
+         */
+        private final class StreamSubscriber implements Flow.Subscriber<StreamEvent> {
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                long requested;
+                synchronized (RunSubscription.this) {
+                    if (finished) {
+                        requested = -1;
+                    } else {
+                        upstream = subscription;
+                        requested = demand;
+                    }
+                }
+                if (requested < 0) {
+                    subscription.cancel();
+                } else if (requested > 0) {
+                    subscription.request(requested);
+                }
+            }
+
+            @Override
+            public void onNext(StreamEvent event) {
+                onEvent(event);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                onStreamComplete();
+            }
+
+        }
+
+    }
+
+}
@@ -29,6 +29,7 @@ import io.github.sashirestela.openai.domain.embedding.EmbeddingBase64;
 import io.github.sashirestela.openai.domain.embedding.EmbeddingFloat;
 import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest;
 import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest.EncodingFormat;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingVector;
 import io.github.sashirestela.openai.domain.file.FileRequest;
 import io.github.sashirestela.openai.domain.file.FileRequest.PurposeType;
 import io.github.sashirestela.openai.domain.file.FileResponse;
@@ -374,6 +375,25 @@ public interface OpenAI {
         @POST
         CompletableFuture<Embedding<EmbeddingBase64>> createBase64Primitive(@Body EmbeddingRequest embeddingRequest);
 
+        /**
+         * Creates an embedding vector representing the input text (don't call it directly).
+         * 
+         * @param embeddingRequest The input text to embed and the model to use.
+         * @return Represents an embedding vector in a primitive float array.
+         */
+        @POST
+        CompletableFuture<Embedding<EmbeddingVector>> createVectorPrimitive(@Body EmbeddingRequest embeddingRequest);
+
+        /**
+         * Creates an embedding vector representing the input text (don't call it directly).
+         * 
+         * @param embeddingRequest The input text to embed and the model to use.
+         * @return Represents an embedding vector in a primitive float array, decoded from base64.
+         */
+        @POST
+        CompletableFuture<Embedding<EmbeddingVector>> createVectorBase64Primitive(
+                @Body EmbeddingRequest embeddingRequest);
+
         /**
          * Creates an embedding vector representing the input text.
          * 
@@ -396,6 +416,32 @@ public interface OpenAI {
             return createBase64Primitive(request);
         }
 
+        /**
+         * Creates an embedding vector representing the input text, read into a float[] without
+         * boxing each value. Preferred over {@link #create(EmbeddingRequest) create} for large
+         * volumes.
+         * 
+         * @param embeddingRequest The input text to embed and the model to use.
+         * @return Represents an embedding vector in a primitive float array.
+         */
+        default CompletableFuture<Embedding<EmbeddingVector>> createVector(@Body EmbeddingRequest embeddingRequest) {
+            var request = embeddingRequest.withEncodingFormat(EncodingFormat.FLOAT);
+            return createVectorPrimitive(request);
+        }
+
+        /**
+         * Creates an embedding vector representing the input text, received in base64 format, which is
+         * smaller on the wire, and decoded straight into a float[]. Preferred for large volumes.
+         * 
+         * @param embeddingRequest The input text to embed and the model to use.
+         * @return Represents an embedding vector in a primitive float array.
+         */
+        default CompletableFuture<Embedding<EmbeddingVector>> createVectorBase64(
+                @Body EmbeddingRequest embeddingRequest) {
+            var request = embeddingRequest.withEncodingFormat(EncodingFormat.BASE64);
+            return createVectorBase64Primitive(request);
+        }
+
     }
 
     /**
@@ -12,6 +12,8 @@ import io.github.sashirestela.cleverclient.annotation.Resource;
 import io.github.sashirestela.openai.common.DeletedObject;
 import io.github.sashirestela.openai.common.Page;
 import io.github.sashirestela.openai.common.PageRequest;
+import io.github.sashirestela.openai.common.function.FunctionExecutor;
+import io.github.sashirestela.openai.common.tool.ToolCall;
 import io.github.sashirestela.openai.domain.assistant.Assistant;
 import io.github.sashirestela.openai.domain.assistant.AssistantModifyRequest;
 import io.github.sashirestela.openai.domain.assistant.AssistantRequest;
@@ -30,6 +32,7 @@ import io.github.sashirestela.openai.domain.assistant.ThreadRunRequest;
 import io.github.sashirestela.openai.domain.assistant.ThreadRunStep;
 import io.github.sashirestela.openai.domain.assistant.ThreadRunStepQuery;
 import io.github.sashirestela.openai.domain.assistant.ThreadRunSubmitOutputRequest;
+import io.github.sashirestela.openai.domain.assistant.ThreadRunSubmitOutputRequest.ToolOutput;
 import io.github.sashirestela.openai.domain.assistant.VectorStore;
 import io.github.sashirestela.openai.domain.assistant.VectorStore.VectorStoreStatus;
 import io.github.sashirestela.openai.domain.assistant.VectorStoreFile;
@@ -474,6 +477,26 @@ public interface OpenAIBeta2 {
             return submitToolOutputPrimitive(threadId, runId, newRequest);
         }
 
+        /**
+         * Runs the tool calls required by a run and submits their outputs without streaming. The
+         * functions run in parallel as {@link FunctionExecutor#executeAllAsync(List, java.util.function.BiFunction)
+         * executeAllAsync} does, and no thread is blocked while waiting for them.
+         * 
+         * @param threadId         The ID of the thread to which this run belongs.
+         * @param runId            The ID of the run that requires the tool output submission.
+         * @param toolCalls        The tool calls required by the run.
+         * @param functionExecutor The executor holding the functions to call.
+         * @return The modified run object matching the specified ID.
+         */
+        default CompletableFuture<ThreadRun> submitToolOutput(String threadId, String runId, List<ToolCall> toolCalls,
+                FunctionExecutor functionExecutor) {
+            return functionExecutor
+                    .executeAllAsync(toolCalls,
+                            (toolCallId, output) -> ToolOutput.builder().toolCallId(toolCallId).output(output).build())
+                    .thenCompose(toolOutputs -> submitToolOutput(threadId, runId,
+                            ThreadRunSubmitOutputRequest.builder().toolOutputs(toolOutputs).build()));
+        }
+
         /**
          * Submit tool outputs to run without streaming and poll until a terminal status is reached.
          * 
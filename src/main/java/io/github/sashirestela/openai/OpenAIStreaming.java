@@ -0,0 +1,398 @@
+package io.github.sashirestela.openai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.github.sashirestela.cleverclient.annotation.StreamType;
+import io.github.sashirestela.cleverclient.http.HttpRequestData;
+import io.github.sashirestela.cleverclient.support.ContentType;
+import io.github.sashirestela.openai.common.StreamOptions;
+import io.github.sashirestela.openai.domain.assistant.ThreadCreateAndRunRequest;
+import io.github.sashirestela.openai.domain.assistant.ThreadRunRequest;
+import io.github.sashirestela.openai.domain.assistant.ThreadRunSubmitOutputRequest;
+import io.github.sashirestela.openai.domain.assistant.events.AssistantStreamEvent;
+import io.github.sashirestela.openai.domain.assistant.events.StreamEvent;
+import io.github.sashirestela.openai.domain.chat.Chat;
+import io.github.sashirestela.openai.domain.chat.ChatRequest;
+import io.github.sashirestela.openai.domain.completion.Completion;
+import io.github.sashirestela.openai.domain.completion.CompletionRequest;
+import io.github.sashirestela.openai.exception.OpenAIExceptionConverter;
+import io.github.sashirestela.openai.exception.OpenAIResponseInfo;
+import io.github.sashirestela.openai.exception.OpenAIResponseInfo.OpenAIErrorResponse;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import io.github.sashirestela.openai.support.Constant;
+import io.github.sashirestela.openai.support.SseParser;
+import io.github.sashirestela.openai.support.StreamDelta;
+import io.github.sashirestela.openai.support.StreamDeltaParser;
+import lombok.Builder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Low-allocation streaming of chat and completion responses.
+ * <p>
+ * The streams of {@link OpenAI.ChatCompletions#createStream(ChatRequest)} turn every chunk into a
+ * line string, a Json tree and a full {@code Chat} object. The methods of this class parse the
+ * Server-Sent Events straight from the response bytes instead, and hand a reusable
+ * {@link StreamDelta} view to the handler, which keeps allocations close to zero per token. The
+ * handler runs on the thread that reads the response, so it should not block; the next bytes are
+ * not requested until it returns.
+ * </p>
+ * <p>
+ * The publisher methods are non-blocking variants of every streaming service, emitting the same
+ * objects. Nothing is sent until the subscriber requests items, and the response body is read
+ * only as fast as the subscriber requests them, so many streams can be served by a few threads.
+ * </p>
+ * <p>
+ * Requests go through the same client, headers and request interceptor as the regular services,
+ * so the rate limits, retries and provider adaptations configured for them still apply.
+ * </p>
+ */
+public class OpenAIStreaming {
+
+    private static final String CHAT_COMPLETIONS_PATH = "/v1/chat/completions";
+    private static final String COMPLETIONS_PATH = "/v1/completions";
+    private static final String THREADS_PATH = "/v1/threads";
+    private static final String APPLICATION_JSON = "application/json";
+    private static final String TEXT_EVENT_STREAM = "text/event-stream";
+    private static final Map<String, String> ASSISTANT_HEADERS = Map.of(Constant.OPENAI_BETA_HEADER,
+            Constant.OPENAI_ASSISTANT_VERSION);
+    private static final Map<String, Class<?>> ASSISTANT_EVENT_TYPES = assistantEventTypes();
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final Map<String, String> headers;
+    private final UnaryOperator<HttpRequestData> requestInterceptor;
+    private final ObjectMapper objectMapper;
+    private final Consumer<Object> bodyInspector;
+    private final ObjectReader objectReader;
+
+    @Builder
+    public OpenAIStreaming(HttpClient httpClient, String baseUrl, Map<String, String> headers,
+            UnaryOperator<HttpRequestData> requestInterceptor, ObjectMapper objectMapper,
+            Consumer<Object> bodyInspector) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.headers = Optional.ofNullable(headers).orElse(Map.of());
+        this.requestInterceptor = requestInterceptor;
+        this.objectMapper = Optional.ofNullable(objectMapper).orElse(new ObjectMapper());
+        this.bodyInspector = bodyInspector;
+        this.objectReader = this.objectMapper.reader().without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    /**
+     * Creates a model response for the given chat conversation, delivering the deltas as they
+     * arrive.
+     *
+     * @param chatRequest Includes a list of messages comprising the conversation. Its 'stream'
+     *                    attribute is setted to true automatically.
+     * @param handler     Receives a reusable view of each choice delta and of the final usage.
+     * @return A future completed when the stream is over.
+     */
+    public CompletableFuture<Void> chatDeltas(ChatRequest chatRequest, Consumer<StreamDelta> handler) {
+        var request = OpenAI.updateRequest(chatRequest, Boolean.TRUE);
+        return stream(CHAT_COMPLETIONS_PATH, request, handler);
+    }
+
+    /**
+     * Creates a completion for the provided prompt, delivering the deltas as they arrive.
+     *
+     * @param completionRequest Includes the prompt(s) to generate completions for. Its 'stream'
+     *                          attribute is setted to true automatically.
+     * @param handler           Receives a reusable view of each choice delta and of the final
+     *                          usage. The generated text is exposed as its content.
+     * @return A future completed when the stream is over.
+     */
+    public CompletableFuture<Void> completionDeltas(CompletionRequest completionRequest,
+            Consumer<StreamDelta> handler) {
+        var request = completionRequest.withStream(Boolean.TRUE).withStreamOptions(StreamOptions.of(Boolean.TRUE));
+        return stream(COMPLETIONS_PATH, request, handler);
+    }
+
+    /**
+     * Publishes the chat completion chunks of the given conversation.
+     *
+     * @param chatRequest Includes a list of messages comprising the conversation. Its 'stream'
+     *                    attribute is setted to true automatically.
+     * @return A publisher of the chunks, sending a new request for each subscription.
+     */
+    public Flow.Publisher<Chat> chatPublisher(ChatRequest chatRequest) {
+        var request = OpenAI.updateRequest(chatRequest, Boolean.TRUE);
+        return publisher(CHAT_COMPLETIONS_PATH, request, Map.of(), dataDecoder(Chat.class));
+    }
+
+    /**
+     * Publishes the completion chunks of the provided prompt.
+     *
+     * @param completionRequest Includes the prompt(s) to generate completions for. Its 'stream'
+     *                          attribute is setted to true automatically.
+     * @return A publisher of the chunks, sending a new request for each subscription.
+     */
+    public Flow.Publisher<Completion> completionPublisher(CompletionRequest completionRequest) {
+        var request = completionRequest.withStream(Boolean.TRUE).withStreamOptions(StreamOptions.of(Boolean.TRUE));
+        return publisher(COMPLETIONS_PATH, request, Map.of(), dataDecoder(Completion.class));
+    }
+
+    /**
+     * Publishes the events of a new run of a thread.
+     *
+     * @param threadId The ID of the thread to run.
+     * @param request  The requirements to create a run. Its 'stream' attribute is setted to true
+     *                 automatically.
+     * @return A publisher of the events, sending a new request for each subscription.
+     */
+    public Flow.Publisher<StreamEvent> threadRunPublisher(String threadId, ThreadRunRequest request) {
+        var newRequest = request.withStream(Boolean.TRUE);
+        return publisher(THREADS_PATH + "/" + threadId + "/runs", newRequest, ASSISTANT_HEADERS, eventDecoder());
+    }
+
+    /**
+     * Publishes the events of a new thread and its run.
+     *
+     * @param request The requirements to create a thread and run it. Its 'stream' attribute is
+     *                setted to true automatically.
+     * @return A publisher of the events, sending a new request for each subscription.
+     */
+    public Flow.Publisher<StreamEvent> threadAndRunPublisher(ThreadCreateAndRunRequest request) {
+        var newRequest = request.withStream(Boolean.TRUE);
+        return publisher(THREADS_PATH + "/runs", newRequest, ASSISTANT_HEADERS, eventDecoder());
+    }
+
+    /**
+     * Publishes the events of a run resumed with the outputs of its tool calls.
+     *
+     * @param threadId The ID of the thread to which this run belongs.
+     * @param runId    The ID of the run that requires the tool output submission.
+     * @param request  The list of tool outputs. Its 'stream' attribute is setted to true
+     *                 automatically.
+     * @return A publisher of the events, sending a new request for each subscription.
+     */
+    public Flow.Publisher<StreamEvent> toolOutputPublisher(String threadId, String runId,
+            ThreadRunSubmitOutputRequest request) {
+        var newRequest = request.withStream(Boolean.TRUE);
+        var path = THREADS_PATH + "/" + threadId + "/runs/" + runId + "/submit_tool_outputs";
+        return publisher(path, newRequest, ASSISTANT_HEADERS, eventDecoder());
+    }
+
+    private CompletableFuture<Void> stream(String path, Object body, Consumer<StreamDelta> handler) {
+        var request = buildRequest(path, body);
+        var bodySubscriber = new AtomicReference<DeltaBodySubscriber>();
+        BodyHandler<Void> deltaHandler = responseInfo -> {
+            bodySubscriber.set(new DeltaBodySubscriber(handler));
+            return bodySubscriber.get();
+        };
+        var exchange = httpClient.sendAsync(request, checkedHandler(request, deltaHandler));
+        var result = exchange.thenApply(response -> (Void) null);
+        // Cancelling the returned future aborts the exchange, even on runtimes where cancelling the
+        // future of the HttpClient does not.
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+                Optional.ofNullable(bodySubscriber.get()).ifPresent(DeltaBodySubscriber::cancel);
+            }
+        });
+        return result;
+    }
+
+    private <T> Flow.Publisher<T> publisher(String path, Object body, Map<String, String> extraHeaders,
+            StreamPublisher.Decoder<T> decoder) {
+        return new StreamPublisher<>(bodyHandler -> {
+            var request = buildRequest(path, body, extraHeaders);
+            return httpClient.sendAsync(request, checkedHandler(request, bodyHandler));
+        }, decoder);
+    }
+
+    private <T> StreamPublisher.Decoder<T> dataDecoder(Class<T> type) {
+        var reader = objectReader.forType(type);
+        return (eventName, data, length) -> reader.readValue(data, 0, length);
+    }
+
+    private StreamPublisher.Decoder<StreamEvent> eventDecoder() {
+        return (eventName, data, length) -> {
+            var type = ASSISTANT_EVENT_TYPES.get(eventName);
+            if (type == null) {
+                return null;
+            }
+            Object value = type == String.class
+                    ? new String(data, 0, length, StandardCharsets.UTF_8)
+                    : objectReader.forType(type).readValue(data, 0, length);
+            return StreamEvent.of(eventName, value);
+        };
+    }
+
+    private static Map<String, Class<?>> assistantEventTypes() {
+        var types = new HashMap<String, Class<?>>();
+        for (var streamType : AssistantStreamEvent.class.getAnnotationsByType(StreamType.class)) {
+            for (var event : streamType.events()) {
+                types.put(event, streamType.type());
+            }
+        }
+        return types;
+    }
+
+    HttpRequest buildRequest(String path, Object body) {
+        return buildRequest(path, body, Map.of());
+    }
+
+    HttpRequest buildRequest(String path, Object body, Map<String, String> extraHeaders) {
+        if (bodyInspector != null) {
+            bodyInspector.accept(body);
+        }
+        var requestHeaders = new HashMap<>(headers);
+        requestHeaders.putAll(extraHeaders);
+        var requestData = HttpRequestData.builder()
+                .url(baseUrl + path)
+                .contentType(ContentType.APPLICATION_JSON)
+                .headers(requestHeaders)
+                .body(toJson(body))
+                .build();
+        if (requestInterceptor != null) {
+            requestData = requestInterceptor.apply(requestData);
+        }
+        var builder = HttpRequest.newBuilder(URI.create(requestData.getUrl()))
+                .header("Content-Type", APPLICATION_JSON)
+                .header("Accept", TEXT_EVENT_STREAM)
+                .POST(BodyPublishers.ofString((String) requestData.getBody()));
+        requestData.getHeaders().forEach(builder::header);
+        return builder.build();
+    }
+
+    /**
+     * Hands successful responses to the given handler, and turns the others into the same
+     * exceptions thrown by the regular services.
+     */
+    <T> BodyHandler<T> checkedHandler(HttpRequest request, BodyHandler<T> successHandler) {
+        return responseInfo -> {
+            if (responseInfo.statusCode() / 100 == 2) {
+                return successHandler.apply(responseInfo);
+            }
+            return BodySubscribers.mapping(BodySubscribers.ofString(StandardCharsets.UTF_8), errorBody -> {
+                throw OpenAIExceptionConverter.fromResponseInfo(responseInfo(request, responseInfo, errorBody));
+            });
+        };
+    }
+
+    private OpenAIResponseInfo responseInfo(HttpRequest request, ResponseInfo responseInfo, String errorBody) {
+        OpenAIErrorResponse errorResponse;
+        try {
+            errorResponse = objectMapper.readValue(errorBody, OpenAIErrorResponse.class);
+        } catch (JsonProcessingException e) {
+            errorResponse = null;
+        }
+        return OpenAIResponseInfo.builder()
+                .status(responseInfo.statusCode())
+                .errorResponse(errorResponse)
+                .httpMethod(request.method())
+                .url(request.uri().toString())
+                .responseHeaders(responseInfo.headers().map())
+                .requestHeaders(request.headers().map())
+                .build();
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new SimpleOpenAIException("Cannot serialize the request body.", e);
+        }
+    }
+
+    /**
+     * Feeds the response bytes to the parsers one buffer list at a time, so a slow handler slows
+     * down the reading of the socket instead of piling up data.
+     */
+    private static class DeltaBodySubscriber implements BodySubscriber<Void> {
+
+        private final CompletableFuture<Void> body = new CompletableFuture<>();
+        private final SseParser sseParser;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean cancelled;
+
+        DeltaBodySubscriber(Consumer<StreamDelta> handler) {
+            var deltaParser = new StreamDeltaParser();
+            this.sseParser = new SseParser((data, length) -> deltaParser.parse(data, 0, length, handler));
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (cancelled) {
+                subscription.cancel();
+                return;
+            }
+            subscription.request(1);
+        }
+
+        void cancel() {
+            cancelled = true;
+            var current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+            body.cancel(false);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (cancelled) {
+                return;
+            }
+            try {
+                for (var buffer : buffers) {
+                    sseParser.feed(buffer);
+                }
+            } catch (RuntimeException e) {
+                subscription.cancel();
+                body.completeExceptionally(e);
+                return;
+            }
+            if (sseParser.isDone()) {
+                body.complete(null);
+            }
+            // Keeps reading after the end marker, so the connection can be reused.
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                sseParser.finish();
+                body.complete(null);
+            } catch (RuntimeException e) {
+                body.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public CompletionStage<Void> getBody() {
+            return body;
+        }
+
+    }
+
+}
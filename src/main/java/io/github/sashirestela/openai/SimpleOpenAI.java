@@ -4,7 +4,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.sashirestela.openai.base.ClientConfig;
 import io.github.sashirestela.openai.base.OpenAIConfigurator;
 import io.github.sashirestela.openai.base.OpenAIProvider;
+import io.github.sashirestela.openai.base.RateLimitThrottler;
 import io.github.sashirestela.openai.base.RealtimeConfig;
+import io.github.sashirestela.openai.base.RetryPolicy;
 import io.github.sashirestela.openai.exception.SimpleOpenAIException;
 import io.github.sashirestela.openai.service.AssistantServices;
 import io.github.sashirestela.openai.service.AudioServices;
@@ -19,6 +21,7 @@ import io.github.sashirestela.openai.service.ModelServices;
 import io.github.sashirestela.openai.service.ModerationServices;
 import io.github.sashirestela.openai.service.RealtimeServices;
 import io.github.sashirestela.openai.service.SessionServices;
+import io.github.sashirestela.openai.service.StreamingServices;
 import io.github.sashirestela.openai.service.UploadServices;
 import io.github.sashirestela.openai.support.Constant;
 import lombok.Builder;
@@ -47,6 +50,7 @@ public class SimpleOpenAI extends OpenAIProvider implements
         ModerationServices,
         RealtimeServices,
         SessionServices,
+        StreamingServices,
         UploadServices {
 
     /**
@@ -60,10 +64,13 @@ public class SimpleOpenAI extends OpenAIProvider implements
      *                       default if not provided. Optional.
      * @param objectMapper   Provides Json conversions either to and from objects. Optional.
      * @param realtimeConfig Configuration for websocket Realtime API. Optional.
+     * @param throttler      Paces the requests to the rate limits of the API. Optional.
+     * @param retryPolicy    Retries the requests which fail for transient reasons. Optional.
      */
     @Builder
     public SimpleOpenAI(@NonNull String apiKey, String organizationId, String projectId, String baseUrl,
-            HttpClient httpClient, ObjectMapper objectMapper, RealtimeConfig realtimeConfig) {
+            HttpClient httpClient, ObjectMapper objectMapper, RealtimeConfig realtimeConfig,
+            RateLimitThrottler throttler, RetryPolicy retryPolicy) {
         super(StandardConfigurator.builder()
                 .apiKey(apiKey)
                 .organizationId(organizationId)
@@ -72,6 +79,8 @@ public class SimpleOpenAI extends OpenAIProvider implements
                 .httpClient(httpClient)
                 .objectMapper(objectMapper)
                 .realtimeConfig(realtimeConfig)
+                .throttler(throttler)
+                .retryPolicy(retryPolicy)
                 .build());
     }
 
@@ -180,6 +189,11 @@ public class SimpleOpenAI extends OpenAIProvider implements
         return this.realtime;
     }
 
+    @Override
+    public OpenAIStreaming streaming() {
+        return this.streaming;
+    }
+
     @SuperBuilder
     static class StandardConfigurator extends OpenAIConfigurator {
 
@@ -195,6 +209,8 @@ public class SimpleOpenAI extends OpenAIProvider implements
                     .httpClient(httpClient)
                     .objectMapper(objectMapper)
                     .realtimeConfig(makeRealtimeConfig())
+                    .throttler(throttler)
+                    .retryPolicy(retryPolicy)
                     .build();
         }
 
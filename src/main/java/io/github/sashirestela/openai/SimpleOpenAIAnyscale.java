@@ -5,6 +5,7 @@ import io.github.sashirestela.openai.base.ClientConfig;
 import io.github.sashirestela.openai.base.OpenAIConfigurator;
 import io.github.sashirestela.openai.base.OpenAIProvider;
 import io.github.sashirestela.openai.service.ChatCompletionServices;
+import io.github.sashirestela.openai.service.StreamingServices;
 import io.github.sashirestela.openai.support.Constant;
 import lombok.Builder;
 import lombok.NonNull;
@@ -18,7 +19,8 @@ import java.util.Optional;
  * The Anyscale OpenAI implementation which implements a subset of the standard services.
  */
 public class SimpleOpenAIAnyscale extends OpenAIProvider implements
-        ChatCompletionServices {
+        ChatCompletionServices,
+        StreamingServices {
 
     /**
      * Constructor used to generate a builder.
@@ -45,6 +47,11 @@ public class SimpleOpenAIAnyscale extends OpenAIProvider implements
         return getOrCreateService(OpenAI.ChatCompletions.class);
     }
 
+    @Override
+    public OpenAIStreaming streaming() {
+        return this.streaming;
+    }
+
     @SuperBuilder
     static class AnyscaleConfigurator extends OpenAIConfigurator {
 
@@ -6,8 +6,11 @@ import io.github.sashirestela.cleverclient.support.ContentType;
 import io.github.sashirestela.openai.base.ClientConfig;
 import io.github.sashirestela.openai.base.OpenAIConfigurator;
 import io.github.sashirestela.openai.base.OpenAIProvider;
+import io.github.sashirestela.openai.base.RateLimitThrottler;
+import io.github.sashirestela.openai.base.RetryPolicy;
 import io.github.sashirestela.openai.service.ChatCompletionServices;
 import io.github.sashirestela.openai.service.FileServices;
+import io.github.sashirestela.openai.service.StreamingServices;
 import io.github.sashirestela.openai.support.Constant;
 import lombok.Builder;
 import lombok.NonNull;
@@ -23,7 +26,8 @@ import java.util.regex.Pattern;
  */
 public class SimpleOpenAIAzure extends OpenAIProvider implements
         ChatCompletionServices,
-        FileServices {
+        FileServices,
+        StreamingServices {
 
     /**
      * Constructor used to generate a builder.
@@ -36,16 +40,21 @@ public class SimpleOpenAIAzure extends OpenAIProvider implements
      * @param httpClient   A {@link HttpClient HttpClient} object. One is created by default if not
      *                     provided. Optional.
      * @param objectMapper Provides Json conversions either to and from objects. Optional.
+     * @param throttler    Paces the requests to the rate limits of the deployment. Optional.
+     * @param retryPolicy  Retries the requests which fail for transient reasons. Optional.
      */
     @Builder
     public SimpleOpenAIAzure(@NonNull String apiKey, @NonNull String baseUrl, @NonNull String apiVersion,
-            HttpClient httpClient, ObjectMapper objectMapper) {
+            HttpClient httpClient, ObjectMapper objectMapper, RateLimitThrottler throttler,
+            RetryPolicy retryPolicy) {
         super(AzureConfigurator.builder()
                 .apiKey(apiKey)
                 .baseUrl(baseUrl)
                 .apiVersion(apiVersion)
                 .httpClient(httpClient)
                 .objectMapper(objectMapper)
+                .throttler(throttler)
+                .retryPolicy(retryPolicy)
                 .build());
     }
 
@@ -59,6 +68,11 @@ public class SimpleOpenAIAzure extends OpenAIProvider implements
         return getOrCreateService(OpenAI.Files.class);
     }
 
+    @Override
+    public OpenAIStreaming streaming() {
+        return this.streaming;
+    }
+
     @SuperBuilder
     static class AzureConfigurator extends OpenAIConfigurator {
 
@@ -72,6 +86,8 @@ public class SimpleOpenAIAzure extends OpenAIProvider implements
                     .httpClient(httpClient)
                     .requestInterceptor(makeRequestInterceptor())
                     .objectMapper(objectMapper)
+                    .throttler(throttler)
+                    .retryPolicy(retryPolicy)
                     .build();
         }
 
@@ -9,9 +9,12 @@ import io.github.sashirestela.openai.OpenAI.Models;
 import io.github.sashirestela.openai.base.ClientConfig;
 import io.github.sashirestela.openai.base.OpenAIConfigurator;
 import io.github.sashirestela.openai.base.OpenAIProvider;
+import io.github.sashirestela.openai.base.RateLimitThrottler;
+import io.github.sashirestela.openai.base.RetryPolicy;
 import io.github.sashirestela.openai.service.ChatCompletionServices;
 import io.github.sashirestela.openai.service.EmbeddingServices;
 import io.github.sashirestela.openai.service.ModelServices;
+import io.github.sashirestela.openai.service.StreamingServices;
 import io.github.sashirestela.openai.support.Constant;
 import lombok.Builder;
 import lombok.NonNull;
@@ -29,7 +32,8 @@ import java.util.function.UnaryOperator;
 public class SimpleOpenAIMistral extends OpenAIProvider implements
         ChatCompletionServices,
         EmbeddingServices,
-        ModelServices {
+        ModelServices,
+        StreamingServices {
 
     /**
      * Constructor used to generate a builder.
@@ -39,15 +43,19 @@ public class SimpleOpenAIMistral extends OpenAIProvider implements
      * @param httpClient   A {@link java.net.http.HttpClient HttpClient} object. One is created by
      *                     default if not provided. Optional.
      * @param objectMapper Provides Json conversions either to and from objects. Optional.
+     * @param throttler    Paces the requests to the rate limits of the API. Optional.
+     * @param retryPolicy  Retries the requests which fail for transient reasons. Optional.
      */
     @Builder
     public SimpleOpenAIMistral(@NonNull String apiKey, String baseUrl, HttpClient httpClient,
-            ObjectMapper objectMapper) {
+            ObjectMapper objectMapper, RateLimitThrottler throttler, RetryPolicy retryPolicy) {
         super(MistralConfigurator.builder()
                 .apiKey(apiKey)
                 .baseUrl(baseUrl)
                 .httpClient(httpClient)
                 .objectMapper(objectMapper)
+                .throttler(throttler)
+                .retryPolicy(retryPolicy)
                 .build());
     }
 
@@ -66,6 +74,11 @@ public class SimpleOpenAIMistral extends OpenAIProvider implements
         return getOrCreateService(OpenAI.Models.class);
     }
 
+    @Override
+    public OpenAIStreaming streaming() {
+        return this.streaming;
+    }
+
     @SuperBuilder
     static class MistralConfigurator extends OpenAIConfigurator {
 
@@ -77,6 +90,8 @@ public class SimpleOpenAIMistral extends OpenAIProvider implements
                     .httpClient(httpClient)
                     .requestInterceptor(makeRequestInterceptor())
                     .objectMapper(objectMapper)
+                    .throttler(throttler)
+                    .retryPolicy(retryPolicy)
                     .build();
         }
 
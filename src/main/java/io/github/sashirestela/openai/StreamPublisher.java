@@ -0,0 +1,293 @@
+package io.github.sashirestela.openai;
+
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import io.github.sashirestela.openai.support.SseParser;
+
+import java.io.IOException;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Publisher of the events of a Server-Sent Events response, with the subscriber's demand driving
+ * the reads of the socket.
+ * <p>
+ * Every subscription sends its own request once the first items are requested. The next buffers of
+ * the body are requested from the HttpClient only when the events already parsed were delivered and
+ * more are wanted, so a slow subscriber holds at most the events of one buffer list in memory and
+ * no thread waits for it. Cancelling the subscription cancels the exchange.
+ * </p>
+ *
+ * @param <T> Type of the published events.
+ */
+final class StreamPublisher<T> implements Flow.Publisher<T> {
+
+    private final Function<BodyHandler<Void>, CompletableFuture<?>> exchange;
+    private final Decoder<T> decoder;
+
+    /**
+     * Turns the payload of an event into the published item.
+     *
+     * @param <T> Type of the published events.
+     */
+    interface Decoder<T> {
+
+        /**
+         * Decodes one event.
+         *
+         * @param eventName Value of the 'event' field, or null if the event has none.
+         * @param data      Array holding the payload. It is reused for the next event.
+         * @param length    Number of payload bytes, starting at index 0.
+         * @return The item to publish, or null to skip the event.
+         * @throws IOException If the payload cannot be read.
+         */
+        T decode(String eventName, byte[] data, int length) throws IOException;
+
+    }
+
+    /**
+     * Creates a publisher.
+     *
+     * @param exchange Sends the request, reading a successful body with the given handler, and
+     *                 returns the future of the response.
+     * @param decoder  Turns each event into an item.
+     */
+    StreamPublisher(Function<BodyHandler<Void>, CompletableFuture<?>> exchange, Decoder<T> decoder) {
+        this.exchange = exchange;
+        this.decoder = decoder;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        subscriber.onSubscribe(new StreamSubscription(subscriber));
+    }
+
+    private final class StreamSubscription implements Flow.Subscription, BodySubscriber<Void>, SseParser.Listener {
+
+        private final Flow.Subscriber<? super T> downstream;
+        private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final CompletableFuture<Void> body = new CompletableFuture<>();
+        private final SseParser sseParser = new SseParser(this);
+        private volatile Flow.Subscription upstream;
+        private volatile CompletableFuture<?> response;
+        private volatile boolean awaitingBuffers;
+        private volatile boolean upstreamDone;
+        private volatile boolean cancelled;
+        private boolean terminated;
+
+        StreamSubscription(Flow.Subscriber<? super T> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void request(long n) {
+            if (cancelled) {
+                return;
+            }
+            if (n <= 0) {
+                cancelExchange();
+                fail(new IllegalArgumentException("The number of requested items must be positive: " + n));
+                return;
+            }
+            requested.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            if (started.compareAndSet(false, true)) {
+                start();
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            cancelExchange();
+            drain();
+        }
+
+        private void start() {
+            try {
+                response = exchange.apply(responseInfo -> this);
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            response.whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    fail(throwable instanceof CompletionException && throwable.getCause() != null
+                            ? throwable.getCause()
+                            : throwable);
+                }
+            });
+            if (cancelled) {
+                response.cancel(true);
+            }
+        }
+
+        private void cancelExchange() {
+            var subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            var future = response;
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            upstream = subscription;
+            if (cancelled) {
+                subscription.cancel();
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (upstreamDone || cancelled) {
+                // Remaining bytes after the end marker or the cancellation.
+                return;
+            }
+            try {
+                for (var buffer : buffers) {
+                    sseParser.feed(buffer);
+                }
+            } catch (RuntimeException e) {
+                upstream.cancel();
+                fail(e);
+                return;
+            }
+            if (sseParser.isDone()) {
+                upstreamDone = true;
+                // Reads the rest of the body, so the connection can be reused.
+                upstream.request(Long.MAX_VALUE);
+            }
+            awaitingBuffers = false;
+            drain();
+        }
+
+        @Override
+        public void onData(byte[] data, int length) {
+            T item;
+            try {
+                item = decoder.decode(sseParser.getEventName(), data, length);
+            } catch (IOException e) {
+                throw new SimpleOpenAIException("Cannot parse the stream event.", e);
+            }
+            if (item != null) {
+                queue.offer(item);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (!upstreamDone) {
+                try {
+                    sseParser.finish();
+                } catch (RuntimeException e) {
+                    body.completeExceptionally(e);
+                    fail(e);
+                    return;
+                }
+                upstreamDone = true;
+            }
+            body.complete(null);
+            drain();
+        }
+
+        @Override
+        public CompletionStage<Void> getBody() {
+            return body;
+        }
+
+        private void fail(Throwable throwable) {
+            failure.compareAndSet(null, throwable);
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            var missed = 1;
+            do {
+                if (!terminated) {
+                    emit();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Delivers the parsed events within the demand, then asks for more bytes if the demand is
+         * not met. Only runs in the drain loop, so the subscriber is never called concurrently.
+         */
+        private void emit() {
+            if (cancelled) {
+                terminated = true;
+                queue.clear();
+                return;
+            }
+            var throwable = failure.get();
+            if (throwable != null) {
+                terminated = true;
+                queue.clear();
+                downstream.onError(throwable);
+                return;
+            }
+            var wanted = requested.get();
+            var emitted = 0L;
+            while (emitted < wanted && !cancelled) {
+                var item = queue.poll();
+                if (item == null) {
+                    break;
+                }
+                downstream.onNext(item);
+                emitted++;
+            }
+            if (emitted > 0 && wanted != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+            if (cancelled || !queue.isEmpty()) {
+                return;
+            }
+            if (upstreamDone) {
+                terminated = true;
+                downstream.onComplete();
+                return;
+            }
+            var subscription = upstream;
+            if (subscription != null && requested.get() > 0 && !awaitingBuffers) {
+                awaitingBuffers = true;
+                subscription.request(1);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,331 @@
+package io.github.sashirestela.openai.base;
+
+import io.github.sashirestela.openai.common.Usage;
+import io.github.sashirestela.openai.domain.chat.Chat;
+import io.github.sashirestela.openai.domain.completion.Completion;
+import io.github.sashirestela.openai.domain.embedding.Embedding;
+import io.github.sashirestela.openai.exception.DeadlineExceededException;
+import io.github.sashirestela.openai.exception.DeadlineExceededException.Phase;
+import lombok.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Groups the calls made by a thread so they can be cancelled together.
+ * <p>
+ * Every service call runs in its own scope: cancelling the returned future, or closing the
+ * returned {@code Stream} or {@code InputStream}, cancels the HTTP exchanges of that call, which
+ * aborts the request and releases its connection, instead of only detaching the caller. A scope
+ * opened explicitly also takes in the calls made by the same thread until it is closed, and keeps
+ * the token usage reported by their responses, so the usage received before a cancellation is not
+ * lost:
+ * </p>
+ *
+ * <pre>
+ * try (var scope = CallScope.open()) {
+ *     var chatStream = openAI.chatCompletions().createStream(chatRequest).join();
+ *     ...
+ *     scope.cancel();
+ *     scope.getUsage().ifPresent(usage -&gt; ...);
+ * }
+ * </pre>
+ * <p>
+ * Closing a scope only stops taking in new calls; calls still in progress go on until they finish
+ * or the scope is cancelled. Streams only report their usage in the last chunk, so a stream
+ * cancelled before the end usually contributes none. A thread waiting with
+ * {@link #join(CompletableFuture)} cancels the call when it is interrupted. A scope opened with a
+ * {@link Deadline} bounds the duration of its calls, and cancels them with a
+ * {@link DeadlineExceededException} when a timeout is exceeded.
+ * </p>
+ */
+public final class CallScope implements AutoCloseable {
+
+    private static final ThreadLocal<CallScope> CURRENT = new ThreadLocal<>();
+
+    private final CallScope parent;
+    private final Deadline deadline;
+    private final Set<Runnable> aborts = new LinkedHashSet<>();
+    private volatile RuntimeException cancelCause;
+    private boolean closed;
+    private Runnable parentRegistration;
+    private int promptTokens;
+    private int completionTokens;
+    private int totalTokens;
+    private boolean hasUsage;
+
+    private CallScope(CallScope parent, Deadline deadline) {
+        this.parent = parent;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Opens a scope taking in the calls made by the current thread until it is closed. A scope
+     * opened within another one is cancelled with it, and keeps its deadline.
+     *
+     * @return The new scope.
+     */
+    public static CallScope open() {
+        var parent = CURRENT.get();
+        return open(parent, parent != null ? parent.deadline : null);
+    }
+
+    /**
+     * Opens a scope like {@link #open()} does, whose calls are bounded by the given deadline. The
+     * total timeout starts running now.
+     *
+     * @param deadline The timeouts of the calls.
+     * @return The new scope.
+     */
+    public static CallScope open(@NonNull Deadline deadline) {
+        var scope = open(CURRENT.get(), deadline);
+        var total = deadline.getTotal();
+        if (total != null) {
+            CompletableFuture.delayedExecutor(total.toNanos(), TimeUnit.NANOSECONDS)
+                    .execute(() -> scope.cancel(new DeadlineExceededException(Phase.TOTAL, total)));
+        }
+        return scope;
+    }
+
+    private static CallScope open(CallScope parent, Deadline deadline) {
+        var scope = new CallScope(parent, deadline);
+        if (parent != null) {
+            scope.parentRegistration = parent.onCancel(() -> scope.cancel(parent.cancelCause));
+        }
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Waits for the result of a call, cancelling it if the waiting thread is interrupted.
+     *
+     * @param <T>    Type of the result.
+     * @param future Future returned by a service method.
+     * @return The result of the call.
+     * @throws CancellationException If the call was cancelled or the thread interrupted, in which
+     *                               case the interrupt status is kept.
+     * @throws CompletionException   If the call failed.
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the call.");
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    static CallScope current() {
+        return CURRENT.get();
+    }
+
+    Deadline getDeadline() {
+        return deadline;
+    }
+
+    RuntimeException getCancelCause() {
+        return cancelCause;
+    }
+
+    synchronized int getPendingAborts() {
+        return aborts.size();
+    }
+
+    /**
+     * Cancels the calls of this scope, including the ones still to be made in it.
+     */
+    public void cancel() {
+        cancel(new CancellationException("The call scope was cancelled."));
+    }
+
+    void cancel(RuntimeException cause) {
+        List<Runnable> pending;
+        synchronized (this) {
+            if (cancelCause != null) {
+                return;
+            }
+            cancelCause = cause;
+            pending = new ArrayList<>(aborts);
+            aborts.clear();
+        }
+        pending.forEach(Runnable::run);
+        leaveParent();
+    }
+
+    /**
+     * Whether the scope was cancelled.
+     *
+     * @return True after {@link #cancel()} or once the deadline is exceeded.
+     */
+    public boolean isCancelled() {
+        return cancelCause != null;
+    }
+
+    /**
+     * Adds up the usage reported by the responses received in this scope so far.
+     *
+     * @return The usage, or empty if no response reported one.
+     */
+    public synchronized Optional<Usage> getUsage() {
+        return hasUsage ? Optional.of(Usage.of(promptTokens, completionTokens, totalTokens)) : Optional.empty();
+    }
+
+    /**
+     * Stops taking in the calls of the current thread, without cancelling the ones in progress.
+     * The parent scope lets go of this one once its calls are over.
+     */
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            CURRENT.set(parent);
+        }
+        boolean over;
+        synchronized (this) {
+            closed = true;
+            over = aborts.isEmpty();
+        }
+        if (over) {
+            leaveParent();
+        }
+    }
+
+    /**
+     * Registers an action that aborts part of a call. It runs right away if the scope is already
+     * cancelled.
+     *
+     * @return Removes the action once that part of the call is over, so the scope does not keep it.
+     */
+    Runnable onCancel(Runnable abort) {
+        Runnable registered = abort::run;
+        synchronized (this) {
+            if (cancelCause == null) {
+                aborts.add(registered);
+                return () -> remove(registered);
+            }
+        }
+        abort.run();
+        return () -> {
+        };
+    }
+
+    private void remove(Runnable registered) {
+        boolean over;
+        synchronized (this) {
+            over = aborts.remove(registered) && closed && aborts.isEmpty();
+        }
+        if (over) {
+            leaveParent();
+        }
+    }
+
+    private void leaveParent() {
+        Runnable registration;
+        synchronized (this) {
+            registration = parentRegistration;
+            parentRegistration = null;
+        }
+        if (registration != null) {
+            registration.run();
+        }
+    }
+
+    /**
+     * Attaches the result of a call to this scope: closing a stream cancels the scope, reading it to
+     * the end lets go of it, and the elements reporting a usage are counted.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T attach(T result) {
+        if (result instanceof Stream) {
+            var stream = (Stream<Object>) result;
+            var registration = onCancel(stream::close);
+            var elements = stream.spliterator();
+            var attached = new Spliterators.AbstractSpliterator<Object>(Long.MAX_VALUE, Spliterator.ORDERED) {
+
+                @Override
+                public boolean tryAdvance(Consumer<? super Object> action) {
+                    if (elements.tryAdvance(element -> {
+                        record(element);
+                        action.accept(element);
+                    })) {
+                        return true;
+                    }
+                    // A stream read to the end is over, even if it is never closed.
+                    registration.run();
+                    return false;
+                }
+
+            };
+            return (T) StreamSupport.stream(attached, false).onClose(stream::close).onClose(this::cancel);
+        }
+        if (result instanceof InputStream) {
+            var inputStream = (InputStream) result;
+            var registration = onCancel(() -> {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    // The exchange is being aborted anyway.
+                }
+            });
+            return (T) new FilterInputStream(inputStream) {
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        registration.run();
+                    }
+                }
+
+            };
+        }
+        record(result);
+        return result;
+    }
+
+    private void record(Object element) {
+        Usage usage = null;
+        if (element instanceof Chat) {
+            usage = ((Chat) element).getUsage();
+        } else if (element instanceof Completion) {
+            usage = ((Completion) element).getUsage();
+        } else if (element instanceof Embedding) {
+            usage = ((Embedding) element).getUsage();
+        }
+        if (usage != null) {
+            add(usage);
+        }
+    }
+
+    private void add(Usage usage) {
+        synchronized (this) {
+            promptTokens += Optional.ofNullable(usage.getPromptTokens()).orElse(0);
+            completionTokens += Optional.ofNullable(usage.getCompletionTokens()).orElse(0);
+            totalTokens += Optional.ofNullable(usage.getTotalTokens()).orElse(0);
+            hasUsage = true;
+        }
+        if (parent != null) {
+            parent.add(usage);
+        }
+    }
+
+}
@@ -75,4 +75,22 @@ public class ClientConfig {
      */
     private final RealtimeConfig realtimeConfig;
 
+    /**
+     * The {@link RateLimitThrottler} that paces requests according to the rate limits.
+     * <p>
+     * When present, Json requests wait on the client until the limits reported by the server can
+     * afford them.
+     * </p>
+     */
+    private final RateLimitThrottler throttler;
+
+    /**
+     * The {@link RetryPolicy} applied to requests which fail for transient reasons.
+     * <p>
+     * When present, rate limits, server errors and connection failures are retried with backoff
+     * before being reported.
+     * </p>
+     */
+    private final RetryPolicy retryPolicy;
+
 }
\ No newline at end of file
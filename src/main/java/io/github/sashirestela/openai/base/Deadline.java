@@ -0,0 +1,72 @@
+package io.github.sashirestela.openai.base;
+
+import io.github.sashirestela.openai.exception.DeadlineExceededException;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Timeouts bounding the calls made within a {@link CallScope}.
+ * <p>
+ * The total timeout runs from the opening of the scope and covers every call in it, retries and
+ * waits for the rate limits included. The first byte timeout bounds, for each request, the time
+ * until the first bytes of the response body arrive, so it also covers the connection and the
+ * generation of a whole non-streamed answer. The idle timeout bounds the silence between two
+ * chunks of a response body, which matters for streams. A timeout exceeded aborts the call with a
+ * {@link DeadlineExceededException}, which a stream being read throws as the cause of its error.
+ * The time to establish a connection alone can only be bounded by the {@code HttpClient}, see
+ * {@link SharedTransport}.
+ * </p>
+ *
+ * <pre>
+ * try (var scope = CallScope.open(Deadline.builder().total(Duration.ofSeconds(2)).build())) {
+ *     var chat = openAI.chatCompletions().create(chatRequest).join();
+ * }
+ * </pre>
+ */
+@Getter
+public class Deadline {
+
+    private final Duration total;
+    private final Duration firstByte;
+    private final Duration idle;
+
+    /**
+     * Constructor used to generate a builder.
+     *
+     * @param total     Maximum duration of all the calls of the scope. Optional.
+     * @param firstByte Maximum time from sending a request to receiving the first bytes of its
+     *                  response body. Optional.
+     * @param idle      Maximum time between two chunks of a response body. Optional.
+     */
+    @Builder
+    public Deadline(Duration total, Duration firstByte, Duration idle) {
+        this.total = checkPositive(total, "total");
+        this.firstByte = checkPositive(firstByte, "firstByte");
+        this.idle = checkPositive(idle, "idle");
+    }
+
+    /**
+     * Creates a deadline with a total timeout only.
+     *
+     * @param total Maximum duration of all the calls of the scope.
+     * @return The deadline.
+     */
+    public static Deadline of(Duration total) {
+        return new Deadline(total, null, null);
+    }
+
+    boolean watchesExchanges() {
+        return firstByte != null || idle != null;
+    }
+
+    private static Duration checkPositive(Duration timeout, String name) {
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new SimpleOpenAIException("The " + name + " timeout must be greater than zero.");
+        }
+        return timeout;
+    }
+
+}
@@ -0,0 +1,210 @@
+package io.github.sashirestela.openai.base;
+
+import io.github.sashirestela.openai.exception.DeadlineExceededException;
+import io.github.sashirestela.openai.exception.DeadlineExceededException.Phase;
+
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces the first byte and idle timeouts of a {@link Deadline} on one exchange.
+ * <p>
+ * The body subscriber of the response is wrapped to note when bytes arrive. The timers do not
+ * restart on every chunk: an idle check that finds recent activity is scheduled again for the
+ * remaining time. When a timeout is exceeded, the body subscriber receives the
+ * {@link DeadlineExceededException}, so a consumer blocked reading a stream wakes up, and the
+ * scope of the call is cancelled with it.
+ * </p>
+ */
+class DeadlineWatch {
+
+    private final CallScope scope;
+    private final Duration firstByte;
+    private final Duration idle;
+    private final CompletableFuture<Void> over = new CompletableFuture<>();
+    private volatile long lastActivity;
+    private volatile boolean receiving;
+    private volatile boolean finished;
+    private volatile RuntimeException abortCause;
+    private volatile WatchedSubscriber<?> subscriber;
+
+    DeadlineWatch(CallScope scope, Deadline deadline) {
+        this.scope = scope;
+        this.firstByte = deadline.getFirstByte();
+        this.idle = deadline.getIdle();
+    }
+
+    void start() {
+        if (firstByte != null) {
+            schedule(firstByte.toNanos(), this::checkFirstByte);
+        }
+    }
+
+    void finish() {
+        finished = true;
+        over.complete(null);
+    }
+
+    /**
+     * Runs an action once the body has ended or has been aborted.
+     */
+    void whenFinished(Runnable action) {
+        over.thenRun(action);
+    }
+
+    <T> BodyHandler<T> wrap(BodyHandler<T> handler) {
+        return responseInfo -> {
+            var watched = new WatchedSubscriber<>(handler.apply(responseInfo));
+            subscriber = watched;
+            var cause = abortCause;
+            if (cause != null) {
+                watched.fail(cause);
+            }
+            return watched;
+        };
+    }
+
+    private void onActivity() {
+        lastActivity = System.nanoTime();
+        if (!receiving) {
+            receiving = true;
+            if (idle != null) {
+                schedule(idle.toNanos(), this::checkIdle);
+            }
+        }
+    }
+
+    private void checkFirstByte() {
+        if (!finished && !receiving) {
+            expire(new DeadlineExceededException(Phase.FIRST_BYTE, firstByte));
+        }
+    }
+
+    private void checkIdle() {
+        if (finished) {
+            return;
+        }
+        var silence = System.nanoTime() - lastActivity;
+        if (silence >= idle.toNanos()) {
+            expire(new DeadlineExceededException(Phase.IDLE, idle));
+        } else {
+            schedule(idle.toNanos() - silence, this::checkIdle);
+        }
+    }
+
+    /**
+     * Ends the body with the given error, or the next one if the response has not arrived yet.
+     */
+    void abort(RuntimeException cause) {
+        abortCause = cause;
+        finish();
+        var watched = subscriber;
+        if (watched != null) {
+            watched.fail(cause);
+        }
+    }
+
+    private void expire(DeadlineExceededException exception) {
+        abort(exception);
+        scope.cancel(exception);
+    }
+
+    private static void schedule(long delayNanos, Runnable check) {
+        CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(check);
+    }
+
+    /**
+     * Forwards the body to the original subscriber, noting the activity, and lets the watch end it
+     * with an error. Signals are serialized, since the watch fails it from a timer thread.
+     */
+    private class WatchedSubscriber<T> implements BodySubscriber<T> {
+
+        private final BodySubscriber<T> delegate;
+        private Flow.Subscription subscription;
+        private boolean terminated;
+
+        WatchedSubscriber(BodySubscriber<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (terminated) {
+                subscription.cancel();
+                return;
+            }
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public synchronized void onNext(List<ByteBuffer> item) {
+            if (terminated) {
+                return;
+            }
+            onActivity();
+            delegate.onNext(item);
+        }
+
+        @Override
+        public synchronized void onError(Throwable throwable) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            finish();
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            finish();
+            delegate.onComplete();
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return delegate.getBody();
+        }
+
+        synchronized void fail(Throwable throwable) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            if (subscription != null) {
+                subscription.cancel();
+                delegate.onError(throwable);
+            } else {
+                // The delegate cannot be signalled before its subscription.
+                delegate.onSubscribe(new Flow.Subscription() {
+
+                    @Override
+                    public void request(long n) {
+                        // Nothing is ever delivered.
+                    }
+
+                    @Override
+                    public void cancel() {
+                        // Nothing to cancel.
+                    }
+
+                });
+                delegate.onError(throwable);
+            }
+        }
+
+    }
+
+}
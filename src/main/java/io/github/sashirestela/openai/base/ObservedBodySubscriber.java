@@ -0,0 +1,79 @@
+package io.github.sashirestela.openai.base;
+
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link BodySubscriber} that forwards to another subscriber and reports, exactly once, when the
+ * response body is over: fully read, failed, or cancelled by the consumer (e.g. a closed stream).
+ *
+ * @param <T> the response body type.
+ */
+class ObservedBodySubscriber<T> implements BodySubscriber<T> {
+
+    private final BodySubscriber<T> downstream;
+    private final Runnable onTerminate;
+    private final AtomicBoolean terminated = new AtomicBoolean();
+
+    ObservedBodySubscriber(BodySubscriber<T> downstream, Runnable onTerminate) {
+        this.downstream = downstream;
+        this.onTerminate = onTerminate;
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return downstream.getBody();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        downstream.onSubscribe(new Flow.Subscription() {
+
+            @Override
+            public void request(long n) {
+                subscription.request(n);
+            }
+
+            @Override
+            public void cancel() {
+                subscription.cancel();
+                terminate();
+            }
+
+        });
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        downstream.onNext(items);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        try {
+            downstream.onError(throwable);
+        } finally {
+            terminate();
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            downstream.onComplete();
+        } finally {
+            terminate();
+        }
+    }
+
+    private void terminate() {
+        if (terminated.compareAndSet(false, true)) {
+            onTerminate.run();
+        }
+    }
+
+}
@@ -52,6 +52,22 @@ public abstract class OpenAIConfigurator {
      */
     protected ObjectMapper objectMapper;
 
+    /**
+     * The {@link RateLimitThrottler} used to pace requests to the API rate limits.
+     * <p>
+     * If not specified, requests are sent as soon as they are issued.
+     * </p>
+     */
+    protected RateLimitThrottler throttler;
+
+    /**
+     * The {@link RetryPolicy} used to retry requests which fail for transient reasons.
+     * <p>
+     * If not specified, failures are reported on the first attempt.
+     * </p>
+     */
+    protected RetryPolicy retryPolicy;
+
     /**
      * Builds and returns a {@link ClientConfig} instance based on the current configuration.
      * <p>
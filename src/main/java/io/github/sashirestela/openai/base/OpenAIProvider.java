@@ -3,6 +3,7 @@ package io.github.sashirestela.openai.base;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.sashirestela.cleverclient.CleverClient;
 import io.github.sashirestela.openai.OpenAIRealtime;
+import io.github.sashirestela.openai.OpenAIStreaming;
 import io.github.sashirestela.slimvalidator.Validator;
 import io.github.sashirestela.slimvalidator.exception.ConstraintViolationException;
 import lombok.NonNull;
@@ -41,6 +42,14 @@ public abstract class OpenAIProvider {
      */
     protected OpenAIRealtime realtime;
 
+    /**
+     * The {@link OpenAIStreaming} instance responsible for low-allocation streaming.
+     * <p>
+     * It shares the HTTP client, headers and request interceptor of the {@code CleverClient}.
+     * </p>
+     */
+    protected OpenAIStreaming streaming;
+
     /**
      * A cache for storing service instances to ensure a single instance per service class.
      * <p>
@@ -54,6 +63,7 @@ public abstract class OpenAIProvider {
      * <p>
      * Initializes the {@link CleverClient} and {@link OpenAIRealtime} instances based on the provided
      * {@link OpenAIConfigurator}. If no custom {@code HttpClient} is configured, a default client is used.
+     * Many providers can share one client, see {@link SharedTransport}.
      * </p>
      *
      * @param configurator the configurator containing necessary configuration settings
@@ -61,15 +71,19 @@ public abstract class OpenAIProvider {
      */
     protected OpenAIProvider(@NonNull OpenAIConfigurator configurator) {
         var clientConfig = configurator.buildConfig();
-        var httpClient = Optional.ofNullable(clientConfig.getHttpClient()).orElse(HttpClient.newHttpClient());
-        this.cleverClient = buildClient(clientConfig, httpClient);
+        var httpClient = Optional.ofNullable(clientConfig.getHttpClient()).orElseGet(HttpClient::newHttpClient);
+        var decoratedClient = decorate(clientConfig, httpClient);
+        this.cleverClient = buildClient(clientConfig, decoratedClient);
         this.realtime = buildRealtime(clientConfig, httpClient);
+        this.streaming = buildStreaming(clientConfig, decoratedClient);
     }
 
     /**
      * Retrieves an existing service instance or creates a new one if it does not exist.
      * <p>
-     * This method ensures that only one instance of each service class is created and reused.
+     * This method ensures that only one instance of each service class is created and reused. Each
+     * method of the service runs in its own {@link CallScope}, so cancelling the returned future or
+     * closing the returned stream aborts the HTTP exchange.
      * </p>
      *
      * @param <T>          the type of the service
@@ -78,7 +92,8 @@ public abstract class OpenAIProvider {
      */
     @SuppressWarnings("unchecked")
     protected <T> T getOrCreateService(Class<T> serviceClass) {
-        return (T) serviceCache.computeIfAbsent(serviceClass, key -> cleverClient.create(serviceClass));
+        return (T) serviceCache.computeIfAbsent(serviceClass,
+                key -> ScopedServices.wrap(serviceClass, cleverClient.create(serviceClass)));
     }
 
     /**
@@ -105,6 +120,29 @@ public abstract class OpenAIProvider {
                 .build();
     }
 
+    /**
+     * Wraps the {@link HttpClient} with the transport features enabled in the configuration.
+     * <p>
+     * The exchanges are always registered in the {@link CallScope} of the calling thread. The
+     * realtime websocket keeps using the plain client.
+     * </p>
+     *
+     * @param clientConfig the configuration settings for the client
+     * @param httpClient   the {@link HttpClient} to be decorated
+     * @return the decorated {@link HttpClient}
+     */
+    private HttpClient decorate(ClientConfig clientConfig, HttpClient httpClient) {
+        var decorated = httpClient;
+        if (clientConfig.getThrottler() != null) {
+            decorated = clientConfig.getThrottler().decorate(decorated);
+        }
+        // Retries go around the throttler, so every attempt waits for the rate limits again.
+        if (clientConfig.getRetryPolicy() != null) {
+            decorated = clientConfig.getRetryPolicy().decorate(decorated);
+        }
+        return new ScopedHttpClient(decorated);
+    }
+
     /**
      * Builds and configures the {@link OpenAIRealtime} instance based on the provided configuration.
      * <p>
@@ -127,6 +165,28 @@ public abstract class OpenAIProvider {
         return null;
     }
 
+    /**
+     * Builds the {@link OpenAIStreaming} instance based on the provided configuration.
+     * <p>
+     * The instance sends its requests like the {@code CleverClient} does, so it can be used with
+     * any provider whose chat or completion endpoints stream Server-Sent Events.
+     * </p>
+     *
+     * @param clientConfig the configuration settings for the client
+     * @param httpClient   the {@link HttpClient} to be used for HTTP requests
+     * @return a configured {@link OpenAIStreaming} instance
+     */
+    private OpenAIStreaming buildStreaming(ClientConfig clientConfig, HttpClient httpClient) {
+        return OpenAIStreaming.builder()
+                .httpClient(httpClient)
+                .baseUrl(clientConfig.getBaseUrl())
+                .headers(clientConfig.getHeaders())
+                .requestInterceptor(clientConfig.getRequestInterceptor())
+                .objectMapper(clientConfig.getObjectMapper())
+                .bodyInspector(bodyInspector())
+                .build();
+    }
+
     /**
      * Creates a {@link Consumer} that inspects and validates the request body.
      * <p>
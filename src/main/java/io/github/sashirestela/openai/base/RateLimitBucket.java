@@ -0,0 +1,273 @@
+package io.github.sashirestela.openai.base;
+
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Token-bucket state for one API key and model, fed by the {@code x-ratelimit-*} response headers.
+ * <p>
+ * Both the requests and the tokens buckets refill continuously: the server reports how much is
+ * left and how long it takes to be full again, which gives the refill rate. Waiting requests are
+ * admitted in arrival order as soon as both buckets can pay for the one at the head.
+ * </p>
+ */
+class RateLimitBucket {
+
+    static final String LIMIT_REQUESTS = "x-ratelimit-limit-requests";
+    static final String LIMIT_TOKENS = "x-ratelimit-limit-tokens";
+    static final String REMAINING_REQUESTS = "x-ratelimit-remaining-requests";
+    static final String REMAINING_TOKENS = "x-ratelimit-remaining-tokens";
+    static final String RESET_REQUESTS = "x-ratelimit-reset-requests";
+    static final String RESET_TOKENS = "x-ratelimit-reset-tokens";
+
+    private static final Pattern RESET_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+    private static final long DEFAULT_PAUSE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double NANOS_PER_MINUTE = 60e9;
+
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier clock;
+    private final Duration maxDelay;
+
+    private final Deque<Admission> waiting = new ArrayDeque<>();
+    private final Window requests = new Window();
+    private final Window tokens = new Window();
+    private long inFlightTokens;
+    private long pausedUntil;
+    private boolean drainScheduled;
+
+    RateLimitBucket(ScheduledExecutorService scheduler, LongSupplier clock, Duration maxDelay) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.maxDelay = maxDelay;
+        this.pausedUntil = clock.getAsLong();
+    }
+
+    /**
+     * Queues an exchange until the buckets can pay for it.
+     *
+     * @param cost   Estimated tokens of the request.
+     * @param start  Sends the request once admitted.
+     * @param result Future of the exchange, failed if the wait would exceed the maximum delay.
+     */
+    void submit(long cost, Runnable start, CompletableFuture<?> result) {
+        synchronized (this) {
+            waiting.addLast(new Admission(cost, start, result));
+        }
+        drain();
+    }
+
+    /**
+     * Replaces the local estimates with the state reported by the server.
+     *
+     * @param status  Response status code.
+     * @param headers Response headers.
+     * @param cost    Estimated tokens of the request which got this response.
+     */
+    void onResponse(int status, HttpHeaders headers, long cost) {
+        synchronized (this) {
+            inFlightTokens -= cost;
+            var now = clock.getAsLong();
+            requests.update(headers, LIMIT_REQUESTS, REMAINING_REQUESTS, RESET_REQUESTS, 0, now);
+            tokens.update(headers, LIMIT_TOKENS, REMAINING_TOKENS, RESET_TOKENS, inFlightTokens, now);
+            if (status == 429) {
+                var pause = Math.max(DEFAULT_PAUSE_NANOS,
+                        Math.max(requests.nanosUntil(1, now), tokens.nanosUntil(1, now)));
+                pausedUntil = Math.max(pausedUntil, now + pause);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Gives back the request and the tokens of a request which got no response at all.
+     *
+     * @param cost Estimated tokens of the failed request.
+     */
+    void onFailure(long cost) {
+        synchronized (this) {
+            inFlightTokens -= cost;
+            requests.give(1);
+            tokens.give(cost);
+        }
+        drain();
+    }
+
+    synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    private void drain() {
+        List<Admission> admitted = new ArrayList<>();
+        List<Admission> rejected = new ArrayList<>();
+        synchronized (this) {
+            var now = clock.getAsLong();
+            requests.refill(now);
+            tokens.refill(now);
+            long delay = 0;
+            while (!waiting.isEmpty()) {
+                var head = waiting.peekFirst();
+                var wait = Math.max(pausedUntil - now,
+                        Math.max(requests.nanosUntil(1, now), tokens.nanosUntil(head.cost, now)));
+                if (wait > 0 && maxDelay != null && wait > maxDelay.toNanos()) {
+                    rejected.add(waiting.pollFirst());
+                    continue;
+                }
+                if (wait > 0) {
+                    delay = wait;
+                    break;
+                }
+                waiting.pollFirst();
+                requests.take(1);
+                tokens.take(head.cost);
+                inFlightTokens += head.cost;
+                admitted.add(head);
+            }
+            if (delay > 0 && !drainScheduled) {
+                drainScheduled = true;
+                scheduler.schedule(this::scheduledDrain, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+        rejected.forEach(admission -> admission.result.completeExceptionally(
+                new SimpleOpenAIException("The request would wait longer than {0} ms for the rate limits.",
+                        String.valueOf(maxDelay.toMillis()), null)));
+        admitted.forEach(admission -> admission.start.run());
+    }
+
+    private void scheduledDrain() {
+        synchronized (this) {
+            drainScheduled = false;
+        }
+        drain();
+    }
+
+    static OptionalLong parseLong(HttpHeaders headers, String name) {
+        var value = headers.firstValue(name);
+        if (value.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(value.get().trim()));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Parses reset values such as '1s', '6m0s', '20ms' or '1h2m3.5s'.
+     *
+     * @param value The header value.
+     * @return The duration in nanoseconds, or zero if the value could not be parsed.
+     */
+    static long parseReset(String value) {
+        var matcher = RESET_PART.matcher(value);
+        double nanos = 0;
+        while (matcher.find()) {
+            var amount = Double.parseDouble(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "h":
+                    nanos += amount * 3600e9;
+                    break;
+                case "m":
+                    nanos += amount * 60e9;
+                    break;
+                case "s":
+                    nanos += amount * 1e9;
+                    break;
+                default:
+                    nanos += amount * 1e6;
+                    break;
+            }
+        }
+        return (long) nanos;
+    }
+
+    private static class Admission {
+
+        private final long cost;
+        private final Runnable start;
+        private final CompletableFuture<?> result;
+
+        Admission(long cost, Runnable start, CompletableFuture<?> result) {
+            this.cost = cost;
+            this.start = start;
+            this.result = result;
+        }
+
+    }
+
+    private static class Window {
+
+        private long limit = -1;
+        private double available;
+        private double refillPerNano;
+        private long updatedAt;
+
+        boolean isKnown() {
+            return limit >= 0;
+        }
+
+        void refill(long now) {
+            if (isKnown()) {
+                available = Math.min(limit, available + refillPerNano * (now - updatedAt));
+                updatedAt = now;
+            }
+        }
+
+        long nanosUntil(long amount, long now) {
+            if (!isKnown()) {
+                return 0;
+            }
+            refill(now);
+            // A cost above the limit is never affordable, so it waits for a full bucket.
+            var wanted = Math.min(amount, limit);
+            if (available >= wanted) {
+                return 0;
+            }
+            if (refillPerNano <= 0) {
+                return DEFAULT_PAUSE_NANOS;
+            }
+            return (long) Math.ceil((wanted - available) / refillPerNano);
+        }
+
+        void take(long amount) {
+            if (isKnown()) {
+                available -= amount;
+            }
+        }
+
+        void give(long amount) {
+            if (isKnown()) {
+                available = Math.min(limit, available + amount);
+            }
+        }
+
+        void update(HttpHeaders headers, String limitName, String remainingName, String resetName,
+                long inFlight, long now) {
+            var newLimit = parseLong(headers, limitName);
+            var remaining = parseLong(headers, remainingName);
+            if (newLimit.isEmpty() || remaining.isEmpty()) {
+                return;
+            }
+            limit = newLimit.getAsLong();
+            available = (double) remaining.getAsLong() - inFlight;
+            updatedAt = now;
+            var resetNanos = headers.firstValue(resetName).map(RateLimitBucket::parseReset).orElse(0L);
+            var missing = limit - remaining.getAsLong();
+            refillPerNano = resetNanos > 0 && missing > 0 ? (double) missing / resetNanos : limit / NANOS_PER_MINUTE;
+        }
+
+    }
+
+}
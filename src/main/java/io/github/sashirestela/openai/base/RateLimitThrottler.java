@@ -0,0 +1,161 @@
+package io.github.sashirestela.openai.base;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Builder;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Client-side throttling driven by the {@code x-ratelimit-*} headers of the OpenAI responses.
+ * <p>
+ * The throttler keeps token-bucket state per API key and model (or per deployment path when the
+ * body has no model, as in Azure). Before a request is sent, its cost in tokens is estimated and
+ * the request is admitted, delayed or queued until both the requests and the tokens buckets can
+ * pay for it. By default, the prompt tokens are estimated from the size of the serialized body, so
+ * the body is not parsed, only scanned once for the model and the requested output tokens. Every
+ * response, successful or not, resynchronizes the buckets with the server, so the client can run
+ * right at the limits instead of discovering them through a
+ * {@link io.github.sashirestela.openai.exception.OpenAIException.RateLimitException
+ * RateLimitException}. Only requests with a Json body are throttled.
+ * </p>
+ * <p>
+ * One instance can be shared by several providers using the same keys:
+ * </p>
+ *
+ * <pre>
+ * var throttler = RateLimitThrottler.builder().maxDelay(Duration.ofSeconds(30)).build();
+ * var openAI = SimpleOpenAI.builder().apiKey(apiKey).throttler(throttler).build();
+ * </pre>
+ */
+public class RateLimitThrottler {
+
+    private static final double CHARS_PER_TOKEN = 4.0;
+    private static final int TOKENS_PER_MESSAGE = 4;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final CostEstimator costEstimator;
+    private final Duration maxDelay;
+    private final int defaultCompletionTokens;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, RateLimitBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor used to generate a builder.
+     *
+     * @param costEstimator           Estimates the tokens a request will consume from its parsed
+     *                                body. By default, the size of the body stands for the prompt,
+     *                                plus the requested output tokens, without parsing the body.
+     *                                Optional.
+     * @param maxDelay                Maximum time a request may wait for the limits; requests which
+     *                                would wait longer fail immediately. Unbounded by default.
+     *                                Optional.
+     * @param defaultCompletionTokens Output tokens assumed when a request does not set
+     *                                'max_completion_tokens' nor 'max_tokens'. Default: 0. Optional.
+     */
+    @Builder
+    public RateLimitThrottler(CostEstimator costEstimator, Duration maxDelay, Integer defaultCompletionTokens) {
+        this.costEstimator = costEstimator;
+        this.maxDelay = maxDelay;
+        this.defaultCompletionTokens = Optional.ofNullable(defaultCompletionTokens).orElse(0);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "openai-throttler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Estimates the tokens of a request as the rate limiter of the server does: prompt tokens plus
+     * the maximum output tokens for every choice. It counts the text of the prompt only, and can be
+     * given as the cost estimator when a closer estimate is worth parsing every body.
+     *
+     * @param path Path of the endpoint, e.g. '/v1/chat/completions'.
+     * @param body Json body of the request.
+     * @return The estimated tokens.
+     */
+    public long estimateTokens(String path, JsonNode body) {
+        long promptTokens;
+        if (path.endsWith("/embeddings")) {
+            return toTokens(countChars(body.path("input")));
+        } else if (body.has("messages")) {
+            promptTokens = toTokens(countChars(body.path("messages")) + countChars(body.path("tools")))
+                    + (long) TOKENS_PER_MESSAGE * body.path("messages").size();
+        } else if (body.has("prompt")) {
+            promptTokens = toTokens(countChars(body.path("prompt")));
+        } else {
+            promptTokens = toTokens(countChars(body));
+        }
+        var maxOutput = body.path("max_completion_tokens")
+                .asLong(body.path("max_tokens").asLong(defaultCompletionTokens));
+        var choices = Math.max(1, body.path("n").asLong(1));
+        return promptTokens + maxOutput * choices;
+    }
+
+    HttpClient decorate(HttpClient httpClient) {
+        return new ThrottlingHttpClient(httpClient, this);
+    }
+
+    RateLimitBucket bucket(String key) {
+        return buckets.computeIfAbsent(key, k -> new RateLimitBucket(scheduler, System::nanoTime, maxDelay));
+    }
+
+    long estimate(String path, byte[] json, RequestBodies.Head head) {
+        if (costEstimator == null) {
+            var promptTokens = toTokens(head.length);
+            if (path.endsWith("/embeddings")) {
+                return promptTokens;
+            }
+            return promptTokens + head.maxOutputTokens(defaultCompletionTokens) * Math.max(1, head.choices);
+        }
+        try {
+            return Math.max(0, costEstimator.estimate(path, OBJECT_MAPPER.readTree(json)));
+        } catch (IOException e) {
+            return toTokens(head.length);
+        }
+    }
+
+    private static long toTokens(long chars) {
+        return (long) Math.ceil(chars / CHARS_PER_TOKEN);
+    }
+
+    private static long countChars(JsonNode node) {
+        if (node.isTextual()) {
+            return node.textValue().length();
+        }
+        if (node.isNumber()) {
+            // Inputs given as token arrays: one number is one token.
+            return (long) CHARS_PER_TOKEN;
+        }
+        long chars = 0;
+        for (var child : node) {
+            chars += countChars(child);
+        }
+        return chars;
+    }
+
+    /**
+     * Estimates the tokens that a request will consume from the tokens-per-minute limit.
+     */
+    @FunctionalInterface
+    public interface CostEstimator {
+
+        /**
+         * Estimates the tokens of a request.
+         *
+         * @param path Path of the endpoint, e.g. '/v1/chat/completions'.
+         * @param body Json body of the request, as it will be sent.
+         * @return The estimated tokens.
+         */
+        long estimate(String path, JsonNode body);
+
+    }
+
+}
@@ -0,0 +1,138 @@
+package io.github.sashirestela.openai.base;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Reads back the Json body of a request built by the {@code CleverClient}.
+ * <p>
+ * Json bodies are published from an already serialized string, which delivers its bytes on the
+ * calling thread as soon as it is subscribed, so reading them again neither blocks nor consumes
+ * the publisher, which can be subscribed once per send. A publisher which would deliver them later
+ * is not waited for.
+ * </p>
+ */
+final class RequestBodies {
+
+    static final int MAX_JSON_BYTES = 4 * 1024 * 1024;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private RequestBodies() {
+    }
+
+    static Optional<byte[]> readJson(HttpRequest request) {
+        var contentType = request.headers().firstValue("Content-Type").orElse("");
+        var publisher = request.bodyPublisher().orElse(null);
+        if (publisher == null || !contentType.contains("json")) {
+            return Optional.empty();
+        }
+        var length = publisher.contentLength();
+        if (length <= 0 || length > MAX_JSON_BYTES) {
+            return Optional.empty();
+        }
+        var collector = new BodyCollector((int) length);
+        publisher.subscribe(collector);
+        if (!collector.result.isDone() || collector.result.isCompletedExceptionally()) {
+            return Optional.empty();
+        }
+        return Optional.of(collector.result.join());
+    }
+
+    /**
+     * Reads the top-level fields of a Json object which the rate limits depend on, skipping over
+     * the values of the others, such as the messages, without building them.
+     *
+     * @param json The Json body.
+     * @return The fields, or empty if the body is not a Json object.
+     */
+    static Optional<Head> readHead(byte[] json) {
+        var head = new Head(json.length);
+        try (var parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return Optional.empty();
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var name = parser.currentName();
+                var token = parser.nextToken();
+                if ("model".equals(name) && token == JsonToken.VALUE_STRING) {
+                    head.model = parser.getText();
+                } else if ("max_completion_tokens".equals(name) && token == JsonToken.VALUE_NUMBER_INT) {
+                    head.maxCompletionTokens = parser.getLongValue();
+                } else if ("max_tokens".equals(name) && token == JsonToken.VALUE_NUMBER_INT) {
+                    head.maxTokens = parser.getLongValue();
+                } else if ("n".equals(name) && token == JsonToken.VALUE_NUMBER_INT) {
+                    head.choices = parser.getLongValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return Optional.of(head);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The size of a Json body and the top-level fields the rate limits depend on.
+     */
+    static final class Head {
+
+        final int length;
+        String model = "";
+        long maxCompletionTokens = -1;
+        long maxTokens = -1;
+        long choices = 1;
+
+        Head(int length) {
+            this.length = length;
+        }
+
+        long maxOutputTokens(long defaultTokens) {
+            return maxCompletionTokens >= 0 ? maxCompletionTokens : maxTokens >= 0 ? maxTokens : defaultTokens;
+        }
+
+    }
+
+    private static class BodyCollector implements Flow.Subscriber<ByteBuffer> {
+
+        private final ByteArrayOutputStream bytes;
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+        BodyCollector(int length) {
+            this.bytes = new ByteArrayOutputStream(length);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            var chunk = new byte[item.remaining()];
+            item.get(chunk);
+            bytes.write(chunk, 0, chunk.length);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(bytes.toByteArray());
+        }
+
+    }
+
+}
@@ -0,0 +1,202 @@
+package io.github.sashirestela.openai.base;
+
+import io.github.sashirestela.openai.exception.OpenAIException;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.Builder;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Policy to retry the requests which failed for transient reasons.
+ * <p>
+ * A request is retried when the server answers 408, 409, 429 or 5xx, or when the connection
+ * fails, as long as doing it again is safe: idempotent methods are always retried, while POSTs are
+ * only retried when the server did not process them (429, connection refused or connect timeout)
+ * or when it says so through the {@code x-should-retry} header, unless
+ * {@code retryAllPosts} is enabled. The server can also forbid a retry with the same header.
+ * </p>
+ * <p>
+ * The delay between attempts follows a decorrelated jitter, so the clients of a fleet do not retry
+ * in lockstep, and it is never shorter than the {@code retry-after-ms} or {@code retry-after}
+ * headers. The retried request reuses the body already serialized, and the responses which are
+ * going to be retried are discarded without being read.
+ * </p>
+ *
+ * <pre>
+ * var retryPolicy = RetryPolicy.builder().maxRetries(4).timeBudget(Duration.ofSeconds(30)).build();
+ * var openAI = SimpleOpenAI.builder().apiKey(apiKey).retryPolicy(retryPolicy).build();
+ * </pre>
+ */
+public class RetryPolicy {
+
+    static final String RETRY_AFTER = "retry-after";
+    static final String RETRY_AFTER_MS = "retry-after-ms";
+    static final String SHOULD_RETRY = "x-should-retry";
+
+    private static final int DEFAULT_MAX_RETRIES = 2;
+    private static final Duration DEFAULT_INITIAL_DELAY = Duration.ofMillis(500);
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(8);
+    private static final Duration DEFAULT_TIME_BUDGET = Duration.ofMinutes(1);
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(408, 409, 429, 500, 502, 503, 504);
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+
+    private final int maxRetries;
+    private final long initialDelayNanos;
+    private final long maxDelayNanos;
+    private final long timeBudgetNanos;
+    private final boolean retryAllPosts;
+
+    /**
+     * Constructor used to generate a builder.
+     *
+     * @param maxRetries    Maximum number of retries after the first attempt. Default: 2. Optional.
+     * @param initialDelay  Delay before the first retry. Default: 500 milliseconds. Optional.
+     * @param maxDelay      Upper bound of the jittered delay. Longer delays are only waited when the
+     *                      server asks for them. Default: 8 seconds. Optional.
+     * @param timeBudget    Maximum time from the first attempt to the start of the last one. A
+     *                      retry which would start later is not done. Default: 1 minute. Optional.
+     * @param retryAllPosts Whether POSTs are retried even when the server could have processed
+     *                      them, e.g. after a 500 or a connection reset. Default: false. Optional.
+     */
+    @Builder
+    public RetryPolicy(Integer maxRetries, Duration initialDelay, Duration maxDelay, Duration timeBudget,
+            Boolean retryAllPosts) {
+        this.maxRetries = Optional.ofNullable(maxRetries).orElse(DEFAULT_MAX_RETRIES);
+        this.initialDelayNanos = Optional.ofNullable(initialDelay).orElse(DEFAULT_INITIAL_DELAY).toNanos();
+        this.maxDelayNanos = Optional.ofNullable(maxDelay).orElse(DEFAULT_MAX_DELAY).toNanos();
+        this.timeBudgetNanos = Optional.ofNullable(timeBudget).orElse(DEFAULT_TIME_BUDGET).toNanos();
+        this.retryAllPosts = Optional.ofNullable(retryAllPosts).orElse(false);
+        if (this.maxRetries < 0) {
+            throw new SimpleOpenAIException("The maxRetries must not be negative.");
+        }
+        if (this.initialDelayNanos < 0 || this.maxDelayNanos < this.initialDelayNanos) {
+            throw new SimpleOpenAIException("The initialDelay must not be negative nor greater than maxDelay.");
+        }
+    }
+
+    /**
+     * Reads the delay requested by the server from the headers of a failed response.
+     *
+     * @param exception A failure thrown by any service, typically a
+     *                  {@link OpenAIException.RateLimitException RateLimitException}.
+     * @return The delay from {@code retry-after-ms} or {@code retry-after}, if any.
+     */
+    public static Optional<Duration> retryAfter(OpenAIException exception) {
+        var responseInfo = exception.getResponseInfo();
+        if (responseInfo == null || responseInfo.getResponseHeaders() == null) {
+            return Optional.empty();
+        }
+        Map<String, List<String>> responseHeaders = responseInfo.getResponseHeaders();
+        var delay = retryAfterNanos(name -> responseHeaders.entrySet()
+                .stream()
+                .filter(entry -> entry.getKey() != null && entry.getKey().equalsIgnoreCase(name))
+                .flatMap(entry -> entry.getValue().stream())
+                .findFirst());
+        return delay.isPresent() ? Optional.of(Duration.ofNanos(delay.getAsLong())) : Optional.empty();
+    }
+
+    HttpClient decorate(HttpClient httpClient) {
+        return new RetryingHttpClient(httpClient, this);
+    }
+
+    int getMaxRetries() {
+        return maxRetries;
+    }
+
+    long getTimeBudgetNanos() {
+        return timeBudgetNanos;
+    }
+
+    boolean isRetryable(String method, int status, HttpHeaders headers) {
+        if (status < 400) {
+            return false;
+        }
+        var shouldRetry = headers.firstValue(SHOULD_RETRY).orElse("");
+        if (shouldRetry.equalsIgnoreCase("false")) {
+            return false;
+        }
+        if (shouldRetry.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (!RETRYABLE_STATUSES.contains(status)) {
+            return false;
+        }
+        return status == 429 || retryAllPosts || IDEMPOTENT_METHODS.contains(method);
+    }
+
+    boolean isRetryable(String method, Throwable failure) {
+        if (failure instanceof ConnectException || failure instanceof HttpConnectTimeoutException) {
+            return true;
+        }
+        return failure instanceof IOException && (retryAllPosts || IDEMPOTENT_METHODS.contains(method));
+    }
+
+    /**
+     * Computes the delay of the next retry as a decorrelated jitter: a random value between the
+     * initial delay and three times the previous delay, capped by the maximum delay, and never
+     * below the delay requested by the server.
+     *
+     * @param previousNanos Delay before the previous retry, zero before the first one.
+     * @param headers       Headers of the failed response, empty for connection failures.
+     * @return The delay in nanoseconds.
+     */
+    long nextDelayNanos(long previousNanos, HttpHeaders headers) {
+        var upper = Math.min(maxDelayNanos, Math.max(initialDelayNanos, previousNanos) * 3);
+        var jitter = upper > initialDelayNanos
+                ? ThreadLocalRandom.current().nextLong(initialDelayNanos, upper + 1)
+                : initialDelayNanos;
+        var requested = retryAfterNanos(headers::firstValue);
+        return Math.max(jitter, requested.orElse(0));
+    }
+
+    private static OptionalLong retryAfterNanos(Function<String, Optional<String>> header) {
+        var millis = header.apply(RETRY_AFTER_MS);
+        if (millis.isPresent()) {
+            try {
+                return OptionalLong.of((long) (Double.parseDouble(millis.get().trim()) * 1e6));
+            } catch (NumberFormatException e) {
+                // Falls back to the standard header.
+            }
+        }
+        var value = header.apply(RETRY_AFTER);
+        if (value.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of((long) (Double.parseDouble(value.get().trim()) * 1e9));
+        } catch (NumberFormatException e) {
+            return retryAfterDate(value.get().trim());
+        }
+    }
+
+    private static OptionalLong retryAfterDate(String value) {
+        try {
+            var date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            var delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+            return OptionalLong.of(Math.max(0, delay.toNanos()));
+        } catch (DateTimeParseException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    static HttpHeaders noHeaders() {
+        return HttpHeaders.of(Collections.emptyMap(), (name, value) -> true);
+    }
+
+}
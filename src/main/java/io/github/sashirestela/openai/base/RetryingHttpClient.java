@@ -0,0 +1,133 @@
+package io.github.sashirestela.openai.base;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.PushPromiseHandler;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends again the requests which failed for transient reasons, according to a {@link RetryPolicy}.
+ * <p>
+ * The decision is taken as soon as the status and headers arrive: a response to be retried gets
+ * its body discarded, and any other response is handed to the original body handler, so streams
+ * and errors reach the {@code CleverClient} as usual once the retries are over.
+ * </p>
+ */
+class RetryingHttpClient extends ForwardingHttpClient {
+
+    private final RetryPolicy retryPolicy;
+
+    RetryingHttpClient(HttpClient delegate, RetryPolicy retryPolicy) {
+        super(delegate);
+        this.retryPolicy = retryPolicy;
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> handler,
+            PushPromiseHandler<T> pushPromiseHandler) {
+        var result = new CompletableFuture<HttpResponse<T>>();
+        new Exchange<>(request, handler, pushPromiseHandler, result).attempt();
+        return result;
+    }
+
+    private class Exchange<T> {
+
+        private final HttpRequest request;
+        private final BodyHandler<T> handler;
+        private final PushPromiseHandler<T> pushPromiseHandler;
+        private final CompletableFuture<HttpResponse<T>> result;
+        private final long startedAt = System.nanoTime();
+        private int retries;
+        private long previousDelay;
+        private volatile CompletableFuture<HttpResponse<T>> current;
+
+        Exchange(HttpRequest request, BodyHandler<T> handler, PushPromiseHandler<T> pushPromiseHandler,
+                CompletableFuture<HttpResponse<T>> result) {
+            this.request = request;
+            this.handler = handler;
+            this.pushPromiseHandler = pushPromiseHandler;
+            this.result = result;
+            result.whenComplete((response, throwable) -> {
+                var attempt = current;
+                if (result.isCancelled() && attempt != null) {
+                    attempt.cancel(true);
+                }
+            });
+        }
+
+        void attempt() {
+            if (result.isDone()) {
+                return;
+            }
+            var retryDelay = new long[] { -1 };
+            BodyHandler<T> retryingHandler = responseInfo -> {
+                retryDelay[0] = delayFor(retryPolicy.isRetryable(request.method(), responseInfo.statusCode(),
+                        responseInfo.headers()), responseInfo.headers());
+                if (retryDelay[0] >= 0) {
+                    return BodySubscribers.<T>replacing(null);
+                }
+                return handler.apply(responseInfo);
+            };
+            CompletableFuture<HttpResponse<T>> exchange;
+            try {
+                exchange = forward(request, retryingHandler, pushPromiseHandler);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            current = exchange;
+            exchange.whenComplete((response, throwable) -> {
+                if (throwable == null) {
+                    if (retryDelay[0] >= 0) {
+                        retryAfter(retryDelay[0]);
+                    } else {
+                        result.complete(response);
+                    }
+                    return;
+                }
+                var cause = unwrap(throwable);
+                var delay = delayFor(retryPolicy.isRetryable(request.method(), cause), RetryPolicy.noHeaders());
+                if (delay >= 0) {
+                    retryAfter(delay);
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            });
+        }
+
+        private long delayFor(boolean retryable, HttpHeaders headers) {
+            if (!retryable || retries >= retryPolicy.getMaxRetries()) {
+                return -1;
+            }
+            var delay = retryPolicy.nextDelayNanos(previousDelay, headers);
+            if (System.nanoTime() - startedAt + delay > retryPolicy.getTimeBudgetNanos()) {
+                return -1;
+            }
+            return delay;
+        }
+
+        private void retryAfter(long delay) {
+            retries++;
+            previousDelay = delay;
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(this::attempt);
+        }
+
+        private Throwable unwrap(Throwable throwable) {
+            var cause = throwable;
+            while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                    && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            return cause;
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+package io.github.sashirestela.openai.base;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.PushPromiseHandler;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Registers every exchange in the {@link CallScope} of the calling thread, so cancelling the scope
+ * cancels the exchange, and enforces the {@link Deadline} of the scope on it.
+ * <p>
+ * It is the outermost decoration, so a cancellation also stops the pending retries and the waits
+ * for the rate limits. The {@code CleverClient} sends its requests from the thread calling the
+ * service, which is where the scope is found. The future of the exchange fails with the cause of
+ * the cancellation, such as a {@code DeadlineExceededException}. The scope lets go of the exchange
+ * once it is over, so a long-lived scope does not keep every exchange it has seen.
+ * </p>
+ */
+class ScopedHttpClient extends ForwardingHttpClient {
+
+    ScopedHttpClient(HttpClient delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> handler,
+            PushPromiseHandler<T> pushPromiseHandler) {
+        var scope = CallScope.current();
+        if (scope == null) {
+            return forward(request, handler, pushPromiseHandler);
+        }
+        var deadline = scope.getDeadline();
+        var watch = deadline != null && deadline.watchesExchanges() ? new DeadlineWatch(scope, deadline) : null;
+        var exchange = forward(request, watch != null ? watch.wrap(handler) : handler, pushPromiseHandler);
+        var result = new CompletableFuture<HttpResponse<T>>();
+        var registration = scope.onCancel(() -> {
+            if (watch != null) {
+                watch.abort(scope.getCancelCause());
+            }
+            exchange.cancel(true);
+        });
+        exchange.whenComplete((response, throwable) -> {
+            if (throwable != null) {
+                registration.run();
+                var cause = scope.getCancelCause();
+                result.completeExceptionally(cause != null ? cause : throwable);
+            } else {
+                // A watched body can still be aborted until it ends.
+                if (watch != null) {
+                    watch.whenFinished(registration);
+                } else {
+                    registration.run();
+                }
+                result.complete(response);
+            }
+        });
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        if (watch != null) {
+            watch.start();
+        }
+        return result;
+    }
+
+}
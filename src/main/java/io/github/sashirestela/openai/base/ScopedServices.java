@@ -0,0 +1,89 @@
+package io.github.sashirestela.openai.base;
+
+import io.github.sashirestela.openai.exception.DeadlineExceededException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs every method of a service in its own {@link CallScope}.
+ * <p>
+ * The future returned to the caller cancels the scope when it is cancelled, and its result is
+ * attached to the scope, so closing a returned stream cancels it too. Cancelling the future
+ * created by the {@code CleverClient} would only detach the caller from the exchange. A call
+ * stopped by its deadline fails with the {@code DeadlineExceededException}.
+ * </p>
+ */
+final class ScopedServices {
+
+    private ScopedServices() {
+    }
+
+    static <T> T wrap(Class<T> serviceClass, T service) {
+        if (service == null) {
+            return null;
+        }
+        return serviceClass.cast(Proxy.newProxyInstance(serviceClass.getClassLoader(),
+                new Class<?>[] { serviceClass },
+                (proxy, method, args) -> invoke(service, method, args)));
+    }
+
+    private static Object invoke(Object service, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeDirectly(service, method, args);
+        }
+        Object result;
+        var scope = CallScope.open();
+        // Keeps the scope in its parent until the result is attached to it.
+        var attaching = scope.onCancel(() -> {
+        });
+        try {
+            result = invokeDirectly(service, method, args);
+        } catch (Throwable e) {
+            attaching.run();
+            throw e;
+        } finally {
+            scope.close();
+        }
+        if (!(result instanceof CompletableFuture)) {
+            attaching.run();
+            return result;
+        }
+        var scoped = new CompletableFuture<Object>();
+        ((CompletableFuture<?>) result).whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                completeAttached(scoped, scope, value);
+            } else {
+                // Reports why the scope was cancelled, whatever the CleverClient made of it.
+                var cause = scope.getCancelCause();
+                scoped.completeExceptionally(cause instanceof DeadlineExceededException ? cause : throwable);
+            }
+            attaching.run();
+        });
+        scoped.whenComplete((value, throwable) -> {
+            if (scoped.isCancelled()) {
+                scope.cancel();
+            }
+        });
+        return scoped;
+    }
+
+    private static void completeAttached(CompletableFuture<Object> scoped, CallScope scope, Object value) {
+        try {
+            scoped.complete(scope.attach(value));
+        } catch (RuntimeException e) {
+            scoped.completeExceptionally(e);
+        }
+    }
+
+    private static Object invokeDirectly(Object service, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(service, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+}
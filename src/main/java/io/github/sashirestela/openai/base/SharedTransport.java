@@ -0,0 +1,256 @@
+package io.github.sashirestela.openai.base;
+
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.Builder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.PushPromiseHandler;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A pooled HTTP transport meant to be shared by many OpenAI providers.
+ * <p>
+ * A multi-tenant application usually creates one provider per API key. Instead of letting each
+ * provider create its own {@link HttpClient} (each one with its own selector thread, executor and
+ * connection pool), all of them can reuse the client returned by {@link #getHttpClient()}. The
+ * credentials keep travelling as request headers of each provider, so tenants share connections
+ * but not keys:
+ * </p>
+ *
+ * <pre>
+ * var transport = SharedTransport.builder().maxConnections(128).build();
+ * transport.warmUp(Constant.OPENAI_BASE_URL);
+ * var openAI = SimpleOpenAI.builder().apiKey(tenantKey).httpClient(transport.getHttpClient()).build();
+ * </pre>
+ * <p>
+ * The transport prefers HTTP/2, so requests to the same host are multiplexed on one connection.
+ * Since the JDK client does not expose a connection cap, the transport caps the number of
+ * exchanges in flight instead, which bounds the connections opened when the server falls back to
+ * HTTP/1.1. An exchange stays in flight until its response body is fully read, fails or is
+ * cancelled, so streams should always be consumed or closed. Requests beyond the cap wait in
+ * arrival order.
+ * </p>
+ */
+public class SharedTransport implements AutoCloseable {
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 64;
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient pooledClient;
+    private final HttpClient transportClient;
+    private final ExecutorService ownedExecutor;
+    private final int maxConnections;
+
+    private final Deque<Runnable> pendingExchanges = new ArrayDeque<>();
+    private final CompletableFuture<Void> drained = new CompletableFuture<>();
+    private int inFlight;
+    private boolean closed;
+
+    /**
+     * Constructor used to generate a builder.
+     *
+     * @param httpClient     An already configured client to be shared. If not provided, one is
+     *                       created with the following parameters. Optional.
+     * @param version        Preferred HTTP version. Default: HTTP/2. Optional.
+     * @param connectTimeout Timeout to establish a connection. Default: 10 seconds. Optional.
+     * @param executor       Executor for the client's asynchronous tasks. If not provided, one is
+     *                       created and shut down when the transport is closed. Optional.
+     * @param maxConnections Maximum number of exchanges in flight at once. Default: 64. Optional.
+     */
+    @Builder
+    public SharedTransport(HttpClient httpClient, HttpClient.Version version, Duration connectTimeout,
+            Executor executor, Integer maxConnections) {
+        this.maxConnections = Optional.ofNullable(maxConnections).orElse(DEFAULT_MAX_CONNECTIONS);
+        if (this.maxConnections < 1) {
+            throw new SimpleOpenAIException("The maxConnections must be greater than zero.");
+        }
+        if (httpClient != null) {
+            this.ownedExecutor = null;
+            this.pooledClient = httpClient;
+        } else {
+            this.ownedExecutor = executor == null ? Executors.newCachedThreadPool(SharedTransport::newThread) : null;
+            this.pooledClient = HttpClient.newBuilder()
+                    .version(Optional.ofNullable(version).orElse(HttpClient.Version.HTTP_2))
+                    .connectTimeout(Optional.ofNullable(connectTimeout).orElse(DEFAULT_CONNECT_TIMEOUT))
+                    .executor(executor != null ? executor : ownedExecutor)
+                    .build();
+        }
+        this.transportClient = new TransportHttpClient(pooledClient);
+    }
+
+    /**
+     * Returns the client to be passed to every provider sharing this transport.
+     *
+     * @return A client which admits exchanges according to the transport limits.
+     */
+    public HttpClient getHttpClient() {
+        return transportClient;
+    }
+
+    /**
+     * Opens connections to the given hosts ahead of the first real request, so that the TLS and
+     * HTTP/2 handshakes are not paid by a user-facing call.
+     *
+     * @param urls Base urls of the hosts to connect to, e.g. 'https://api.openai.com'.
+     * @return A future completed when every host answered, whatever the status code was.
+     */
+    public CompletableFuture<Void> warmUp(String... urls) {
+        var warmUps = Arrays.stream(urls)
+                .map(url -> HttpRequest.newBuilder(URI.create(url))
+                        .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                        .build())
+                .map(request -> transportClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .handle((response, error) -> (Void) null))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(warmUps);
+    }
+
+    /**
+     * Number of exchanges currently in flight.
+     *
+     * @return The count of admitted exchanges whose body is not over yet.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Whether the transport stopped admitting new exchanges.
+     *
+     * @return True after {@link #close()} was called.
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops admitting new exchanges. Exchanges already in flight or waiting for admission are
+     * drained; use {@link #awaitTermination(Duration)} to wait for them.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        checkDrained();
+    }
+
+    /**
+     * Waits until every admitted exchange is over after the transport was closed.
+     *
+     * @param timeout Maximum time to wait.
+     * @return True if the transport was drained, false if the timeout elapsed first.
+     * @throws InterruptedException If the current thread was interrupted while waiting.
+     */
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        try {
+            drained.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new SimpleOpenAIException("Cannot drain the transport.", "", e);
+        }
+    }
+
+    private <T> void admit(Runnable exchange, CompletableFuture<T> result) {
+        synchronized (this) {
+            if (closed) {
+                result.completeExceptionally(new SimpleOpenAIException("The shared transport is closed."));
+                return;
+            }
+            if (inFlight >= maxConnections) {
+                pendingExchanges.addLast(exchange);
+                return;
+            }
+            inFlight++;
+        }
+        exchange.run();
+    }
+
+    private void finishExchange() {
+        Runnable next;
+        synchronized (this) {
+            next = pendingExchanges.pollFirst();
+            if (next == null) {
+                inFlight--;
+            }
+        }
+        if (next != null) {
+            next.run();
+        } else {
+            checkDrained();
+        }
+    }
+
+    private void checkDrained() {
+        synchronized (this) {
+            if (!closed || inFlight > 0 || !pendingExchanges.isEmpty()) {
+                return;
+            }
+        }
+        if (drained.complete(null) && ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private static Thread newThread(Runnable runnable) {
+        var thread = new Thread(runnable, "openai-transport");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private class TransportHttpClient extends ForwardingHttpClient {
+
+        TransportHttpClient(HttpClient delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> handler,
+                PushPromiseHandler<T> pushPromiseHandler) {
+            var result = new CompletableFuture<HttpResponse<T>>();
+            admit(() -> {
+                var finished = new AtomicBoolean();
+                Runnable finish = () -> {
+                    if (finished.compareAndSet(false, true)) {
+                        finishExchange();
+                    }
+                };
+                BodyHandler<T> observedHandler = info -> new ObservedBodySubscriber<>(handler.apply(info), finish);
+                try {
+                    forward(request, observedHandler, pushPromiseHandler).whenComplete((response, error) -> {
+                        if (error != null) {
+                            finish.run();
+                            result.completeExceptionally(error);
+                        } else {
+                            result.complete(response);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    finish.run();
+                    result.completeExceptionally(e);
+                }
+            }, result);
+            return result;
+        }
+
+    }
+
+}
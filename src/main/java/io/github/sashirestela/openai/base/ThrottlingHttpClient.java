@@ -0,0 +1,90 @@
+package io.github.sashirestela.openai.base;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.PushPromiseHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holds every Json request until the {@link RateLimitThrottler} admits it, and reports the
+ * {@code x-ratelimit-*} headers of its response as soon as they arrive, before the body is read.
+ */
+class ThrottlingHttpClient extends ForwardingHttpClient {
+
+    private final RateLimitThrottler throttler;
+
+    ThrottlingHttpClient(HttpClient delegate, RateLimitThrottler throttler) {
+        super(delegate);
+        this.throttler = throttler;
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> handler,
+            PushPromiseHandler<T> pushPromiseHandler) {
+        var json = RequestBodies.readJson(request).orElse(null);
+        var head = json != null ? RequestBodies.readHead(json).orElse(null) : null;
+        if (head == null) {
+            return forward(request, handler, pushPromiseHandler);
+        }
+        var path = request.uri().getPath();
+        var bucket = throttler.bucket(credential(request) + "|" + (head.model.isEmpty() ? path : head.model));
+        var cost = throttler.estimate(path, json, head);
+        var result = new CompletableFuture<HttpResponse<T>>();
+        bucket.submit(cost, () -> start(request, handler, pushPromiseHandler, bucket, cost, result), result);
+        return result;
+    }
+
+    private <T> void start(HttpRequest request, BodyHandler<T> handler, PushPromiseHandler<T> pushPromiseHandler,
+            RateLimitBucket bucket, long cost, CompletableFuture<HttpResponse<T>> result) {
+        if (result.isDone()) {
+            bucket.onFailure(cost);
+            return;
+        }
+        var responded = new AtomicBoolean();
+        BodyHandler<T> reportingHandler = responseInfo -> {
+            responded.set(true);
+            bucket.onResponse(responseInfo.statusCode(), responseInfo.headers(), cost);
+            return handler.apply(responseInfo);
+        };
+        CompletableFuture<HttpResponse<T>> exchange;
+        try {
+            exchange = forward(request, reportingHandler, pushPromiseHandler);
+        } catch (RuntimeException e) {
+            bucket.onFailure(cost);
+            result.completeExceptionally(e);
+            return;
+        }
+        exchange.whenComplete((response, throwable) -> {
+            if (throwable == null) {
+                result.complete(response);
+                return;
+            }
+            if (!responded.get()) {
+                bucket.onFailure(cost);
+            }
+            result.completeExceptionally(throwable);
+        });
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+    }
+
+    /**
+     * Identifies the API key of the request without keeping the key itself.
+     */
+    private static String credential(HttpRequest request) {
+        var headers = request.headers();
+        return headers.firstValue("Authorization")
+                .or(() -> headers.firstValue("api-key"))
+                .map(value -> UUID.nameUUIDFromBytes(value.getBytes(StandardCharsets.UTF_8)).toString())
+                .orElse("");
+    }
+
+}
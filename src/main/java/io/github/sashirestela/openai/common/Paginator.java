@@ -0,0 +1,291 @@
+package io.github.sashirestela.openai.common;
+
+import io.github.sashirestela.openai.base.CallScope;
+import lombok.NonNull;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks through all the pages of a paginated list, fetching them only as the items are consumed.
+ * <p>
+ * The request of the next page is sent as soon as a page arrives, so it is on its way while the
+ * items of the current page are consumed, and the wait between two pages is mostly hidden. Both the
+ * Stream and the Publisher stop fetching when the consumer stops early:
+ * </p>
+ *
+ * <pre>
+ * var paginator = Paginator.of(PageRequest.builder().limit(100).build(),
+ *         page -&gt; openAI.vectorStoreFiles().getList(vectorStoreId, page, null));
+ * try (var files = paginator.stream()) {
+ *     files.filter(file -&gt; file.getStatus() == FileStatus.FAILED).forEach(...);
+ * }
+ * var batches = Paginator.&lt;Batch&gt;of(after -&gt; openAI.batches().getList(after, 100)).stream();
+ * </pre>
+ * <p>
+ * With a request having 'before' but no 'after', the pages are walked backwards. Closing the Stream
+ * or cancelling the subscription cancels the page request in progress.
+ * </p>
+ *
+ * @param <T> Type of the items of the pages.
+ */
+public final class Paginator<T> {
+
+    private final Function<String, CompletableFuture<Page<T>>> fetcher;
+    private final String firstCursor;
+    private final boolean backwards;
+
+    private Paginator(Function<String, CompletableFuture<Page<T>>> fetcher, String firstCursor, boolean backwards) {
+        this.fetcher = fetcher;
+        this.firstCursor = firstCursor;
+        this.backwards = backwards;
+    }
+
+    /**
+     * Creates a paginator over an endpoint taking the cursor as an 'after' argument, like
+     * {@code Batches.getList}.
+     *
+     * @param <T>     Type of the items of the pages.
+     * @param fetcher Fetches the page following the given cursor, which is null for the first page.
+     * @return The paginator.
+     */
+    public static <T> Paginator<T> of(@NonNull Function<String, CompletableFuture<Page<T>>> fetcher) {
+        return new Paginator<>(fetcher, null, false);
+    }
+
+    /**
+     * Creates a paginator over an endpoint taking a {@link PageRequest}.
+     *
+     * @param <T>         Type of the items of the pages.
+     * @param pageRequest The request of the first page. The next pages are requested with the same
+     *                    limit and order.
+     * @param fetcher     Fetches the page of the given request.
+     * @return The paginator.
+     */
+    public static <T> Paginator<T> of(@NonNull PageRequest pageRequest,
+            @NonNull Function<PageRequest, CompletableFuture<Page<T>>> fetcher) {
+        var backwards = pageRequest.getAfter() == null && pageRequest.getBefore() != null;
+        return new Paginator<>(cursor -> {
+            var builder = PageRequest.builder().limit(pageRequest.getLimit()).order(pageRequest.getOrder());
+            return fetcher.apply(backwards ? builder.before(cursor).build() : builder.after(cursor).build());
+        }, backwards ? pageRequest.getBefore() : pageRequest.getAfter(), backwards);
+    }
+
+    /**
+     * Streams the items of all the pages. The first page is requested when the first item is.
+     *
+     * @return A sequential Stream of the items, which should be closed when not fully consumed.
+     */
+    public Stream<T> stream() {
+        var cursor = new Cursor();
+        return StreamSupport.stream(cursor, false).onClose(cursor::cancel);
+    }
+
+    /**
+     * Publishes the items of all the pages. The first page is requested when the first item is.
+     *
+     * @return A publisher of the items, walking the pages again for each subscription.
+     */
+    public Flow.Publisher<T> publisher() {
+        return subscriber -> {
+            Objects.requireNonNull(subscriber);
+            subscriber.onSubscribe(new PageSubscription(subscriber));
+        };
+    }
+
+    private CompletableFuture<Page<T>> fetch(String cursor) {
+        try {
+            return fetcher.apply(cursor);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Sends the request of the page following the given one, if any. A page without data has no
+     * cursor to follow.
+     */
+    private CompletableFuture<Page<T>> prefetch(Page<T> page) {
+        if (!page.isHasMore() || page.getData() == null || page.getData().isEmpty()) {
+            return null;
+        }
+        return fetch(backwards ? page.getFirstId() : page.getLastId());
+    }
+
+    private static <T> Iterator<T> items(Page<T> page) {
+        return page.getData() != null ? page.getData().iterator() : Collections.emptyIterator();
+    }
+
+    /**
+     * Blocking walk through the pages, for the Stream.
+     */
+    private final class Cursor extends Spliterators.AbstractSpliterator<T> {
+
+        private Iterator<T> items = Collections.emptyIterator();
+        private CompletableFuture<Page<T>> next;
+        private boolean started;
+
+        Cursor() {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (!started) {
+                started = true;
+                next = fetch(firstCursor);
+            }
+            while (!items.hasNext()) {
+                if (next == null) {
+                    return false;
+                }
+                var page = CallScope.join(next);
+                next = prefetch(page);
+                items = items(page);
+            }
+            action.accept(items.next());
+            return true;
+        }
+
+        void cancel() {
+            if (next != null) {
+                next.cancel(true);
+                next = null;
+            }
+            started = true;
+        }
+
+    }
+
+    /**
+     * Non-blocking walk through the pages, for the Publisher.
+     */
+    private final class PageSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicInteger wip = new AtomicInteger();
+        private Iterator<T> items = Collections.emptyIterator();
+        private CompletableFuture<Page<T>> next;
+        private boolean started;
+        private boolean finished;
+        private volatile CompletableFuture<Page<T>> waited;
+        private volatile Page<T> arrived;
+        private volatile long demand;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+
+        PageSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("The number of requested items must be positive.");
+            } else {
+                synchronized (this) {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void onPage(Page<T> page, Throwable throwable) {
+            if (throwable != null) {
+                error = throwable;
+            } else {
+                arrived = page;
+            }
+            waited = null;
+            drain();
+        }
+
+        /**
+         * Emits what the demand and the pages at hand allow. Only one thread runs the loop at a
+         * time; the calls made meanwhile make it run once more.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            var missed = 1;
+            do {
+                if (finished) {
+                    // Nothing left to do.
+                } else if (cancelled) {
+                    finished = true;
+                    cancelPending();
+                } else if (error != null) {
+                    finished = true;
+                    cancelPending();
+                    subscriber.onError(error);
+                } else if (waited == null) {
+                    // The page is set before the wait is cleared, so it is seen once the wait is.
+                    var page = arrived;
+                    if (page != null) {
+                        arrived = null;
+                        items = items(page);
+                        next = prefetch(page);
+                    }
+                    emit();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            while (demand > 0 && items.hasNext() && !cancelled) {
+                var item = items.next();
+                synchronized (this) {
+                    demand--;
+                }
+                subscriber.onNext(item);
+            }
+            if (cancelled || items.hasNext()) {
+                return;
+            }
+            if (!started) {
+                started = true;
+                next = fetch(firstCursor);
+            }
+            if (next == null) {
+                finished = true;
+                subscriber.onComplete();
+            } else if (demand > 0) {
+                var page = next;
+                next = null;
+                waited = page;
+                page.whenComplete(this::onPage);
+            }
+        }
+
+        private void cancelPending() {
+            var page = waited;
+            if (page != null) {
+                page.cancel(true);
+            }
+            if (next != null) {
+                next.cancel(true);
+                next = null;
+            }
+        }
+
+    }
+
+}
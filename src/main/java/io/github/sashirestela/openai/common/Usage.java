@@ -18,6 +18,16 @@ public class Usage {
     private CompletionTokensDetails completionTokensDetails;
     private PromptTokensDetails promptTokensDetails;
 
+    private Usage(Integer promptTokens, Integer completionTokens, Integer totalTokens) {
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.totalTokens = totalTokens;
+    }
+
+    public static Usage of(Integer promptTokens, Integer completionTokens, Integer totalTokens) {
+        return new Usage(promptTokens, completionTokens, totalTokens);
+    }
+
     @NoArgsConstructor
     @Getter
     @ToString
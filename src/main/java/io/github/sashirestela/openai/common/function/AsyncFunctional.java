@@ -0,0 +1,23 @@
+package io.github.sashirestela.openai.common.function;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A function whose result is computed asynchronously, for tools calling databases or HTTP APIs
+ * with non-blocking clients. {@link FunctionExecutor#executeAsync(FunctionCall)} composes the
+ * returned stage without holding a thread while it is pending.
+ */
+@FunctionalInterface
+public interface AsyncFunctional extends Functional {
+
+    CompletionStage<?> executeAsync();
+
+    /**
+     * Waits for the asynchronous result, for the callers of the synchronous executor methods.
+     */
+    @Override
+    default Object execute() {
+        return executeAsync().toCompletableFuture().join();
+    }
+
+}
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
 
+import java.time.Duration;
+
 @Getter
 @Builder
 public class FunctionDef {
@@ -19,6 +21,14 @@ public class FunctionDef {
 
     private Boolean strict;
 
+    private Duration timeout;
+
+    private Integer maxConcurrency;
+
+    private Duration cacheTtl;
+
+    private Integer cacheSize;
+
     @Builder.Default
     private SchemaConverter schemaConverter = JsonSchemaUtil.defaultConverter;
 
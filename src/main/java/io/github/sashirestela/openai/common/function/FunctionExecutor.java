@@ -1,37 +1,90 @@
 package io.github.sashirestela.openai.common.function;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import io.github.sashirestela.cleverclient.support.Configurator;
 import io.github.sashirestela.cleverclient.util.CommonUtil;
-import io.github.sashirestela.cleverclient.util.JsonUtil;
 import io.github.sashirestela.openai.common.tool.Tool;
 import io.github.sashirestela.openai.common.tool.ToolCall;
 import io.github.sashirestela.openai.common.tool.ToolChoice;
 import io.github.sashirestela.openai.common.tool.ToolChoiceOption;
 import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.NonNull;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 public class FunctionExecutor {
 
-    private Map<String, FunctionDef> mapFunctions = new HashMap<>();
+    private static final int DEFAULT_CACHE_SIZE = 1000;
 
+    private final ObjectMapper objectMapper;
+    // Replaced as a whole, so every call sees one consistent set of functions.
+    private volatile Map<String, Enrollment> enrollments = Map.of();
+    private volatile Executor executor;
+
+    /**
+     * Creates an executor reading the arguments and writing the results of the functions with the
+     * ObjectMapper configured for the client, which must be built first.
+     */
     public FunctionExecutor() {
+        this(Configurator.one().getObjectMapper());
     }
 
+    /**
+     * Creates an executor reading the arguments and writing the results of the functions with the
+     * ObjectMapper configured for the client, which must be built first.
+     *
+     * @param functions The functions to enroll.
+     */
     public FunctionExecutor(List<FunctionDef> functions) {
+        this(functions, Configurator.one().getObjectMapper());
+    }
+
+    /**
+     * Creates an executor reading the arguments and writing the results of the functions with the
+     * given ObjectMapper.
+     *
+     * @param objectMapper Converts the arguments and the results of the functions.
+     */
+    public FunctionExecutor(@NonNull ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Creates an executor reading the arguments and writing the results of the functions with the
+     * given ObjectMapper.
+     *
+     * @param functions    The functions to enroll.
+     * @param objectMapper Converts the arguments and the results of the functions.
+     */
+    public FunctionExecutor(List<FunctionDef> functions, @NonNull ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
         enrollFunctions(functions);
     }
 
     public List<Tool> getToolFunctions() {
-        return mapFunctions.values()
-                .stream()
-                .map(Tool::function)
-                .collect(Collectors.toList());
+        return enrollments.values().stream().map(enrollment -> enrollment.tool).collect(Collectors.toList());
     }
 
     public List<Tool> getToolFunctions(Object toolChoice) {
@@ -44,47 +97,95 @@ public class FunctionExecutor {
             }
         } else if (toolChoice instanceof ToolChoice) {
             var functionName = ((ToolChoice) toolChoice).getFunction().getName();
-            if (!mapFunctions.containsKey(functionName)) {
+            var enrollment = enrollments.get(functionName);
+            if (enrollment == null) {
                 throw new SimpleOpenAIException("The function {0} was not enrolled in the executor.", functionName,
                         null);
             }
-            return Arrays.asList(Tool.function(mapFunctions.get(functionName)));
+            return Arrays.asList(enrollment.tool);
         } else {
             throw new SimpleOpenAIException("The object {0} is of an unexpected type.", toolChoice.toString(), null);
         }
     }
 
+    /**
+     * Enrolls a function. Its tool definition, including the JSON schema of its parameters, and the
+     * reader of its arguments are built once here, so they cost nothing on each request. The
+     * concurrent calls see the functions enrolled either before or after it, never a part of them.
+     *
+     * @param function The function to enroll.
+     */
     public void enrollFunction(FunctionDef function) {
-        mapFunctions.put(function.getName(), function);
+        var enrollment = new Enrollment(function, objectMapper);
+        synchronized (this) {
+            var updated = new LinkedHashMap<>(enrollments);
+            updated.put(function.getName(), enrollment);
+            enrollments = Collections.unmodifiableMap(updated);
+        }
     }
 
+    /**
+     * Replaces all the enrolled functions at once.
+     *
+     * @param functions The functions to enroll.
+     */
     public void enrollFunctions(List<FunctionDef> functions) {
         if (functions == null) {
             throw new SimpleOpenAIException("No functions were entered.", "", null);
         }
-        mapFunctions.clear();
-        functions.forEach(this::enrollFunction);
+        var replaced = new LinkedHashMap<String, Enrollment>();
+        functions.forEach(function -> replaced.put(function.getName(), new Enrollment(function, objectMapper)));
+        synchronized (this) {
+            enrollments = Collections.unmodifiableMap(replaced);
+        }
+    }
+
+    /**
+     * Sets the executor running the functions of {@link #executeAsync(FunctionCall)}. By default, a
+     * virtual thread per call when the runtime supports them, otherwise a cached pool of daemon
+     * threads.
+     *
+     * @param executor The executor of the functions.
+     */
+    public void setExecutor(@NonNull Executor executor) {
+        this.executor = executor;
     }
 
-    @SuppressWarnings("unchecked")
     public <T> T execute(FunctionCall functionCall) {
-        if (functionCall == null || CommonUtil.isNullOrEmpty(functionCall.getName())) {
-            throw new SimpleOpenAIException("No function was entered or it does not has a name.", "", null);
-        }
-        var functionName = functionCall.getName();
-        if (!mapFunctions.containsKey(functionName)) {
-            throw new SimpleOpenAIException("The function {0} was not enrolled in the executor.", functionName,
-                    null);
-        }
+        return execute(getEnrollment(functionCall), functionCall);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T execute(Enrollment enrollment, FunctionCall functionCall) {
         try {
-            var function = mapFunctions.get(functionName);
-            var object = JsonUtil.jsonToObject(
-                    functionCall.getArguments().isBlank() ? "{}" : functionCall.getArguments(),
-                    function.getFunctionalClass());
-            return (T) object.execute();
+            return (T) toFunctional(enrollment, functionCall).execute();
         } catch (RuntimeException e) {
-            throw new SimpleOpenAIException("Cannot execute the function {0}.", functionName, e);
+            throw new SimpleOpenAIException("Cannot execute the function {0}.", enrollment.function.getName(), e);
+        }
+    }
+
+    /**
+     * Runs a function on the executor, within the timeout and the concurrency cap of its
+     * FunctionDef. A function exceeding its timeout is interrupted. An {@link AsyncFunctional} is
+     * called on the current thread instead, and its stage is cancelled when the timeout is exceeded.
+     * The results of a function with a cache TTL are reused for the calls with the same arguments.
+     *
+     * @param functionCall Name and arguments of the function.
+     * @return The result of the function as it is sent back to the model: strings as they are, and
+     *         any other object serialized as JSON.
+     */
+    public CompletableFuture<String> executeAsync(FunctionCall functionCall) {
+        Enrollment enrollment;
+        try {
+            enrollment = getEnrollment(functionCall);
+        } catch (SimpleOpenAIException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        var key = enrollment.cache != null ? cacheKey(functionCall) : null;
+        if (key == null) {
+            return submit(enrollment, functionCall);
         }
+        return enrollment.cache.get(key, () -> submit(enrollment, functionCall));
     }
 
     /**
@@ -101,12 +202,353 @@ public class FunctionExecutor {
         List<R> toolOutputs = new ArrayList<>();
         for (var toolCall : toolCalls) {
             if (toolCall.getFunction() != null) {
-                var result = execute(toolCall.getFunction());
-                var item = toolOutputItem.apply(toolCall.getId(), result.toString());
+                var item = toolOutputItem.apply(toolCall.getId(), executeToOutput(toolCall.getFunction()));
                 toolOutputs.add(item);
             }
         }
         return toolOutputs;
     }
 
+    /**
+     * Run the 'execute()' method for a list of FunctionDefs in parallel, each one as
+     * {@link #executeAsync(FunctionCall)} does.
+     * 
+     * @param <R>            Specific type to gather the result. ToolMessage for ChatCompletion or
+     *                       ToolOutput for Assistants.
+     * @param toolCalls      Response from the model to call functions.
+     * @param toolOutputItem BiFunction with two arguments: 'toolCallId' and 'result'. Returns a new R
+     *                       object with those arguments.
+     * @return List of R objects in the order of the tool calls, once every function has returned. It
+     *         fails if any function fails.
+     */
+    public <R> CompletableFuture<List<R>> executeAllAsync(List<ToolCall> toolCalls,
+            BiFunction<String, String, R> toolOutputItem) {
+        var futures = toolCalls.stream()
+                .filter(toolCall -> toolCall.getFunction() != null)
+                .map(toolCall -> executeAsync(toolCall.getFunction())
+                        .thenApply(result -> toolOutputItem.apply(toolCall.getId(), result)))
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> futures.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.toList()));
+    }
+
+    private CompletableFuture<String> submit(Enrollment enrollment, FunctionCall functionCall) {
+        var result = new CompletableFuture<String>();
+        var task = new FunctionTask(enrollment, functionCall, result);
+        if (enrollment.limiter != null) {
+            enrollment.limiter.submit(task);
+        } else {
+            task.submit();
+        }
+        return result;
+    }
+
+    private String executeToOutput(FunctionCall functionCall) {
+        var enrollment = getEnrollment(functionCall);
+        var key = enrollment.cache != null ? cacheKey(functionCall) : null;
+        if (key == null) {
+            return toOutput(execute(enrollment, functionCall));
+        }
+        try {
+            return enrollment.cache.get(key,
+                    () -> CompletableFuture.completedFuture(toOutput(execute(enrollment, functionCall)))).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Identifies a call by the function name and its arguments with the object keys sorted, so the
+     * calls differing only in the order or the spacing of their arguments share a result.
+     *
+     * @return The key, or null if the arguments are not valid JSON.
+     */
+    private String cacheKey(FunctionCall functionCall) {
+        var arguments = functionCall.getArguments() == null || functionCall.getArguments().isBlank()
+                ? "{}"
+                : functionCall.getArguments();
+        try {
+            return functionCall.getName() + '\n' + canonical(objectMapper.readTree(arguments));
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private static JsonNode canonical(JsonNode node) {
+        if (node.isObject()) {
+            var sorted = JsonNodeFactory.instance.objectNode();
+            var names = new ArrayList<String>();
+            node.fieldNames().forEachRemaining(names::add);
+            Collections.sort(names);
+            names.forEach(name -> sorted.set(name, canonical(node.get(name))));
+            return sorted;
+        }
+        if (node.isArray()) {
+            var array = JsonNodeFactory.instance.arrayNode(node.size());
+            node.forEach(element -> array.add(canonical(element)));
+            return array;
+        }
+        return node;
+    }
+
+    private Enrollment getEnrollment(FunctionCall functionCall) {
+        if (functionCall == null || CommonUtil.isNullOrEmpty(functionCall.getName())) {
+            throw new SimpleOpenAIException("No function was entered or it does not has a name.", "", null);
+        }
+        var functionName = functionCall.getName();
+        var enrollment = enrollments.get(functionName);
+        if (enrollment == null) {
+            throw new SimpleOpenAIException("The function {0} was not enrolled in the executor.", functionName,
+                    null);
+        }
+        return enrollment;
+    }
+
+    private Functional toFunctional(Enrollment enrollment, FunctionCall functionCall) {
+        var arguments = functionCall.getArguments().isBlank() ? "{}" : functionCall.getArguments();
+        try {
+            return enrollment.reader.readValue(arguments);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Executor getExecutor() {
+        var current = executor;
+        return current != null ? current : DefaultExecutor.INSTANCE;
+    }
+
+    private String toOutput(Object result) {
+        if (result instanceof String) {
+            return (String) result;
+        }
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new SimpleOpenAIException("Cannot convert the result {0} to JSON.", String.valueOf(result), e);
+        }
+    }
+
+    /**
+     * One asynchronous call of a function.
+     */
+    private final class FunctionTask implements Runnable {
+
+        private final Enrollment enrollment;
+        private final FunctionDef function;
+        private final FunctionCall functionCall;
+        private final CompletableFuture<String> result;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private Runnable onDone = () -> {
+        };
+        private Thread worker;
+        private CompletableFuture<?> stage;
+
+        FunctionTask(Enrollment enrollment, FunctionCall functionCall, CompletableFuture<String> result) {
+            this.enrollment = enrollment;
+            this.function = enrollment.function;
+            this.functionCall = functionCall;
+            this.result = result;
+        }
+
+        void submit() {
+            if (AsyncFunctional.class.isAssignableFrom(function.getFunctionalClass())) {
+                runAsync();
+                return;
+            }
+            try {
+                getExecutor().execute(this);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                done();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (result.isDone()) {
+                done();
+                return;
+            }
+            synchronized (this) {
+                worker = Thread.currentThread();
+            }
+            startTimeout();
+            try {
+                result.complete(toOutput(execute(enrollment, functionCall)));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    worker = null;
+                    // Clears an interrupt of the timeout, the thread may be reused.
+                    Thread.interrupted();
+                }
+                done();
+            }
+        }
+
+        private void runAsync() {
+            if (result.isDone()) {
+                done();
+                return;
+            }
+            try {
+                var asyncFunctional = (AsyncFunctional) toFunctional(enrollment, functionCall);
+                synchronized (this) {
+                    stage = asyncFunctional.executeAsync().toCompletableFuture();
+                }
+            } catch (RuntimeException e) {
+                result.completeExceptionally(
+                        new SimpleOpenAIException("Cannot execute the function {0}.", function.getName(), e));
+                done();
+                return;
+            }
+            startTimeout();
+            stage.whenComplete((value, throwable) -> {
+                if (throwable != null) {
+                    var cause = throwable instanceof CompletionException && throwable.getCause() != null
+                            ? throwable.getCause()
+                            : throwable;
+                    result.completeExceptionally(
+                            new SimpleOpenAIException("Cannot execute the function {0}.", function.getName(), cause));
+                } else {
+                    try {
+                        result.complete(toOutput(value));
+                    } catch (RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                }
+                done();
+            });
+        }
+
+        private void startTimeout() {
+            var timeout = function.getTimeout();
+            if (timeout == null) {
+                return;
+            }
+            CompletableFuture.delayedExecutor(timeout.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+                if (result.completeExceptionally(new SimpleOpenAIException(
+                        "The function {0} did not finish within {1}.", function.getName(), timeout, null))) {
+                    abort();
+                }
+            });
+        }
+
+        private synchronized void abort() {
+            if (worker != null) {
+                worker.interrupt();
+            }
+            if (stage != null) {
+                stage.cancel(true);
+                // A pending stage holds no thread, so its slot is released right away.
+                done();
+            }
+        }
+
+        private void done() {
+            if (done.compareAndSet(false, true)) {
+                onDone.run();
+            }
+        }
+
+    }
+
+    /**
+     * Everything built for a function when it is enrolled. Replacing an enrollment starts it over
+     * with a new limiter and an empty cache.
+     */
+    private static final class Enrollment {
+
+        private final FunctionDef function;
+        private final Tool tool;
+        private final ObjectReader reader;
+        private final Limiter limiter;
+        private final ResultCache cache;
+
+        Enrollment(FunctionDef function, ObjectMapper objectMapper) {
+            this.function = function;
+            this.tool = Tool.function(function);
+            this.reader = objectMapper.readerFor(function.getFunctionalClass());
+            this.limiter = function.getMaxConcurrency() != null ? new Limiter(function.getMaxConcurrency()) : null;
+            if (function.getCacheTtl() != null) {
+                var cacheSize = Optional.ofNullable(function.getCacheSize()).orElse(DEFAULT_CACHE_SIZE);
+                this.cache = new ResultCache(function.getCacheTtl().toNanos(), cacheSize);
+            } else {
+                this.cache = null;
+            }
+        }
+
+    }
+
+    /**
+     * Caps the number of calls of a function running at the same time, queueing the others without
+     * holding any thread.
+     */
+    private static final class Limiter {
+
+        private final int maxConcurrency;
+        private final Queue<FunctionTask> waiting = new ArrayDeque<>();
+        private int running;
+
+        Limiter(int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new SimpleOpenAIException("The maxConcurrency must be greater than zero.");
+            }
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        void submit(FunctionTask task) {
+            task.onDone = this::release;
+            synchronized (this) {
+                if (running >= maxConcurrency) {
+                    waiting.add(task);
+                    return;
+                }
+                running++;
+            }
+            task.submit();
+        }
+
+        private void release() {
+            FunctionTask next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    running--;
+                    return;
+                }
+            }
+            next.submit();
+        }
+
+    }
+
+    /**
+     * Holder of the default executor, created on first use.
+     */
+    private static final class DefaultExecutor {
+
+        static final Executor INSTANCE = create();
+
+        private DefaultExecutor() {
+        }
+
+        private static Executor create() {
+            try {
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool(runnable -> {
+                    var thread = new Thread(runnable, "function-executor");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,93 @@
+package io.github.sashirestela.openai.common.function;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Results of the calls of one function, kept for a time to live and evicted in least recently used
+ * order beyond a maximum size. Concurrent calls with the same key share one execution: the first
+ * one runs the function and the others wait for its result. Failed results are not kept.
+ */
+final class ResultCache {
+
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+
+    ResultCache(long ttlNanos, int maxSize) {
+        this.ttlNanos = ttlNanos;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+
+        };
+    }
+
+    /**
+     * Returns the result kept for the key, or loads it if there is none or it expired.
+     *
+     * @param key    Identifies the call.
+     * @param loader Runs the function.
+     * @return A copy of the shared result, so cancelling it does not affect the other callers.
+     */
+    CompletableFuture<String> get(String key, Supplier<CompletableFuture<String>> loader) {
+        Entry entry;
+        var load = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.isExpired(System.nanoTime())) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(key, entry);
+                load = true;
+            }
+        }
+        if (load) {
+            load(key, entry, loader);
+        }
+        return entry.result.copy();
+    }
+
+    private void load(String key, Entry entry, Supplier<CompletableFuture<String>> loader) {
+        CompletableFuture<String> loaded;
+        try {
+            loaded = loader.get();
+        } catch (RuntimeException e) {
+            loaded = CompletableFuture.failedFuture(e);
+        }
+        loaded.whenComplete((value, throwable) -> {
+            if (throwable != null) {
+                synchronized (this) {
+                    entries.remove(key, entry);
+                }
+                entry.result.completeExceptionally(throwable);
+            } else {
+                entry.loadedAt = System.nanoTime();
+                entry.loaded = true;
+                entry.result.complete(value);
+            }
+        });
+    }
+
+    private final class Entry {
+
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private volatile boolean loaded;
+        private volatile long loadedAt;
+
+        boolean isExpired(long now) {
+            return loaded && now - loadedAt >= ttlNanos;
+        }
+
+    }
+
+}
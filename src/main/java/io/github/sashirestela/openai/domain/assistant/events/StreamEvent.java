@@ -0,0 +1,25 @@
+package io.github.sashirestela.openai.domain.assistant.events;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Event of an assistant stream delivered by the publishers of
+ * {@link io.github.sashirestela.openai.OpenAIStreaming OpenAIStreaming}. The data is an instance of
+ * the class that {@link AssistantStreamEvent} maps to the event name.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+@ToString
+public class StreamEvent {
+
+    private String name;
+    private Object data;
+
+    public static StreamEvent of(String name, Object data) {
+        return new StreamEvent(name, data);
+    }
+
+}
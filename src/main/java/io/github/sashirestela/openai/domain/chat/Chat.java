@@ -4,13 +4,17 @@ import com.fasterxml.jackson.annotation.JsonAlias;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import io.github.sashirestela.openai.common.Usage;
+import io.github.sashirestela.openai.common.tool.ToolCall;
 import io.github.sashirestela.openai.domain.chat.ChatMessage.ResponseMessage;
 import io.github.sashirestela.openai.domain.chat.ChatRequest.ServiceTier;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -21,11 +25,14 @@ import java.util.List;
  * </p>
  */
 @NoArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
 @Getter
 @ToString
 @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
 public class Chat {
 
+    private static final String CHUNK_OBJECT = "chat.completion.chunk";
+
     /**
      * The unique identifier for the chat.
      */
@@ -86,6 +93,46 @@ public class Chat {
         return firstMessage().getContent();
     }
 
+    /**
+     * Gives this response as the single chunk of a stream delivering the same answer, with its tool
+     * calls indexed as the chunks have them.
+     *
+     * @return A new chat in the shape of a stream chunk.
+     */
+    public Chat asChunk() {
+        List<Choice> chunkChoices = null;
+        if (choices != null) {
+            chunkChoices = new ArrayList<>(choices.size());
+            for (var choice : choices) {
+                var chunkChoice = new Choice();
+                chunkChoice.setIndex(choice.getIndex());
+                chunkChoice.setMessage(asDelta(choice.getMessage()));
+                chunkChoice.setFinishReason(choice.getFinishReason());
+                chunkChoice.setLogprobs(choice.getLogprobs());
+                chunkChoices.add(chunkChoice);
+            }
+        }
+        return new Chat(id, CHUNK_OBJECT, created, model, serviceTier, systemFingerprint, chunkChoices, usage);
+    }
+
+    private static ResponseMessage asDelta(ResponseMessage message) {
+        if (message == null || message.getToolCalls() == null) {
+            return message;
+        }
+        var delta = new ResponseMessage();
+        delta.setRole(message.getRole());
+        delta.setContent(message.getContent());
+        delta.setRefusal(message.getRefusal());
+        delta.setAudio(message.getAudio());
+        var toolCalls = new ArrayList<ToolCall>(message.getToolCalls().size());
+        for (var index = 0; index < message.getToolCalls().size(); index++) {
+            var toolCall = message.getToolCalls().get(index);
+            toolCalls.add(new ToolCall(index, toolCall.getId(), toolCall.getType(), toolCall.getFunction()));
+        }
+        delta.setToolCalls(toolCalls);
+        return delta;
+    }
+
     /**
      * Represents an individual choice in the chat response.
      */
@@ -124,6 +171,7 @@ public class Chat {
          * Contains log probability details for tokens in the generated content and any refusals.
          */
         @NoArgsConstructor
+        @AllArgsConstructor(access = AccessLevel.PACKAGE)
         @Getter
         @ToString
         @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
@@ -0,0 +1,250 @@
+package io.github.sashirestela.openai.domain.chat;
+
+import io.github.sashirestela.openai.common.Usage;
+import io.github.sashirestela.openai.common.function.FunctionCall;
+import io.github.sashirestela.openai.common.tool.ToolCall;
+import io.github.sashirestela.openai.common.tool.ToolType;
+import io.github.sashirestela.openai.domain.chat.Chat.Choice;
+import io.github.sashirestela.openai.domain.chat.Chat.Choice.LogprobInfo;
+import io.github.sashirestela.openai.domain.chat.Chat.Choice.LogprobInfo.TokenLogprob;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.ChatRole;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.ResponseMessage;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.ResponseMessage.AudioResponse;
+import io.github.sashirestela.openai.domain.chat.ChatRequest.ServiceTier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Rebuilds a complete {@link Chat} from the chunks of a chat completion stream.
+ * <p>
+ * Each chunk is merged as it arrives: the content, refusal and audio fragments are appended to
+ * builders, the tool call fragments are stitched together by their index, and the usage of the
+ * last chunk is kept when 'include_usage' was requested. The work per chunk only depends on the
+ * size of the chunk, so the stream can be delivered to the user and the whole answer logged or
+ * cached afterwards without a second pass:
+ * </p>
+ *
+ * <pre>
+ * var accumulator = new ChatAccumulator();
+ * chatStream.peek(accumulator).forEach(chat -&gt; ...);
+ * var chat = accumulator.getChat();
+ * </pre>
+ * <p>
+ * Not thread safe: the chunks of a stream are expected to be accepted one at a time.
+ * </p>
+ */
+public class ChatAccumulator implements Consumer<Chat> {
+
+    private static final String CHAT_OBJECT = "chat.completion";
+
+    private final List<ChoiceState> choices = new ArrayList<>();
+    private String id;
+    private Long created;
+    private String model;
+    private ServiceTier serviceTier;
+    private String systemFingerprint;
+    private Usage usage;
+
+    /**
+     * Merges a chunk of the stream into the accumulated state.
+     *
+     * @param chunk The next chunk of the stream.
+     */
+    @Override
+    public void accept(Chat chunk) {
+        id = keep(id, chunk.getId());
+        created = keep(created, chunk.getCreated());
+        model = keep(model, chunk.getModel());
+        serviceTier = keep(serviceTier, chunk.getServiceTier());
+        systemFingerprint = keep(systemFingerprint, chunk.getSystemFingerprint());
+        usage = keep(usage, chunk.getUsage());
+        if (chunk.getChoices() != null) {
+            for (var choice : chunk.getChoices()) {
+                var index = choice.getIndex() != null ? choice.getIndex() : 0;
+                choiceState(index).merge(choice);
+            }
+        }
+    }
+
+    /**
+     * Builds the chat accumulated so far. Once the stream is over, the result has the same content
+     * as the response to the same request without streaming.
+     *
+     * @return A new chat holding the accumulated state.
+     */
+    public Chat getChat() {
+        var chatChoices = new ArrayList<Choice>(choices.size());
+        for (var index = 0; index < choices.size(); index++) {
+            if (choices.get(index) != null) {
+                chatChoices.add(choices.get(index).toChoice(index));
+            }
+        }
+        return new Chat(id, CHAT_OBJECT, created, model, serviceTier, systemFingerprint, chatChoices, usage);
+    }
+
+    private ChoiceState choiceState(int index) {
+        while (choices.size() <= index) {
+            choices.add(null);
+        }
+        var choiceState = choices.get(index);
+        if (choiceState == null) {
+            choiceState = new ChoiceState();
+            choices.set(index, choiceState);
+        }
+        return choiceState;
+    }
+
+    private static <T> T keep(T current, T value) {
+        return value != null ? value : current;
+    }
+
+    private static StringBuilder append(StringBuilder builder, String fragment) {
+        if (fragment == null) {
+            return builder;
+        }
+        return (builder != null ? builder : new StringBuilder()).append(fragment);
+    }
+
+    private static String toString(StringBuilder builder) {
+        return builder != null ? builder.toString() : null;
+    }
+
+    private static final class ChoiceState {
+
+        private final List<ToolCallState> toolCalls = new ArrayList<>();
+        private ChatRole role;
+        private StringBuilder content;
+        private StringBuilder refusal;
+        private String finishReason;
+        private List<TokenLogprob> contentLogprobs;
+        private List<TokenLogprob> refusalLogprobs;
+        private AudioState audio;
+
+        void merge(Choice choice) {
+            finishReason = keep(finishReason, choice.getFinishReason());
+            if (choice.getLogprobs() != null) {
+                contentLogprobs = addAll(contentLogprobs, choice.getLogprobs().getContent());
+                refusalLogprobs = addAll(refusalLogprobs, choice.getLogprobs().getRefusal());
+            }
+            var delta = choice.getMessage();
+            if (delta == null) {
+                return;
+            }
+            role = keep(role, delta.getRole());
+            content = append(content, delta.getContent());
+            refusal = append(refusal, delta.getRefusal());
+            if (delta.getToolCalls() != null) {
+                for (var position = 0; position < delta.getToolCalls().size(); position++) {
+                    var toolCall = delta.getToolCalls().get(position);
+                    var index = toolCall.getIndex() != null ? toolCall.getIndex() : position;
+                    toolCallState(index).merge(toolCall);
+                }
+            }
+            if (delta.getAudio() != null) {
+                audio = audio != null ? audio : new AudioState();
+                audio.merge(delta.getAudio());
+            }
+        }
+
+        Choice toChoice(int index) {
+            var message = new ResponseMessage();
+            message.setRole(role != null ? role : ChatRole.ASSISTANT);
+            message.setContent(ChatAccumulator.toString(content));
+            message.setRefusal(ChatAccumulator.toString(refusal));
+            if (!toolCalls.isEmpty()) {
+                var calls = new ArrayList<ToolCall>(toolCalls.size());
+                for (var toolCall : toolCalls) {
+                    if (toolCall != null) {
+                        calls.add(toolCall.toToolCall());
+                    }
+                }
+                message.setToolCalls(calls);
+            }
+            if (audio != null) {
+                message.setAudio(audio.toAudio());
+            }
+            var choice = new Choice();
+            choice.setIndex(index);
+            choice.setMessage(message);
+            choice.setFinishReason(finishReason);
+            if (contentLogprobs != null || refusalLogprobs != null) {
+                choice.setLogprobs(new LogprobInfo(contentLogprobs, refusalLogprobs));
+            }
+            return choice;
+        }
+
+        private ToolCallState toolCallState(int index) {
+            while (toolCalls.size() <= index) {
+                toolCalls.add(null);
+            }
+            var toolCallState = toolCalls.get(index);
+            if (toolCallState == null) {
+                toolCallState = new ToolCallState();
+                toolCalls.set(index, toolCallState);
+            }
+            return toolCallState;
+        }
+
+        private static List<TokenLogprob> addAll(List<TokenLogprob> current, List<TokenLogprob> values) {
+            if (values == null) {
+                return current;
+            }
+            var list = current != null ? current : new ArrayList<TokenLogprob>();
+            list.addAll(values);
+            return list;
+        }
+
+    }
+
+    private static final class ToolCallState {
+
+        private String id;
+        private ToolType type;
+        private String name;
+        private StringBuilder arguments;
+
+        void merge(ToolCall toolCall) {
+            id = keep(id, toolCall.getId());
+            type = keep(type, toolCall.getType());
+            var function = toolCall.getFunction();
+            if (function != null) {
+                name = keep(name, function.getName());
+                arguments = append(arguments, function.getArguments());
+            }
+        }
+
+        ToolCall toToolCall() {
+            var arguments = this.arguments != null ? this.arguments.toString() : "";
+            return new ToolCall(null, id, type != null ? type : ToolType.FUNCTION, new FunctionCall(name, arguments));
+        }
+
+    }
+
+    private static final class AudioState {
+
+        private String id;
+        private Integer expiresAt;
+        private StringBuilder data;
+        private StringBuilder transcript;
+
+        void merge(AudioResponse audio) {
+            id = keep(id, audio.getId());
+            expiresAt = keep(expiresAt, audio.getExpiresAt());
+            data = append(data, audio.getData());
+            transcript = append(transcript, audio.getTranscript());
+        }
+
+        AudioResponse toAudio() {
+            var audio = new AudioResponse();
+            audio.setId(id);
+            audio.setExpiresAt(expiresAt);
+            audio.setData(ChatAccumulator.toString(data));
+            audio.setTranscript(ChatAccumulator.toString(transcript));
+            return audio;
+        }
+
+    }
+
+}
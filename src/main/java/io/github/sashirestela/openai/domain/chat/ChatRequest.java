@@ -48,6 +48,7 @@ public class ChatRequest {
      */
     @Required
     @Singular
+    @With
     private List<ChatMessage> messages;
 
     /**
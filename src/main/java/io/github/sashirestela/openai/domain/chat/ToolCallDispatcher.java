@@ -0,0 +1,199 @@
+package io.github.sashirestela.openai.domain.chat;
+
+import io.github.sashirestela.openai.common.function.FunctionCall;
+import io.github.sashirestela.openai.common.function.FunctionExecutor;
+import io.github.sashirestela.openai.common.tool.ToolCall;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.ToolMessage;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Executes the tool calls of a chat completion stream while the stream is still being received.
+ * <p>
+ * The argument fragments of each tool call of the first choice are scanned as they arrive, and the
+ * function is submitted to the {@link FunctionExecutor} as soon as its JSON arguments are complete,
+ * so slow tools run while the model is still streaming the next calls. A call whose arguments
+ * cannot be told complete from the JSON alone is submitted when the next call starts or the choice
+ * finishes. The tool messages are gathered in the order of the calls:
+ * </p>
+ *
+ * <pre>
+ * var dispatcher = new ToolCallDispatcher(functionExecutor);
+ * chatStream.peek(dispatcher).forEach(chat -&gt; ...);
+ * var toolMessages = dispatcher.complete().join();
+ * </pre>
+ * <p>
+ * Not thread safe: the chunks of a stream are expected to be accepted one at a time.
+ * </p>
+ */
+public class ToolCallDispatcher implements Consumer<Chat> {
+
+    private final FunctionExecutor functionExecutor;
+    private final List<CallState> calls = new ArrayList<>();
+
+    /**
+     * Creates a dispatcher.
+     *
+     * @param functionExecutor Executor holding the enrolled functions. Its
+     *                         {@link FunctionExecutor#executeAsync(FunctionCall) executeAsync} runs
+     *                         the calls.
+     */
+    public ToolCallDispatcher(@NonNull FunctionExecutor functionExecutor) {
+        this.functionExecutor = functionExecutor;
+    }
+
+    /**
+     * Reads the tool call fragments of a chunk, submitting the calls whose arguments are complete.
+     *
+     * @param chunk The next chunk of the stream.
+     */
+    @Override
+    public void accept(Chat chunk) {
+        if (chunk.getChoices() == null) {
+            return;
+        }
+        for (var choice : chunk.getChoices()) {
+            if (choice.getIndex() != null && choice.getIndex() != 0) {
+                continue;
+            }
+            var delta = choice.getMessage();
+            if (delta != null && delta.getToolCalls() != null) {
+                for (var position = 0; position < delta.getToolCalls().size(); position++) {
+                    var toolCall = delta.getToolCalls().get(position);
+                    merge(toolCall.getIndex() != null ? toolCall.getIndex() : position, toolCall);
+                }
+            }
+            if (choice.getFinishReason() != null) {
+                dispatchAll();
+            }
+        }
+    }
+
+    /**
+     * Submits the calls still pending, to be called once the stream is over.
+     *
+     * @return The tool messages in the order of the calls, once every function has returned. It
+     *         fails if any function fails, or if a call never received the name of its function,
+     *         since the next request would then have a tool call without an answer.
+     */
+    public CompletableFuture<List<ToolMessage>> complete() {
+        dispatchAll();
+        var futures = new ArrayList<CompletableFuture<ToolMessage>>(calls.size());
+        for (var call : calls) {
+            if (call == null) {
+                continue;
+            }
+            if (call.result == null) {
+                return CompletableFuture.failedFuture(new SimpleOpenAIException(
+                        "The tool call {0} has no function name.", String.valueOf(call.id), null));
+            }
+            futures.add(call.result);
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            var toolMessages = new ArrayList<ToolMessage>(futures.size());
+            futures.forEach(future -> toolMessages.add(future.join()));
+            return toolMessages;
+        });
+    }
+
+    private void merge(int index, ToolCall toolCall) {
+        while (calls.size() <= index) {
+            calls.add(null);
+        }
+        if (calls.get(index) == null) {
+            // A new call means the previous ones have all their arguments.
+            dispatchAll();
+            calls.set(index, new CallState());
+        }
+        var call = calls.get(index);
+        if (toolCall.getId() != null) {
+            call.id = toolCall.getId();
+        }
+        var function = toolCall.getFunction();
+        if (function != null) {
+            if (function.getName() != null) {
+                call.name = function.getName();
+            }
+            if (function.getArguments() != null) {
+                call.append(function.getArguments());
+            }
+        }
+        if (call.isComplete()) {
+            dispatch(call);
+        }
+    }
+
+    private void dispatchAll() {
+        for (var call : calls) {
+            if (call != null) {
+                dispatch(call);
+            }
+        }
+    }
+
+    private void dispatch(CallState call) {
+        if (call.result != null || call.name == null) {
+            return;
+        }
+        var id = call.id;
+        call.result = functionExecutor.executeAsync(new FunctionCall(call.name, call.arguments.toString()))
+                .thenApply(result -> ToolMessage.of(result, id));
+    }
+
+    /**
+     * Fragments of one tool call, with the state of a scanner telling when its JSON arguments are
+     * complete.
+     */
+    private static final class CallState {
+
+        private final StringBuilder arguments = new StringBuilder();
+        private String id;
+        private String name;
+        private CompletableFuture<ToolMessage> result;
+        private int depth;
+        private boolean started;
+        private boolean inString;
+        private boolean escaped;
+        private boolean closed;
+
+        void append(String fragment) {
+            arguments.append(fragment);
+            for (var i = 0; i < fragment.length() && !closed; i++) {
+                scan(fragment.charAt(i));
+            }
+        }
+
+        boolean isComplete() {
+            return closed;
+        }
+
+        private void scan(char c) {
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                return;
+            }
+            if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+                started = true;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                closed = started && depth == 0;
+            }
+        }
+
+    }
+
+}
@@ -28,6 +28,7 @@ public class CompletionRequest {
     @ObjectType(baseClass = String.class, firstGroup = true)
     @ObjectType(baseClass = Integer.class, firstGroup = true)
     @ObjectType(baseClass = Integer.class, firstGroup = true, secondGroup = true)
+    @With
     private Object prompt;
 
     @Range(min = 0, max = 20)
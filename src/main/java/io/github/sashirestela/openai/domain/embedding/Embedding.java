@@ -1,20 +1,29 @@
 package io.github.sashirestela.openai.domain.embedding;
 
 import io.github.sashirestela.openai.common.Usage;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import lombok.With;
 
 import java.util.List;
 
 @NoArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
 @Getter
 @ToString
 public class Embedding<T> {
 
     private String object;
+    @With
     private List<T> data;
     private String model;
     private Usage usage;
 
+    public static <T> Embedding<T> of(List<T> data, String model, Usage usage) {
+        return new Embedding<>("list", data, model, usage);
+    }
+
 }
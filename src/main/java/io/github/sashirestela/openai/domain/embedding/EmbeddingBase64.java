@@ -1,16 +1,51 @@
 package io.github.sashirestela.openai.domain.embedding;
 
+import io.github.sashirestela.openai.support.Base64Util;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import lombok.With;
+
+import java.nio.FloatBuffer;
 
 @NoArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
 @Getter
 @ToString
 public class EmbeddingBase64 {
 
+    @With
     private Integer index;
     private String embedding;
     private String object;
 
+    public static EmbeddingBase64 of(Integer index, String embedding) {
+        return new EmbeddingBase64(index, embedding, "embedding");
+    }
+
+    /**
+     * Decodes the embedding into a new float[].
+     *
+     * @return The embedding vector.
+     */
+    public float[] toFloatArray() {
+        var vector = new float[Base64Util.floatCount(embedding)];
+        Base64Util.decodeFloats(embedding, FloatBuffer.wrap(vector));
+        return vector;
+    }
+
+    /**
+     * Decodes the embedding into a buffer given by the caller, like a slice of a larger or off-heap
+     * buffer, without intermediate copies.
+     *
+     * @param target The buffer receiving the floats from its position.
+     * @return The same buffer, positioned after the last float.
+     */
+    public FloatBuffer decodeTo(FloatBuffer target) {
+        Base64Util.decodeFloats(embedding, target);
+        return target;
+    }
+
 }
@@ -1,18 +1,27 @@
 package io.github.sashirestela.openai.domain.embedding;
 
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import lombok.With;
 
 import java.util.List;
 
 @NoArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
 @Getter
 @ToString
 public class EmbeddingFloat {
 
+    @With
     private Integer index;
     private List<Double> embedding;
     private String object;
 
+    public static EmbeddingFloat of(Integer index, List<Double> embedding) {
+        return new EmbeddingFloat(index, embedding, "embedding");
+    }
+
 }
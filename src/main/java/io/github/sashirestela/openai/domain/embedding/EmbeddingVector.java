@@ -0,0 +1,102 @@
+package io.github.sashirestela.openai.domain.embedding;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import io.github.sashirestela.openai.support.Base64Util;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.With;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Embedding vector held in a primitive array.
+ * <p>
+ * A vector of {@link EmbeddingFloat} is a list of boxed Doubles, about six times the size of the
+ * floats it holds. This one is read from the response straight into a {@code float[]}, without
+ * creating any boxed value, which matters when millions of chunks are embedded. It is read from
+ * both formats: a Json array of floats, or a base64 text of little-endian floats, which is decoded
+ * without an intermediate byte array and is about a quarter of the size on the wire.
+ * </p>
+ */
+@NoArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+@Getter
+public class EmbeddingVector {
+
+    @With
+    private Integer index;
+    @JsonDeserialize(using = FloatArrayDeserializer.class)
+    private float[] embedding;
+    private String object;
+
+    public static EmbeddingVector of(Integer index, float[] embedding) {
+        return new EmbeddingVector(index, embedding, "embedding");
+    }
+
+    /**
+     * Gives a read-only view of the vector, without copying it.
+     *
+     * @return The vector as a FloatBuffer.
+     */
+    public FloatBuffer asFloatBuffer() {
+        return FloatBuffer.wrap(embedding).asReadOnlyBuffer();
+    }
+
+    @Override
+    public String toString() {
+        return "EmbeddingVector(index=" + index + ", embedding=float[" + (embedding != null ? embedding.length : 0)
+                + "], object=" + object + ")";
+    }
+
+    /**
+     * Reads a Json array of numbers into a float[], growing one buffer by doubling it and trimming
+     * it at the end, or decodes a base64 text into a float[] of the exact size.
+     */
+    static class FloatArrayDeserializer extends StdDeserializer<float[]> {
+
+        private static final long serialVersionUID = 1L;
+        private static final int INITIAL_CAPACITY = 1536;
+
+        FloatArrayDeserializer() {
+            super(float[].class);
+        }
+
+        @Override
+        public float[] deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.hasToken(JsonToken.VALUE_STRING)) {
+                var base64 = CharBuffer.wrap(parser.getTextCharacters(), parser.getTextOffset(),
+                        parser.getTextLength());
+                var values = new float[Base64Util.floatCount(base64)];
+                Base64Util.decodeFloats(base64, FloatBuffer.wrap(values));
+                return values;
+            }
+            if (!parser.isExpectedStartArrayToken()) {
+                return (float[]) context.handleUnexpectedToken(float[].class, parser);
+            }
+            var values = new float[INITIAL_CAPACITY];
+            var size = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_NUMBER_INT) {
+                    return (float[]) context.handleUnexpectedToken(float.class, parser);
+                }
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = parser.getFloatValue();
+            }
+            return size == values.length ? values : Arrays.copyOf(values, size);
+        }
+
+    }
+
+}
@@ -0,0 +1,37 @@
+package io.github.sashirestela.openai.exception;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a call takes longer than one of the timeouts of its deadline.
+ */
+public class DeadlineExceededException extends SimpleOpenAIException {
+
+    /**
+     * The part of the call bounded by the exceeded timeout.
+     */
+    public enum Phase {
+        FIRST_BYTE,
+        IDLE,
+        TOTAL;
+    }
+
+    private final Phase phase;
+    private final transient Duration timeout;
+
+    public DeadlineExceededException(Phase phase, Duration timeout) {
+        super("The call exceeded its " + phase.name().toLowerCase().replace('_', ' ') + " timeout of "
+                + timeout.toMillis() + " ms.");
+        this.phase = phase;
+        this.timeout = timeout;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+}
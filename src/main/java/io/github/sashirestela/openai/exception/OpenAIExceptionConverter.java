@@ -21,7 +21,10 @@ public class OpenAIExceptionConverter extends ExceptionConverter {
 
     @Override
     public RuntimeException convertHttpException(ResponseInfo responseInfo) {
-        var openAIResponseInfo = mapResponseInfo(responseInfo);
+        return fromResponseInfo(mapResponseInfo(responseInfo));
+    }
+
+    public static RuntimeException fromResponseInfo(OpenAIResponseInfo openAIResponseInfo) {
         var status = openAIResponseInfo.getStatus();
         switch (status) {
             case 400:
@@ -0,0 +1,9 @@
+package io.github.sashirestela.openai.service;
+
+import io.github.sashirestela.openai.OpenAIStreaming;
+
+public interface StreamingServices {
+
+    OpenAIStreaming streaming();
+
+}
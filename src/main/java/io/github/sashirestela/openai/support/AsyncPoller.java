@@ -0,0 +1,271 @@
+package io.github.sashirestela.openai.support;
+
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Waits for many resources to reach a state without parking a thread per resource.
+ * <p>
+ * Unlike {@link Poller}, which sleeps on the caller's thread between synchronous queries, every
+ * watched resource is a small state machine driven by one scheduler thread: the queries are the
+ * asynchronous service methods, and the next query is only scheduled once the previous one
+ * returned. The interval between two queries of a resource starts at the initial interval and grows
+ * by the multiplier up to the maximum interval, unless an interval function picks it from the state
+ * of the resource. An optional budget spaces the queries of all the resources so they never exceed
+ * a number of requests per second:
+ * </p>
+ *
+ * <pre>
+ * var poller = AsyncPoller.builder()
+ *         .initialInterval(Duration.ofSeconds(2))
+ *         .maxInterval(Duration.ofMinutes(1))
+ *         .maxRequestsPerSecond(5.0)
+ *         .build();
+ * var futures = batches.stream()
+ *         .map(batch -&gt; poller.poll(batch,
+ *                 b -&gt; openAI.batches().getOne(b.getId()),
+ *                 b -&gt; b.getStatus() != BatchStatus.COMPLETED))
+ *         .collect(Collectors.toList());
+ * </pre>
+ * <p>
+ * Each returned future completes with the first value for which the while predicate is false, or
+ * fails with the failure of a query. Cancelling it stops the polling of that resource and cancels
+ * its query in progress. Closing the poller cancels every watch.
+ * </p>
+ */
+@Getter
+public class AsyncPoller implements AutoCloseable {
+
+    private static final Duration DEFAULT_INITIAL_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration DEFAULT_MAX_INTERVAL = Duration.ofSeconds(30);
+    private static final double DEFAULT_MULTIPLIER = 1.5;
+
+    private final Duration initialInterval;
+    private final Duration maxInterval;
+    private final double multiplier;
+    private final Double maxRequestsPerSecond;
+    @Getter(AccessLevel.NONE)
+    private final ScheduledExecutorService scheduler;
+    @Getter(AccessLevel.NONE)
+    private final Set<Watch<?>> watches = ConcurrentHashMap.newKeySet();
+    @Getter(AccessLevel.NONE)
+    private long nextPermit;
+
+    /**
+     * Constructor used to generate a builder.
+     *
+     * @param initialInterval      Time before the first query of a resource. Optional, defaults to
+     *                             1 second.
+     * @param maxInterval          Maximum time between two queries of a resource. Optional,
+     *                             defaults to 30 seconds.
+     * @param multiplier           Growth of the interval after each query. Optional, defaults to
+     *                             1.5; 1.0 keeps a fixed interval.
+     * @param maxRequestsPerSecond Maximum number of queries per second across all the resources.
+     *                             Optional, unbounded by default.
+     */
+    @Builder
+    public AsyncPoller(Duration initialInterval, Duration maxInterval, Double multiplier,
+            Double maxRequestsPerSecond) {
+        if (multiplier != null && multiplier < 1.0) {
+            throw new SimpleOpenAIException("The multiplier must be at least 1.0.");
+        }
+        if (maxRequestsPerSecond != null && maxRequestsPerSecond <= 0) {
+            throw new SimpleOpenAIException("The maxRequestsPerSecond must be positive.");
+        }
+        this.initialInterval = Optional.ofNullable(initialInterval).orElse(DEFAULT_INITIAL_INTERVAL);
+        this.maxInterval = Optional.ofNullable(maxInterval).orElse(DEFAULT_MAX_INTERVAL);
+        this.multiplier = Optional.ofNullable(multiplier).orElse(DEFAULT_MULTIPLIER);
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.nextPermit = System.nanoTime();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "openai-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Polls a resource with growing intervals until the while predicate turns false.
+     *
+     * @param <T>         Type of the resource.
+     * @param startValue  The current state of the resource.
+     * @param queryMethod Queries the next state of the resource from its current one.
+     * @param whileMethod Tells whether the polling goes on.
+     * @return The first state of the resource for which the while predicate is false.
+     */
+    public <T> CompletableFuture<T> poll(@NonNull T startValue, @NonNull Function<T, CompletableFuture<T>> queryMethod,
+            @NonNull Predicate<T> whileMethod) {
+        return poll(startValue, queryMethod, whileMethod, null);
+    }
+
+    /**
+     * Polls a resource until the while predicate turns false, with intervals picked from its state.
+     *
+     * @param <T>            Type of the resource.
+     * @param startValue     The current state of the resource.
+     * @param queryMethod    Queries the next state of the resource from its current one.
+     * @param whileMethod    Tells whether the polling goes on.
+     * @param intervalMethod Gives the time until the next query from the last state, e.g. a few
+     *                       seconds while a batch is finalizing and minutes while it is in progress.
+     *                       When it returns null, the growing interval is used.
+     * @return The first state of the resource for which the while predicate is false.
+     */
+    public <T> CompletableFuture<T> poll(@NonNull T startValue, @NonNull Function<T, CompletableFuture<T>> queryMethod,
+            @NonNull Predicate<T> whileMethod, Function<T, Duration> intervalMethod) {
+        var watch = new Watch<>(startValue, queryMethod, whileMethod, intervalMethod);
+        watches.add(watch);
+        watch.result.whenComplete((value, throwable) -> watch.stop());
+        watch.schedule(watch.nextDelay(startValue));
+        return watch.result;
+    }
+
+    /**
+     * Gives the number of resources being polled.
+     *
+     * @return The number of watches not completed yet.
+     */
+    public int getWatchCount() {
+        return watches.size();
+    }
+
+    /**
+     * Stops the scheduler and cancels every watch.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        watches.forEach(watch -> watch.result.cancel(false));
+    }
+
+    /**
+     * Reserves the next query slot of the budget.
+     *
+     * @return Nanoseconds to wait before the query can be sent.
+     */
+    private synchronized long reservePermit() {
+        if (maxRequestsPerSecond == null) {
+            return 0;
+        }
+        var now = System.nanoTime();
+        var slot = Math.max(now, nextPermit);
+        nextPermit = slot + (long) (TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond);
+        return slot - now;
+    }
+
+    /**
+     * The polling state of one resource.
+     */
+    private final class Watch<T> {
+
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final Function<T, CompletableFuture<T>> queryMethod;
+        private final Predicate<T> whileMethod;
+        private final Function<T, Duration> intervalMethod;
+        private volatile T value;
+        private volatile CompletableFuture<T> query;
+        private long intervalNanos;
+
+        Watch(T value, Function<T, CompletableFuture<T>> queryMethod, Predicate<T> whileMethod,
+                Function<T, Duration> intervalMethod) {
+            this.value = value;
+            this.queryMethod = queryMethod;
+            this.whileMethod = whileMethod;
+            this.intervalMethod = intervalMethod;
+            this.intervalNanos = initialInterval.toNanos();
+        }
+
+        void schedule(long delayNanos) {
+            try {
+                scheduler.schedule(this::reserve, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                result.cancel(false);
+            }
+        }
+
+        void stop() {
+            watches.remove(this);
+            var current = query;
+            if (current != null && result.isCancelled()) {
+                current.cancel(true);
+            }
+        }
+
+        long nextDelay(T current) {
+            var interval = intervalMethod != null ? intervalMethod.apply(current) : null;
+            if (interval != null) {
+                return interval.toNanos();
+            }
+            var delay = intervalNanos;
+            intervalNanos = Math.min((long) (intervalNanos * multiplier), maxInterval.toNanos());
+            return delay;
+        }
+
+        private void reserve() {
+            if (result.isDone()) {
+                return;
+            }
+            var wait = reservePermit();
+            if (wait > 0) {
+                try {
+                    scheduler.schedule(this::send, wait, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    result.cancel(false);
+                }
+            } else {
+                send();
+            }
+        }
+
+        private void send() {
+            if (result.isDone()) {
+                return;
+            }
+            CompletableFuture<T> next;
+            try {
+                next = queryMethod.apply(value);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            query = next;
+            if (result.isDone()) {
+                stop();
+                return;
+            }
+            next.whenComplete((nextValue, throwable) -> {
+                query = null;
+                if (throwable != null) {
+                    result.completeExceptionally(throwable);
+                    return;
+                }
+                try {
+                    value = nextValue;
+                    if (whileMethod.test(nextValue)) {
+                        schedule(nextDelay(nextValue));
+                    } else {
+                        result.complete(nextValue);
+                    }
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+
+    }
+
+}
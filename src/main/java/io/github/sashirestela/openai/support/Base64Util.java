@@ -3,13 +3,25 @@ package io.github.sashirestela.openai.support;
 import io.github.sashirestela.openai.exception.SimpleOpenAIException;
 
 import java.io.File;
+import java.nio.FloatBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Base64;
 
 public class Base64Util {
 
+    private static final int[] ALPHABET_VALUES = new int[128];
+
+    static {
+        Arrays.fill(ALPHABET_VALUES, -1);
+        var alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (var i = 0; i < alphabet.length(); i++) {
+            ALPHABET_VALUES[alphabet.charAt(i)] = i;
+        }
+    }
+
     private Base64Util() {
     }
 
@@ -40,6 +52,63 @@ public class Base64Util {
         }
     }
 
+    /**
+     * Counts the floats held in a base64 text of little-endian floats, like the embeddings requested
+     * in base64 format.
+     *
+     * @param base64 The base64 text.
+     * @return The number of floats.
+     */
+    public static int floatCount(CharSequence base64) {
+        var length = base64.length();
+        while (length > 0 && base64.charAt(length - 1) == '=') {
+            length--;
+        }
+        return (int) (length * 6L / 8 / Float.BYTES);
+    }
+
+    /**
+     * Decodes a base64 text of little-endian floats straight into a buffer, without an intermediate
+     * byte array. An off-heap ByteBuffer can be filled through
+     * {@code byteBuffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer()}.
+     *
+     * @param base64 The base64 text.
+     * @param target The buffer receiving the floats from its position, which must have room for
+     *               {@link #floatCount(CharSequence) floatCount} of them.
+     */
+    public static void decodeFloats(CharSequence base64, FloatBuffer target) {
+        var bits = 0;
+        var bitCount = 0;
+        var word = 0;
+        var byteCount = 0;
+        for (var i = 0; i < base64.length(); i++) {
+            var character = base64.charAt(i);
+            if (character == '=') {
+                break;
+            }
+            var value = character < ALPHABET_VALUES.length ? ALPHABET_VALUES[character] : -1;
+            if (value < 0) {
+                throw new SimpleOpenAIException("Cannot decode the base64 character {0} at {1}.",
+                        String.valueOf(character), String.valueOf(i), null);
+            }
+            bits = (bits << 6 | value) & 0xFFFF;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                word |= (bits >> bitCount & 0xFF) << (byteCount * 8);
+                if (++byteCount == Float.BYTES) {
+                    target.put(Float.intBitsToFloat(word));
+                    word = 0;
+                    byteCount = 0;
+                }
+            }
+        }
+        if (byteCount != 0) {
+            throw new SimpleOpenAIException("Cannot decode floats from {0} trailing bytes.",
+                    String.valueOf(byteCount), null);
+        }
+    }
+
     private static String value(MediaType mediaType) {
         return mediaType.name().toLowerCase();
     }
@@ -0,0 +1,418 @@
+package io.github.sashirestela.openai.support;
+
+import io.github.sashirestela.openai.base.RetryPolicy;
+import io.github.sashirestela.openai.exception.OpenAIException;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Runs an operation on many objects, like deleting thousands of files or vector stores, with a
+ * bounded number of calls in progress.
+ * <p>
+ * The ids are pulled from the Stream only as slots free up, so it may be a lazy listing. A call
+ * failing with a {@link OpenAIException.RateLimitException RateLimitException} pauses the whole
+ * job for the delay asked by the server, or a growing delay, and the id is tried again. Every
+ * other failure is reported for its id without stopping the job. With a journal, the ids done are
+ * appended to a file as they finish, and a job started again with the same journal skips them, so
+ * a job that died partway resumes where it stopped:
+ * </p>
+ *
+ * <pre>
+ * var bulkExecutor = BulkExecutor.builder()
+ *         .maxConcurrency(16)
+ *         .journal(Path.of("delete-files.journal"))
+ *         .build();
+ * var result = bulkExecutor.run(fileIds.stream(), fileId -&gt; openAI.files().delete(fileId)).join();
+ * result.getFailures().forEach((fileId, failure) -&gt; ...);
+ * </pre>
+ */
+@Getter
+public class BulkExecutor {
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 8;
+    private static final int DEFAULT_MAX_RATE_LIMIT_RETRIES = 5;
+    private static final Duration DEFAULT_RATE_LIMIT_DELAY = Duration.ofSeconds(1);
+    private static final Duration MAX_RATE_LIMIT_DELAY = Duration.ofMinutes(1);
+
+    private final int maxConcurrency;
+    private final int maxRateLimitRetries;
+    private final Path journal;
+
+    /**
+     * Constructor used to generate a builder.
+     *
+     * @param maxConcurrency      Maximum number of calls in progress. Optional, defaults to 8.
+     * @param maxRateLimitRetries Maximum number of times an id is tried again after a rate limit
+     *                            failure. Optional, defaults to 5.
+     * @param journal             File keeping the ids done, one per line, to resume an interrupted
+     *                            job. It is created if missing. Optional.
+     */
+    @Builder
+    public BulkExecutor(Integer maxConcurrency, Integer maxRateLimitRetries, Path journal) {
+        if (maxConcurrency != null && maxConcurrency < 1) {
+            throw new SimpleOpenAIException("The maxConcurrency must be at least 1.");
+        }
+        if (maxRateLimitRetries != null && maxRateLimitRetries < 0) {
+            throw new SimpleOpenAIException("The maxRateLimitRetries must not be negative.");
+        }
+        this.maxConcurrency = Optional.ofNullable(maxConcurrency).orElse(DEFAULT_MAX_CONCURRENCY);
+        this.maxRateLimitRetries = Optional.ofNullable(maxRateLimitRetries).orElse(DEFAULT_MAX_RATE_LIMIT_RETRIES);
+        this.journal = journal;
+    }
+
+    /**
+     * Runs an operation on every id.
+     *
+     * @param <R>       Type of the result of the operation.
+     * @param ids       The ids of the objects. It is closed at the end of the job.
+     * @param operation Calls the service for one id.
+     * @return The outcome of the job, once every id is done.
+     */
+    public <R> CompletableFuture<BulkResult> run(@NonNull Stream<String> ids,
+            @NonNull Function<String, CompletableFuture<R>> operation) {
+        return run(ids, operation, null);
+    }
+
+    /**
+     * Runs an operation on every id, reporting each one as it finishes.
+     *
+     * @param <R>          Type of the result of the operation.
+     * @param ids          The ids of the objects. It is closed at the end of the job.
+     * @param operation    Calls the service for one id.
+     * @param itemListener Receives the outcome of each id, from the thread completing its call.
+     *                     Optional.
+     * @return The outcome of the job, once every id is done.
+     */
+    public <R> CompletableFuture<BulkResult> run(@NonNull Stream<String> ids,
+            @NonNull Function<String, CompletableFuture<R>> operation, Consumer<BulkItem<R>> itemListener) {
+        Job<R> job;
+        try {
+            job = new Job<>(ids, operation, itemListener);
+        } catch (UncheckedIOException e) {
+            ids.close();
+            return CompletableFuture.failedFuture(e);
+        }
+        job.dispatch();
+        return job.result;
+    }
+
+    /**
+     * The state of one run.
+     */
+    private final class Job<R> {
+
+        private final CompletableFuture<BulkResult> result = new CompletableFuture<>();
+        private final Stream<String> ids;
+        private final Iterator<String> pending;
+        private final Function<String, CompletableFuture<R>> operation;
+        private final Consumer<BulkItem<R>> itemListener;
+        private final Set<String> done;
+        private final BufferedWriter journalWriter;
+        private final Deque<String> retries = new ArrayDeque<>();
+        private final Map<String, Integer> attempts = new LinkedHashMap<>();
+        private final Map<String, Throwable> failures = new LinkedHashMap<>();
+        private int running;
+        private int succeeded;
+        private int skipped;
+        private int rateLimitPauses;
+        private long pausedUntil;
+        private boolean exhausted;
+        private boolean dispatching;
+        private boolean finished;
+        private Throwable failure;
+
+        Job(Stream<String> ids, Function<String, CompletableFuture<R>> operation, Consumer<BulkItem<R>> itemListener) {
+            this.ids = ids;
+            this.pending = ids.iterator();
+            this.operation = operation;
+            this.itemListener = itemListener;
+            try {
+                if (journal != null) {
+                    this.done = Files.exists(journal)
+                            ? new HashSet<>(Files.readAllLines(journal, StandardCharsets.UTF_8))
+                            : new HashSet<>();
+                    this.journalWriter = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                } else {
+                    this.done = Collections.emptySet();
+                    this.journalWriter = null;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Starts calls until the slots are full, and completes the job once nothing is left. Only
+         * one thread dispatches at a time; the calls completing meanwhile leave the dispatching to
+         * it instead of recursing.
+         */
+        void dispatch() {
+            synchronized (this) {
+                if (dispatching) {
+                    return;
+                }
+                dispatching = true;
+            }
+            String id;
+            while ((id = take()) != null) {
+                start(id);
+            }
+        }
+
+        /**
+         * Reserves a slot and gives the id to call in it, or null once the dispatching stops. The
+         * ids are pulled from the Stream outside the monitor, as a lazy listing may block until
+         * its next page arrives, which must not hold up the calls completing meanwhile.
+         */
+        private String take() {
+            while (true) {
+                synchronized (this) {
+                    if (pausedUntil != 0 && pausedUntil - System.nanoTime() <= 0) {
+                        pausedUntil = 0;
+                    }
+                    if (finished || pausedUntil != 0 || running >= maxConcurrency) {
+                        return stop();
+                    }
+                    if (!retries.isEmpty()) {
+                        running++;
+                        return retries.poll();
+                    }
+                    if (exhausted) {
+                        if (running == 0) {
+                            finish(null);
+                        }
+                        return stop();
+                    }
+                    running++;
+                }
+                String id;
+                try {
+                    id = pull();
+                } catch (RuntimeException e) {
+                    synchronized (this) {
+                        running--;
+                        finish(e);
+                        return stop();
+                    }
+                }
+                synchronized (this) {
+                    if (id == null) {
+                        exhausted = true;
+                    } else if (!finished && pausedUntil == 0) {
+                        return id;
+                    } else if (!finished) {
+                        retries.addFirst(id);
+                    }
+                    running--;
+                }
+            }
+        }
+
+        private String pull() {
+            while (pending.hasNext()) {
+                var id = pending.next();
+                if (!done.contains(id)) {
+                    return id;
+                }
+                synchronized (this) {
+                    skipped++;
+                }
+            }
+            return null;
+        }
+
+        private String stop() {
+            dispatching = false;
+            if (finished) {
+                close();
+            }
+            return null;
+        }
+
+        private void start(String id) {
+            CompletableFuture<R> call;
+            try {
+                call = operation.apply(id);
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            call.whenComplete((value, throwable) -> onDone(id, value, throwable));
+        }
+
+        private void onDone(String id, R value, Throwable throwable) {
+            var cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause()
+                    : throwable;
+            synchronized (this) {
+                running--;
+                if (cause instanceof OpenAIException.RateLimitException
+                        && attempts.merge(id, 1, Integer::sum) <= maxRateLimitRetries) {
+                    retries.add(id);
+                    pause((OpenAIException) cause);
+                    return;
+                }
+                attempts.remove(id);
+                if (cause == null) {
+                    succeeded++;
+                    if (!record(id)) {
+                        return;
+                    }
+                } else {
+                    failures.put(id, cause);
+                }
+            }
+            if (itemListener != null) {
+                itemListener.accept(new BulkItem<>(id, value, cause));
+            }
+            dispatch();
+        }
+
+        private void pause(OpenAIException exception) {
+            var delay = RetryPolicy.retryAfter(exception).orElseGet(() -> {
+                var grown = DEFAULT_RATE_LIMIT_DELAY.multipliedBy(1L << Math.min(rateLimitPauses, 6));
+                return grown.compareTo(MAX_RATE_LIMIT_DELAY) > 0 ? MAX_RATE_LIMIT_DELAY : grown;
+            });
+            rateLimitPauses++;
+            var until = System.nanoTime() + delay.toNanos();
+            if (until - pausedUntil > 0 || pausedUntil == 0) {
+                pausedUntil = until;
+                CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS).execute(this::dispatch);
+            }
+        }
+
+        /**
+         * Appends a done id to the journal, failing the job if it cannot be written.
+         */
+        private boolean record(String id) {
+            if (journalWriter == null || finished) {
+                return !finished;
+            }
+            try {
+                journalWriter.write(id);
+                journalWriter.newLine();
+                journalWriter.flush();
+                return true;
+            } catch (IOException e) {
+                finish(new UncheckedIOException(e));
+                return false;
+            }
+        }
+
+        /**
+         * Ends the job. The Stream is closed by the thread dispatching, if any, once it is done
+         * with it.
+         */
+        private void finish(Throwable throwable) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            failure = throwable;
+            if (!dispatching) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (result.isDone()) {
+                return;
+            }
+            var throwable = failure;
+            try {
+                ids.close();
+                if (journalWriter != null) {
+                    journalWriter.close();
+                }
+            } catch (IOException | RuntimeException e) {
+                throwable = throwable != null ? throwable : e;
+            }
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.complete(new BulkResult(succeeded, skipped, rateLimitPauses, failures));
+            }
+        }
+
+    }
+
+    /**
+     * The outcome of one id.
+     *
+     * @param <R> Type of the result of the operation.
+     */
+    @Getter
+    public static class BulkItem<R> {
+
+        private final String id;
+        private final R result;
+
+        /**
+         * The failure of the operation, or null if it succeeded.
+         */
+        private final Throwable failure;
+
+        BulkItem(String id, R result, Throwable failure) {
+            this.id = id;
+            this.result = result;
+            this.failure = failure;
+        }
+
+    }
+
+    /**
+     * The outcome of a job.
+     */
+    @Getter
+    public static class BulkResult {
+
+        private final int succeeded;
+
+        /**
+         * Number of ids skipped because the journal had them as done.
+         */
+        private final int skipped;
+
+        private final int rateLimitPauses;
+
+        /**
+         * The failures by id, in the order they happened.
+         */
+        private final Map<String, Throwable> failures;
+
+        BulkResult(int succeeded, int skipped, int rateLimitPauses, Map<String, Throwable> failures) {
+            this.succeeded = succeeded;
+            this.skipped = skipped;
+            this.rateLimitPauses = rateLimitPauses;
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package io.github.sashirestela.openai.support;
+
+import java.util.Arrays;
+
+/**
+ * A reusable, growable window of characters exposed as a {@link CharSequence}.
+ * <p>
+ * The streaming parsers overwrite the same instance for every event, so its content is only valid
+ * inside the handler that receives it. Use {@link #appendTo(StringBuilder)} to accumulate it
+ * without intermediate strings, or {@link #toString()} to keep a copy.
+ * </p>
+ */
+public final class CharSlice implements CharSequence {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private char[] chars;
+    private int length;
+
+    CharSlice() {
+        this.chars = new char[INITIAL_CAPACITY];
+    }
+
+    void clear() {
+        length = 0;
+    }
+
+    void append(char[] source, int offset, int count) {
+        if (length + count > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + count));
+        }
+        System.arraycopy(source, offset, chars, length, count);
+        length += count;
+    }
+
+    /**
+     * Appends the characters of this slice to the given builder.
+     *
+     * @param builder The destination.
+     * @return The same builder.
+     */
+    public StringBuilder appendTo(StringBuilder builder) {
+        return builder.append(chars, 0, length);
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length "
+                    + length);
+        }
+        return new String(chars, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+}
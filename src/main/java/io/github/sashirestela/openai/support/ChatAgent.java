@@ -0,0 +1,334 @@
+package io.github.sashirestela.openai.support;
+
+import io.github.sashirestela.openai.OpenAI;
+import io.github.sashirestela.openai.common.Usage;
+import io.github.sashirestela.openai.common.function.FunctionExecutor;
+import io.github.sashirestela.openai.domain.chat.Chat;
+import io.github.sashirestela.openai.domain.chat.ChatAccumulator;
+import io.github.sashirestela.openai.domain.chat.ChatMessage;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.AssistantMessage;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.ResponseMessage;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.ToolMessage;
+import io.github.sashirestela.openai.domain.chat.ChatRequest;
+import io.github.sashirestela.openai.domain.chat.ToolCallDispatcher;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Runs the tool calling loop of a chat completion until the model answers without calling tools.
+ * <p>
+ * Each turn sends the conversation, appends the assistant message, runs the tool calls with the
+ * {@link FunctionExecutor} in parallel and appends their tool messages. In streaming mode, each
+ * function starts as soon as its arguments are complete, while the rest of the answer is still
+ * being received. The loop stops after a maximum number of turns, or once the tokens used reach the
+ * budget. Every turn is reported with its latencies and usage:
+ * </p>
+ *
+ * <pre>
+ * var agent = ChatAgent.builder()
+ *         .chatCompletions(openAI.chatCompletions())
+ *         .functionExecutor(functionExecutor)
+ *         .stream(true)
+ *         .executor(streamReaders)
+ *         .maxTurns(5)
+ *         .turnListener(turn -&gt; log.info("{}", turn))
+ *         .build();
+ * var chatRequest = ChatRequest.builder()
+ *         .model("gpt-4o-mini")
+ *         .message(UserMessage.of("What is the weather like in Lima?"))
+ *         .tools(functionExecutor.getToolFunctions())
+ *         .build();
+ * var result = agent.run(chatRequest).join();
+ * System.out.println(result.getChat().firstContent());
+ * </pre>
+ * <p>
+ * The request is sent as given, except for its messages, so it must carry the tool definitions.
+ * Only the first choice of each answer is followed.
+ * </p>
+ * <p>
+ * A streamed answer is read with a blocking stream, which holds a thread of the executor until the
+ * answer is over. That executor is therefore required in streaming mode, and should not be the
+ * common pool, whose few threads would be taken by concurrent agents.
+ * </p>
+ */
+@Getter
+public class ChatAgent {
+
+    private static final int DEFAULT_MAX_TURNS = 10;
+
+    private final OpenAI.ChatCompletions chatCompletions;
+    private final FunctionExecutor functionExecutor;
+    private final boolean stream;
+    private final int maxTurns;
+    private final Integer maxTokens;
+    private final Consumer<Chat> chunkListener;
+    private final Consumer<Turn> turnListener;
+    private final Executor executor;
+
+    /**
+     * Constructor used to generate a builder.
+     *
+     * @param chatCompletions  The chat completions service. Mandatory.
+     * @param functionExecutor Executor holding the functions the model can call. Mandatory.
+     * @param stream           Whether the answers are streamed. Optional, defaults to false.
+     * @param maxTurns         Maximum number of requests sent per run. Optional, defaults to 10.
+     * @param maxTokens        Maximum number of total tokens used per run. No request is sent once
+     *                         it is reached. Optional.
+     * @param chunkListener    Receives the chunks of the streamed answers as they arrive. Optional.
+     * @param turnListener     Receives each turn once its tools have returned. Optional.
+     * @param executor         Executor reading the streamed answers, each one holding a thread until
+     *                         its answer is over. Mandatory in streaming mode.
+     */
+    @Builder
+    public ChatAgent(@NonNull OpenAI.ChatCompletions chatCompletions, @NonNull FunctionExecutor functionExecutor,
+            Boolean stream, Integer maxTurns, Integer maxTokens, Consumer<Chat> chunkListener,
+            Consumer<Turn> turnListener, Executor executor) {
+        if (maxTurns != null && maxTurns < 1) {
+            throw new SimpleOpenAIException("The maxTurns must be at least 1.");
+        }
+        if (maxTokens != null && maxTokens < 1) {
+            throw new SimpleOpenAIException("The maxTokens must be at least 1.");
+        }
+        if (Boolean.TRUE.equals(stream) && executor == null) {
+            throw new SimpleOpenAIException("The executor is required to read the streamed answers.");
+        }
+        this.chatCompletions = chatCompletions;
+        this.functionExecutor = functionExecutor;
+        this.stream = Boolean.TRUE.equals(stream);
+        this.maxTurns = Optional.ofNullable(maxTurns).orElse(DEFAULT_MAX_TURNS);
+        this.maxTokens = maxTokens;
+        this.chunkListener = chunkListener;
+        this.turnListener = turnListener;
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the loop for a request.
+     *
+     * @param chatRequest The first request, holding the conversation so far and the tools.
+     * @return The result once the model answered without tool calls or a limit was reached. It fails
+     *         if a request or a function fails.
+     */
+    public CompletableFuture<Result> run(@NonNull ChatRequest chatRequest) {
+        return new Run(chatRequest).nextTurn();
+    }
+
+    private CompletableFuture<Exchange> send(ChatRequest request) {
+        if (!stream) {
+            return chatCompletions.create(request).thenApply(chat -> new Exchange(chat, null));
+        }
+        return chatCompletions.createStream(request).thenApplyAsync(chatStream -> {
+            var accumulator = new ChatAccumulator();
+            var dispatcher = new ToolCallDispatcher(functionExecutor);
+            try (chatStream) {
+                chatStream.forEach(chunk -> {
+                    accumulator.accept(chunk);
+                    dispatcher.accept(chunk);
+                    if (chunkListener != null) {
+                        chunkListener.accept(chunk);
+                    }
+                });
+            }
+            return new Exchange(accumulator.getChat(), dispatcher);
+        }, executor);
+    }
+
+    private CompletableFuture<List<ToolMessage>> runTools(Exchange exchange, ResponseMessage message) {
+        if (exchange.dispatcher != null) {
+            return exchange.dispatcher.complete();
+        }
+        return functionExecutor.executeAllAsync(message.getToolCalls(),
+                (toolCallId, result) -> ToolMessage.of(result, toolCallId));
+    }
+
+    private static AssistantMessage toAssistantMessage(ResponseMessage message) {
+        return AssistantMessage.builder()
+                .content(message.getContent())
+                .refusal(message.getRefusal())
+                .audioId(message.getAudio() != null ? message.getAudio().getId() : null)
+                .toolCalls(message.getToolCalls())
+                .build();
+    }
+
+    /**
+     * The state of one run of the loop.
+     */
+    private final class Run {
+
+        private final ChatRequest chatRequest;
+        private final List<ChatMessage> messages;
+        private final List<Turn> turns = new ArrayList<>();
+        private int promptTokens;
+        private int completionTokens;
+        private int totalTokens;
+
+        Run(ChatRequest chatRequest) {
+            this.chatRequest = chatRequest;
+            this.messages = new ArrayList<>(chatRequest.getMessages());
+        }
+
+        CompletableFuture<Result> nextTurn() {
+            var request = chatRequest.withMessages(new ArrayList<>(messages));
+            var start = System.nanoTime();
+            return send(request).thenCompose(exchange -> {
+                var modelLatency = Duration.ofNanos(System.nanoTime() - start);
+                var chat = exchange.chat;
+                var usage = chat.getUsage();
+                add(usage);
+                var message = chat.firstMessage();
+                messages.add(toAssistantMessage(message));
+                if (message.getToolCalls() == null || message.getToolCalls().isEmpty()) {
+                    report(new Turn(turns.size() + 1, chat, List.of(), modelLatency, Duration.ZERO, usage));
+                    return CompletableFuture.completedFuture(result(chat, StopReason.COMPLETED));
+                }
+                var toolsStart = System.nanoTime();
+                return runTools(exchange, message).thenCompose(toolMessages -> {
+                    var toolLatency = Duration.ofNanos(System.nanoTime() - toolsStart);
+                    messages.addAll(toolMessages);
+                    report(new Turn(turns.size() + 1, chat, toolMessages, modelLatency, toolLatency, usage));
+                    if (turns.size() >= maxTurns) {
+                        return CompletableFuture.completedFuture(result(chat, StopReason.MAX_TURNS));
+                    }
+                    if (maxTokens != null && totalTokens >= maxTokens) {
+                        return CompletableFuture.completedFuture(result(chat, StopReason.MAX_TOKENS));
+                    }
+                    return nextTurn();
+                });
+            });
+        }
+
+        private void add(Usage usage) {
+            if (usage == null) {
+                return;
+            }
+            promptTokens += Optional.ofNullable(usage.getPromptTokens()).orElse(0);
+            completionTokens += Optional.ofNullable(usage.getCompletionTokens()).orElse(0);
+            totalTokens += Optional.ofNullable(usage.getTotalTokens()).orElse(0);
+        }
+
+        private void report(Turn turn) {
+            turns.add(turn);
+            if (turnListener != null) {
+                turnListener.accept(turn);
+            }
+        }
+
+        private Result result(Chat chat, StopReason stopReason) {
+            return new Result(chat, Collections.unmodifiableList(messages), Collections.unmodifiableList(turns),
+                    Usage.of(promptTokens, completionTokens, totalTokens), stopReason);
+        }
+
+    }
+
+    private static final class Exchange {
+
+        private final Chat chat;
+        private final ToolCallDispatcher dispatcher;
+
+        Exchange(Chat chat, ToolCallDispatcher dispatcher) {
+            this.chat = chat;
+            this.dispatcher = dispatcher;
+        }
+
+    }
+
+    /**
+     * Why a run stopped.
+     */
+    public enum StopReason {
+
+        /**
+         * The model answered without calling tools.
+         */
+        COMPLETED,
+
+        /**
+         * The maximum number of turns was reached while the model was still calling tools.
+         */
+        MAX_TURNS,
+
+        /**
+         * The token budget was reached while the model was still calling tools.
+         */
+        MAX_TOKENS
+
+    }
+
+    /**
+     * One request of a run, with the tools it called.
+     */
+    @Getter
+    public static class Turn {
+
+        private final int number;
+        private final Chat chat;
+        private final List<ToolMessage> toolMessages;
+        private final Duration modelLatency;
+        private final Duration toolLatency;
+        private final Usage usage;
+
+        Turn(int number, Chat chat, List<ToolMessage> toolMessages, Duration modelLatency, Duration toolLatency,
+                Usage usage) {
+            this.number = number;
+            this.chat = chat;
+            this.toolMessages = toolMessages;
+            this.modelLatency = modelLatency;
+            this.toolLatency = toolLatency;
+            this.usage = usage;
+        }
+
+        @Override
+        public String toString() {
+            return "Turn(number=" + number + ", toolCalls=" + toolMessages.size() + ", modelLatency=" + modelLatency
+                    + ", toolLatency=" + toolLatency + ", usage=" + usage + ")";
+        }
+
+    }
+
+    /**
+     * The outcome of a run.
+     */
+    @Getter
+    public static class Result {
+
+        /**
+         * The last answer of the model.
+         */
+        private final Chat chat;
+
+        /**
+         * The whole conversation, including the last answer.
+         */
+        private final List<ChatMessage> messages;
+
+        private final List<Turn> turns;
+
+        /**
+         * The sum of the usage of every turn.
+         */
+        private final Usage usage;
+
+        private final StopReason stopReason;
+
+        Result(Chat chat, List<ChatMessage> messages, List<Turn> turns, Usage usage, StopReason stopReason) {
+            this.chat = chat;
+            this.messages = messages;
+            this.turns = turns;
+            this.usage = usage;
+            this.stopReason = stopReason;
+        }
+
+    }
+
+}
@@ -0,0 +1,407 @@
+package io.github.sashirestela.openai.support;
+
+import io.github.sashirestela.openai.OpenAI;
+import io.github.sashirestela.openai.domain.embedding.Embedding;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingBase64;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingFloat;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest.EncodingFormat;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingVector;
+import io.github.sashirestela.openai.exception.OpenAIException;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Embeddings service gathering the requests of concurrent callers into fewer, larger requests.
+ * <p>
+ * The requests for the same model, dimensions, user and format arriving within a short delay of
+ * each other are sent as one request, and each caller receives the part of the response for its
+ * own inputs, with the indexes counted from 0 as if sent alone. A batch is sent when its delay
+ * ends or when it is full, by number of inputs or by estimated tokens, whichever comes first. It
+ * stands in front of the service of any provider:
+ * </p>
+ *
+ * <pre>
+ * var embeddings = EmbeddingBatcher.builder()
+ *         .embeddings(openAI.embeddings())
+ *         .maxDelay(Duration.ofMillis(5))
+ *         .build();
+ * var vector = embeddings.createVector(EmbeddingRequest.builder().input(query).model(model).build());
+ * </pre>
+ * <p>
+ * The usage in each response is the one of the whole batched request. The requests with token
+ * inputs or more inputs than a batch holds are sent right away, as they are. When a batched
+ * request is rejected with a client error other than a rate limit, as one bad input would do, the
+ * request of each caller is sent again alone, so only the callers at fault fail.
+ * </p>
+ * <p>
+ * A batched request serves several callers, so it is sent from a thread of the batcher, outside
+ * the {@link io.github.sashirestela.openai.base.CallScope CallScope} of any of them: their
+ * deadlines and cancellations do not reach it. A caller gives up on its own part by cancelling its
+ * future, or bounding its wait with {@code orTimeout}; a batch whose callers all gave up before it
+ * is sent is dropped.
+ * </p>
+ */
+@Getter
+public class EmbeddingBatcher implements OpenAI.Embeddings, AutoCloseable {
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    private static final int DEFAULT_MAX_BATCH_TOKENS = 300_000;
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofMillis(5);
+
+    private final OpenAI.Embeddings embeddings;
+    private final int maxBatchSize;
+    private final int maxBatchTokens;
+    private final Duration maxDelay;
+    private final ToIntFunction<String> tokenCounter;
+
+    @Getter(AccessLevel.NONE)
+    private final ScheduledExecutorService scheduler;
+    @Getter(AccessLevel.NONE)
+    private final Map<Key, Batch<?>> pending = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final List<Batch<?>> full = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private final Kind<EmbeddingFloat> floatKind;
+    @Getter(AccessLevel.NONE)
+    private final Kind<EmbeddingBase64> base64Kind;
+    @Getter(AccessLevel.NONE)
+    private final Kind<EmbeddingVector> vectorKind;
+    @Getter(AccessLevel.NONE)
+    private final Kind<EmbeddingVector> vectorBase64Kind;
+
+    /**
+     * Constructor used to generate a builder.
+     *
+     * @param embeddings   The embeddings service receiving the batched requests. Mandatory.
+     * @param maxBatchSize   Maximum number of inputs per batched request. Optional, defaults to
+     *                       256.
+     * @param maxBatchTokens Maximum number of tokens per batched request, as counted by the
+     *                       tokenCounter. Optional, defaults to 300000.
+     * @param maxDelay       Maximum time a request waits for others to join it. Optional, defaults
+     *                       to 5 milliseconds.
+     * @param tokenCounter   Counts the tokens of a text. Optional, defaults to an estimate of one
+     *                       token per three characters, which errs on the safe side for most texts.
+     */
+    @Builder
+    public EmbeddingBatcher(@NonNull OpenAI.Embeddings embeddings, Integer maxBatchSize, Integer maxBatchTokens,
+            Duration maxDelay, ToIntFunction<String> tokenCounter) {
+        if (maxBatchSize != null && maxBatchSize < 1) {
+            throw new SimpleOpenAIException("The maxBatchSize must be at least 1.");
+        }
+        if (maxBatchTokens != null && maxBatchTokens < 1) {
+            throw new SimpleOpenAIException("The maxBatchTokens must be at least 1.");
+        }
+        if (maxDelay != null && maxDelay.isNegative()) {
+            throw new SimpleOpenAIException("The maxDelay must not be negative.");
+        }
+        this.embeddings = embeddings;
+        this.maxBatchSize = Optional.ofNullable(maxBatchSize).orElse(DEFAULT_MAX_BATCH_SIZE);
+        this.maxBatchTokens = Optional.ofNullable(maxBatchTokens).orElse(DEFAULT_MAX_BATCH_TOKENS);
+        this.maxDelay = Optional.ofNullable(maxDelay).orElse(DEFAULT_MAX_DELAY);
+        this.tokenCounter = Optional.ofNullable(tokenCounter).orElse(text -> text.length() / 3 + 1);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "openai-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.floatKind = new Kind<>(EncodingFormat.FLOAT, embeddings::createPrimitive, EmbeddingFloat::withIndex,
+                EmbeddingFloat::getIndex);
+        this.base64Kind = new Kind<>(EncodingFormat.BASE64, embeddings::createBase64Primitive,
+                EmbeddingBase64::withIndex, EmbeddingBase64::getIndex);
+        this.vectorKind = new Kind<>(EncodingFormat.FLOAT, embeddings::createVectorPrimitive,
+                EmbeddingVector::withIndex, EmbeddingVector::getIndex);
+        this.vectorBase64Kind = new Kind<>(EncodingFormat.BASE64, embeddings::createVectorBase64Primitive,
+                EmbeddingVector::withIndex, EmbeddingVector::getIndex);
+    }
+
+    @Override
+    public CompletableFuture<Embedding<EmbeddingFloat>> createPrimitive(EmbeddingRequest embeddingRequest) {
+        return submit(floatKind, embeddingRequest);
+    }
+
+    @Override
+    public CompletableFuture<Embedding<EmbeddingBase64>> createBase64Primitive(EmbeddingRequest embeddingRequest) {
+        return submit(base64Kind, embeddingRequest);
+    }
+
+    @Override
+    public CompletableFuture<Embedding<EmbeddingVector>> createVectorPrimitive(EmbeddingRequest embeddingRequest) {
+        return submit(vectorKind, embeddingRequest);
+    }
+
+    @Override
+    public CompletableFuture<Embedding<EmbeddingVector>> createVectorBase64Primitive(
+            EmbeddingRequest embeddingRequest) {
+        return submit(vectorBase64Kind, embeddingRequest);
+    }
+
+    /**
+     * Sends the pending batches, including the full ones the scheduler has not sent yet, and stops
+     * the scheduler. The requests made afterwards are sent right away, as they are.
+     */
+    @Override
+    public void close() {
+        List<Batch<?>> batches;
+        synchronized (this) {
+            scheduler.shutdownNow();
+            batches = new ArrayList<>(full);
+            batches.addAll(pending.values());
+            full.clear();
+            pending.clear();
+        }
+        batches.forEach(Batch::send);
+    }
+
+    private <T> CompletableFuture<Embedding<T>> submit(Kind<T> kind, EmbeddingRequest request) {
+        var texts = texts(request.getInput());
+        if (texts == null || texts.isEmpty() || texts.size() > maxBatchSize) {
+            return kind.call.apply(request);
+        }
+        var tokens = 0L;
+        for (var text : texts) {
+            tokens += tokenCounter.applyAsInt(text);
+        }
+        if (tokens > maxBatchTokens) {
+            return kind.call.apply(request);
+        }
+        var key = new Key(kind, request.getModel(), request.getDimensions(), request.getUser());
+        var part = new Part<T>(request, texts);
+        synchronized (this) {
+            if (scheduler.isShutdown()) {
+                return kind.call.apply(request);
+            }
+            @SuppressWarnings("unchecked")
+            var batch = (Batch<T>) pending.get(key);
+            if (batch != null
+                    && (batch.size + texts.size() > maxBatchSize || batch.tokens + tokens > maxBatchTokens)) {
+                pending.remove(key);
+                queue(batch);
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new Batch<>(key, kind);
+                pending.put(key, batch);
+                var delayed = batch;
+                scheduler.schedule(() -> flush(delayed), maxDelay.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            batch.parts.add(part);
+            batch.size += texts.size();
+            batch.tokens += tokens;
+            if (batch.size == maxBatchSize) {
+                pending.remove(key);
+                queue(batch);
+            }
+        }
+        return part.result;
+    }
+
+    /**
+     * Leaves a full batch to the scheduler to send, keeping it until then for {@link #close()}.
+     */
+    private void queue(Batch<?> batch) {
+        full.add(batch);
+        scheduler.execute(() -> {
+            synchronized (this) {
+                if (!full.remove(batch)) {
+                    return;
+                }
+            }
+            batch.send();
+        });
+    }
+
+    private void flush(Batch<?> batch) {
+        synchronized (this) {
+            if (pending.get(batch.key) != batch) {
+                return;
+            }
+            pending.remove(batch.key);
+        }
+        batch.send();
+    }
+
+    /**
+     * Gives the texts of an input made only of texts, or null for the token inputs.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> texts(Object input) {
+        if (input instanceof String) {
+            return List.of((String) input);
+        }
+        if (input instanceof List && ((List<?>) input).stream().allMatch(String.class::isInstance)) {
+            return (List<String>) input;
+        }
+        return null;
+    }
+
+    /**
+     * The method of the service and the handling of the response for one format.
+     */
+    @AllArgsConstructor
+    private static final class Kind<T> {
+
+        private final EncodingFormat encodingFormat;
+        private final Function<EmbeddingRequest, CompletableFuture<Embedding<T>>> call;
+        private final BiFunction<T, Integer, T> withIndex;
+        private final ToIntFunction<T> index;
+
+    }
+
+    /**
+     * What the requests of a batch must share.
+     */
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class Key {
+
+        private final Kind<?> kind;
+        private final String model;
+        private final Integer dimensions;
+        private final String user;
+
+    }
+
+    /**
+     * The inputs of one caller within a batch.
+     */
+    private static final class Part<T> {
+
+        private final CompletableFuture<Embedding<T>> result = new CompletableFuture<>();
+        private final EmbeddingRequest request;
+        private final List<String> texts;
+        private int offset;
+
+        Part(EmbeddingRequest request, List<String> texts) {
+            this.request = request;
+            this.texts = texts;
+        }
+
+    }
+
+    /**
+     * The requests gathered into one.
+     */
+    private static final class Batch<T> {
+
+        private final Key key;
+        private final Kind<T> kind;
+        private final List<Part<T>> parts = new ArrayList<>();
+        private int size;
+        private long tokens;
+
+        Batch(Key key, Kind<T> kind) {
+            this.key = key;
+            this.kind = kind;
+        }
+
+        /**
+         * Sends the inputs of the callers still waiting as one request.
+         */
+        void send() {
+            parts.removeIf(part -> part.result.isDone());
+            if (parts.isEmpty()) {
+                return;
+            }
+            var texts = new ArrayList<String>(size);
+            for (var part : parts) {
+                part.offset = texts.size();
+                texts.addAll(part.texts);
+            }
+            var request = EmbeddingRequest.builder()
+                    .input(texts)
+                    .model(key.model)
+                    .dimensions(key.dimensions)
+                    .user(key.user)
+                    .encodingFormat(kind.encodingFormat)
+                    .build();
+            call(request).whenComplete(this::split);
+        }
+
+        private CompletableFuture<Embedding<T>> call(EmbeddingRequest request) {
+            try {
+                return kind.call.apply(request);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        /**
+         * Hands each caller the data of its own inputs, indexed from 0. A batched request rejected
+         * for its inputs is sent again as the request of each caller alone.
+         */
+        private void split(Embedding<T> embedding, Throwable throwable) {
+            if (throwable != null) {
+                var cause = unwrap(throwable);
+                if (parts.size() > 1 && isClientError(cause)) {
+                    parts.forEach(part -> call(part.request).whenComplete((alone, failure) -> {
+                        if (failure != null) {
+                            part.result.completeExceptionally(unwrap(failure));
+                        } else {
+                            part.result.complete(alone);
+                        }
+                    }));
+                } else {
+                    parts.forEach(part -> part.result.completeExceptionally(cause));
+                }
+                return;
+            }
+            var data = new ArrayList<>(embedding.getData());
+            data.sort(Comparator.comparingInt(kind.index));
+            var position = 0;
+            for (var part : parts) {
+                var count = part.texts.size();
+                var partData = new ArrayList<T>(count);
+                var end = part.offset + count;
+                while (position < data.size() && kind.index.applyAsInt(data.get(position)) < end) {
+                    var item = data.get(position++);
+                    partData.add(kind.withIndex.apply(item, kind.index.applyAsInt(item) - part.offset));
+                }
+                if (partData.size() == count) {
+                    part.result.complete(embedding.withData(partData));
+                } else {
+                    part.result.completeExceptionally(new SimpleOpenAIException(
+                            "The batched response has {0} of the {1} embeddings of this request.",
+                            String.valueOf(partData.size()), String.valueOf(count), null));
+                }
+            }
+        }
+
+        private static Throwable unwrap(Throwable throwable) {
+            return throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause()
+                    : throwable;
+        }
+
+        private static boolean isClientError(Throwable cause) {
+            if (!(cause instanceof OpenAIException) || cause instanceof OpenAIException.RateLimitException) {
+                return false;
+            }
+            var responseInfo = ((OpenAIException) cause).getResponseInfo();
+            return responseInfo != null && responseInfo.getStatus() >= 400 && responseInfo.getStatus() < 500;
+        }
+
+    }
+
+}
@@ -0,0 +1,517 @@
+package io.github.sashirestela.openai.support;
+
+import io.github.sashirestela.openai.OpenAI;
+import io.github.sashirestela.openai.common.Usage;
+import io.github.sashirestela.openai.domain.embedding.Embedding;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingBase64;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingFloat;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest.EncodingFormat;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingVector;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Embeddings service keeping the vectors in files, so the same texts are never embedded twice,
+ * across restarts and across the JVMs of a host sharing the directory.
+ * <p>
+ * The texts of a request found in the cache are answered from it, and only the others are sent,
+ * in one request; when all of them are found, no request is sent at all. There is one file per
+ * model and dimensions, holding up to maxEntries vectors: a header, a hash index of the texts and
+ * the vectors one after the other, all of it memory-mapped. The lookups take no lock, and the
+ * entries are published with atomic operations on the mapped file, which other processes see too:
+ * </p>
+ *
+ * <pre>
+ * var embeddings = EmbeddingCache.builder()
+ *         .embeddings(openAI.embeddings())
+ *         .directory(Path.of("/var/cache/embeddings"))
+ *         .build();
+ * var titles = embeddings.createVector(EmbeddingRequest.builder().input(productTitles).model(model).build());
+ * </pre>
+ * <p>
+ * The vectors are kept as floats. Once a file is full, the new vectors are not kept, and the file
+ * may be deleted while no process uses it to start over. The usage in a response counts only the
+ * texts sent.
+ * </p>
+ */
+@Getter
+public class EmbeddingCache implements OpenAI.Embeddings, AutoCloseable {
+
+    private static final int DEFAULT_MAX_ENTRIES = 100_000;
+    private static final int MAX_ENTRIES = 1 << 24;
+
+    private final OpenAI.Embeddings embeddings;
+    private final Path directory;
+    private final int maxEntries;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<Path, Store> stores = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Kind<EmbeddingFloat> floatKind;
+    @Getter(AccessLevel.NONE)
+    private final Kind<EmbeddingBase64> base64Kind;
+    @Getter(AccessLevel.NONE)
+    private final Kind<EmbeddingVector> vectorKind;
+    @Getter(AccessLevel.NONE)
+    private final Kind<EmbeddingVector> vectorBase64Kind;
+
+    /**
+     * Constructor used to generate a builder.
+     *
+     * @param embeddings The embeddings service called for the texts not in the cache. Mandatory.
+     * @param directory  The directory of the cache files. It is created if missing. Mandatory.
+     * @param maxEntries Maximum number of vectors per file, used when the file is created. The
+     *                   vectors of a file must fit in 2 GB, or they are not kept. Optional,
+     *                   defaults to 100000.
+     */
+    @Builder
+    public EmbeddingCache(@NonNull OpenAI.Embeddings embeddings, @NonNull Path directory, Integer maxEntries) {
+        if (maxEntries != null && (maxEntries < 1 || maxEntries > MAX_ENTRIES)) {
+            throw new SimpleOpenAIException("The maxEntries must be between 1 and {0}.", String.valueOf(MAX_ENTRIES),
+                    null);
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new SimpleOpenAIException("Cannot create the cache directory {0}.", directory, e);
+        }
+        this.embeddings = embeddings;
+        this.directory = directory;
+        this.maxEntries = Optional.ofNullable(maxEntries).orElse(DEFAULT_MAX_ENTRIES);
+        this.floatKind = new Kind<>(EncodingFormat.FLOAT, embeddings::createPrimitive,
+                EmbeddingFloat::getIndex, data -> toFloats(data.getEmbedding()),
+                (index, vector) -> EmbeddingFloat.of(index, toDoubles(vector)));
+        this.base64Kind = new Kind<>(EncodingFormat.BASE64, embeddings::createBase64Primitive,
+                EmbeddingBase64::getIndex, EmbeddingBase64::toFloatArray,
+                (index, vector) -> EmbeddingBase64.of(index, toBase64(vector)));
+        this.vectorKind = new Kind<>(EncodingFormat.FLOAT, embeddings::createVectorPrimitive,
+                EmbeddingVector::getIndex, EmbeddingVector::getEmbedding,
+                EmbeddingVector::of);
+        this.vectorBase64Kind = new Kind<>(EncodingFormat.BASE64, embeddings::createVectorBase64Primitive,
+                EmbeddingVector::getIndex, EmbeddingVector::getEmbedding,
+                EmbeddingVector::of);
+    }
+
+    @Override
+    public CompletableFuture<Embedding<EmbeddingFloat>> createPrimitive(EmbeddingRequest embeddingRequest) {
+        return lookup(floatKind, embeddingRequest);
+    }
+
+    @Override
+    public CompletableFuture<Embedding<EmbeddingBase64>> createBase64Primitive(EmbeddingRequest embeddingRequest) {
+        return lookup(base64Kind, embeddingRequest);
+    }
+
+    @Override
+    public CompletableFuture<Embedding<EmbeddingVector>> createVectorPrimitive(EmbeddingRequest embeddingRequest) {
+        return lookup(vectorKind, embeddingRequest);
+    }
+
+    @Override
+    public CompletableFuture<Embedding<EmbeddingVector>> createVectorBase64Primitive(
+            EmbeddingRequest embeddingRequest) {
+        return lookup(vectorBase64Kind, embeddingRequest);
+    }
+
+    /**
+     * Closes the cache files. The mapped memory is released once it is no longer referenced.
+     */
+    @Override
+    public void close() {
+        stores.values().forEach(Store::close);
+        stores.clear();
+    }
+
+    private <T> CompletableFuture<Embedding<T>> lookup(Kind<T> kind, EmbeddingRequest request) {
+        var texts = texts(request.getInput());
+        if (texts == null || texts.isEmpty()) {
+            return kind.call.apply(request);
+        }
+        Store store;
+        var keys = new long[texts.size()][];
+        var data = new ArrayList<T>(texts.size());
+        var missTexts = new ArrayList<String>();
+        var missIndexes = new ArrayList<Integer>();
+        try {
+            store = store(request.getModel(), request.getDimensions());
+            for (var i = 0; i < texts.size(); i++) {
+                keys[i] = key(texts.get(i));
+                var vector = store.get(keys[i]);
+                if (vector != null) {
+                    data.add(kind.fromVector.apply(i, vector));
+                } else {
+                    data.add(null);
+                    missTexts.add(texts.get(i));
+                    missIndexes.add(i);
+                }
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (missTexts.isEmpty()) {
+            return CompletableFuture.completedFuture(Embedding.of(data, request.getModel(), Usage.of(0, null, 0)));
+        }
+        var missRequest = EmbeddingRequest.builder()
+                .input(missTexts)
+                .model(request.getModel())
+                .dimensions(request.getDimensions())
+                .user(request.getUser())
+                .encodingFormat(kind.encodingFormat)
+                .build();
+        return kind.call.apply(missRequest).thenApply(embedding -> {
+            for (var item : embedding.getData()) {
+                var missIndex = kind.index.applyAsInt(item);
+                if (missIndex < 0 || missIndex >= missIndexes.size()) {
+                    throw new SimpleOpenAIException("The response has the unexpected index {0}.",
+                            String.valueOf(missIndex), null);
+                }
+                var index = missIndexes.get(missIndex);
+                var vector = kind.toVector.apply(item);
+                store.put(keys[index], vector);
+                data.set(index, kind.fromVector.apply(index, vector));
+            }
+            if (data.contains(null)) {
+                throw new SimpleOpenAIException("The response misses some of the embeddings requested.");
+            }
+            return embedding.withData(data);
+        });
+    }
+
+    private Store store(String model, Integer dimensions) {
+        var name = model.replaceAll("[^A-Za-z0-9._-]", "_") + (dimensions != null ? "-" + dimensions : "");
+        return stores.computeIfAbsent(directory.resolve(name + ".embeddings"), file -> {
+            try {
+                return new Store(file, maxEntries);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Gives the texts of an input made only of texts, or null for the token inputs.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> texts(Object input) {
+        if (input instanceof String) {
+            return List.of((String) input);
+        }
+        if (input instanceof List && ((List<?>) input).stream().allMatch(String.class::isInstance)) {
+            return (List<String>) input;
+        }
+        return null;
+    }
+
+    /**
+     * Gives the first 128 bits of the SHA-256 digest of a text.
+     */
+    private static long[] key(String text) {
+        try {
+            var digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                    .digest(text.getBytes(StandardCharsets.UTF_8)));
+            return new long[] { digest.getLong(), digest.getLong() };
+        } catch (NoSuchAlgorithmException e) {
+            throw new SimpleOpenAIException("Cannot hash the texts.", e);
+        }
+    }
+
+    private static float[] toFloats(List<Double> values) {
+        var vector = new float[values.size()];
+        for (var i = 0; i < vector.length; i++) {
+            vector[i] = values.get(i).floatValue();
+        }
+        return vector;
+    }
+
+    private static List<Double> toDoubles(float[] vector) {
+        var values = new ArrayList<Double>(vector.length);
+        for (var value : vector) {
+            values.add((double) value);
+        }
+        return values;
+    }
+
+    private static String toBase64(float[] vector) {
+        var bytes = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(vector);
+        return Base64.getEncoder().encodeToString(bytes.array());
+    }
+
+    /**
+     * The method of the service and the conversions of the data for one format.
+     */
+    @AllArgsConstructor
+    private static final class Kind<T> {
+
+        private final EncodingFormat encodingFormat;
+        private final Function<EmbeddingRequest, CompletableFuture<Embedding<T>>> call;
+        private final ToIntFunction<T> index;
+        private final Function<T, float[]> toVector;
+        private final BiFunction<Integer, float[], T> fromVector;
+
+    }
+
+    /**
+     * One cache file. Its layout, in little-endian order, is a header of 64 bytes (magic, version,
+     * dimensions, capacity and count of vectors), an index of slots of 24 bytes (state, second of
+     * the claim, two longs of key), and the vectors. The state of a slot is 0 when free, -1 while
+     * its key is being written, -2 while its vector is, and the number of the vector plus one once
+     * written. The dimensions are set by the first vector.
+     * <p>
+     * A slot is claimed for a key before a vector is reserved, and a put meeting a slot whose key is
+     * being written waits for it briefly, so the concurrent misses of a text keep one vector. A
+     * process dying in the middle of a put leaves its slot unpublished: a slot left without its key
+     * is passed over after that wait and only takes room in the index, and one left without its
+     * vector is taken over by the next put of the same text once it is a minute old.
+     * </p>
+     */
+    private static final class Store {
+
+        private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class,
+                ByteOrder.LITTLE_ENDIAN);
+        private static final Object OPEN_LOCK = new Object();
+        private static final int MAGIC = 0x43424D45;
+        private static final int VERSION = 1;
+        private static final int HEADER_SIZE = 64;
+        private static final int DIMENSIONS = 8;
+        private static final int CAPACITY = 12;
+        private static final int COUNT = 16;
+        private static final int SLOT_SIZE = 24;
+        private static final int WRITING_KEY = -1;
+        private static final int WRITING_VECTOR = -2;
+        private static final int STALE_SECONDS = 60;
+        private static final int MAX_KEY_SPINS = 1 << 10;
+
+        private final FileChannel channel;
+        private final MappedByteBuffer index;
+        private final int capacity;
+        private final int slotMask;
+        private final long recordsOffset;
+        private volatile MappedByteBuffer records;
+
+        Store(Path file, int maxEntries) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                synchronized (OPEN_LOCK) {
+                    try (var lock = channel.lock()) {
+                        if (channel.size() == 0) {
+                            var header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                            header.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(maxEntries).flip();
+                            channel.write(header, 0);
+                            var size = HEADER_SIZE + (long) slots(maxEntries) * SLOT_SIZE;
+                            channel.write(ByteBuffer.allocate(1), size - 1);
+                        }
+                        var header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                        channel.read(header, 0);
+                        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                            throw new IOException("The file " + file + " is not an embedding cache.");
+                        }
+                        this.capacity = header.getInt(CAPACITY);
+                    }
+                }
+                var slots = slots(capacity);
+                this.slotMask = slots - 1;
+                this.recordsOffset = HEADER_SIZE + (long) slots * SLOT_SIZE;
+                this.index = channel.map(FileChannel.MapMode.READ_WRITE, 0, recordsOffset);
+                this.index.order(ByteOrder.LITTLE_ENDIAN);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Gives the power of two holding at least twice the capacity, so the index is never more
+         * than half full.
+         */
+        private static int slots(int capacity) {
+            return Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+        }
+
+        float[] get(long[] key) {
+            var dimensions = (int) INT.getVolatile(index, DIMENSIONS);
+            if (dimensions == 0) {
+                return null;
+            }
+            var slot = (int) key[0] & slotMask;
+            while (true) {
+                var offset = HEADER_SIZE + slot * SLOT_SIZE;
+                var state = (int) INT.getAcquire(index, offset);
+                if (state == 0) {
+                    return null;
+                }
+                if (state > 0 && index.getLong(offset + 8) == key[0] && index.getLong(offset + 16) == key[1]) {
+                    var mapped = records(dimensions);
+                    if (mapped == null) {
+                        return null;
+                    }
+                    var vector = new float[dimensions];
+                    var start = (long) (state - 1) * dimensions * Float.BYTES;
+                    for (var i = 0; i < dimensions; i++) {
+                        vector[i] = mapped.getFloat((int) (start + i * Float.BYTES));
+                    }
+                    return vector;
+                }
+                slot = (slot + 1) & slotMask;
+            }
+        }
+
+        /**
+         * Claims a slot for the key, then appends the vector and publishes it in the index. The
+         * vector is dropped when the key is already there, when the file is full or when it holds
+         * vectors of other dimensions.
+         */
+        void put(long[] key, float[] vector) {
+            var dimensions = (int) INT.getVolatile(index, DIMENSIONS);
+            if (dimensions == 0) {
+                INT.compareAndSet(index, DIMENSIONS, 0, vector.length);
+                dimensions = (int) INT.getVolatile(index, DIMENSIONS);
+            }
+            if (dimensions != vector.length || (int) INT.getVolatile(index, COUNT) >= capacity) {
+                return;
+            }
+            var mapped = records(dimensions);
+            if (mapped == null) {
+                return;
+            }
+            var offset = claim(key);
+            if (offset < 0) {
+                return;
+            }
+            int record;
+            do {
+                record = (int) INT.getVolatile(index, COUNT);
+                if (record >= capacity) {
+                    return;
+                }
+            } while (!INT.compareAndSet(index, COUNT, record, record + 1));
+            var start = (long) record * dimensions * Float.BYTES;
+            for (var i = 0; i < dimensions; i++) {
+                mapped.putFloat((int) (start + i * Float.BYTES), vector[i]);
+            }
+            INT.compareAndSet(index, offset, WRITING_VECTOR, record + 1);
+        }
+
+        /**
+         * Gives the offset of the slot claimed for the key, or -1 if the key is there already or
+         * being written by another put.
+         */
+        private int claim(long[] key) {
+            var slot = (int) key[0] & slotMask;
+            var spins = 0;
+            while (true) {
+                var offset = HEADER_SIZE + slot * SLOT_SIZE;
+                var state = (int) INT.getAcquire(index, offset);
+                if (state == 0) {
+                    if (INT.compareAndSet(index, offset, 0, WRITING_KEY)) {
+                        INT.set(index, offset + 4, now());
+                        index.putLong(offset + 8, key[0]);
+                        index.putLong(offset + 16, key[1]);
+                        INT.setRelease(index, offset, WRITING_VECTOR);
+                        return offset;
+                    }
+                    continue;
+                }
+                // A key takes a few writes, so it is waited for rather than possibly duplicated.
+                if (state == WRITING_KEY && spins < MAX_KEY_SPINS) {
+                    spins++;
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (state != WRITING_KEY && index.getLong(offset + 8) == key[0]
+                        && index.getLong(offset + 16) == key[1]) {
+                    if (state != WRITING_VECTOR) {
+                        return -1;
+                    }
+                    var claimed = (int) INT.getVolatile(index, offset + 4);
+                    var now = now();
+                    return now - claimed >= STALE_SECONDS && INT.compareAndSet(index, offset + 4, claimed, now)
+                            ? offset
+                            : -1;
+                }
+                slot = (slot + 1) & slotMask;
+                spins = 0;
+            }
+        }
+
+        private static int now() {
+            return (int) (System.currentTimeMillis() / 1000);
+        }
+
+        /**
+         * Maps the vectors once their dimensions are known, growing the file to hold all of them.
+         */
+        private MappedByteBuffer records(int dimensions) {
+            var mapped = records;
+            if (mapped != null) {
+                return mapped;
+            }
+            var size = (long) capacity * dimensions * Float.BYTES;
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            synchronized (this) {
+                if (records == null) {
+                    try {
+                        if (channel.size() < recordsOffset + size) {
+                            synchronized (OPEN_LOCK) {
+                                try (var lock = channel.lock()) {
+                                    if (channel.size() < recordsOffset + size) {
+                                        channel.write(ByteBuffer.allocate(1), recordsOffset + size - 1);
+                                    }
+                                }
+                            }
+                        }
+                        var buffer = channel.map(FileChannel.MapMode.READ_WRITE, recordsOffset, size);
+                        buffer.order(ByteOrder.LITTLE_ENDIAN);
+                        records = buffer;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return records;
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+}
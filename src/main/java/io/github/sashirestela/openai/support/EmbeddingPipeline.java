@@ -0,0 +1,626 @@
+package io.github.sashirestela.openai.support;
+
+import io.github.sashirestela.openai.OpenAI;
+import io.github.sashirestela.openai.base.RetryPolicy;
+import io.github.sashirestela.openai.domain.embedding.Embedding;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingVector;
+import io.github.sashirestela.openai.exception.OpenAIException;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Embeds a corpus of any size, like millions of chunks, with one call.
+ * <p>
+ * The texts are pulled as needed and packed into requests bounded by the number of inputs and the
+ * number of tokens the API accepts per request. The requests are sent in base64 format, with a
+ * bounded number in progress, and each vector is handed to a sink in the order of the texts, so
+ * nothing but the requests in progress is held in memory. A request failing with a
+ * {@link OpenAIException.RateLimitException RateLimitException} pauses the whole pipeline for the
+ * delay asked by the server, or a growing delay, and is sent again:
+ * </p>
+ *
+ * <pre>
+ * var pipeline = EmbeddingPipeline.builder()
+ *         .embeddings(openAI.embeddings())
+ *         .model("text-embedding-3-small")
+ *         .maxConcurrency(16)
+ *         .build();
+ * try (var chunks = Files.lines(Path.of("chunks.txt"))) {
+ *     var result = pipeline.run(chunks, (index, vector) -&gt; store.write(index, vector)).join();
+ * }
+ * </pre>
+ * <p>
+ * Any other failure stops the pipeline, with an exception naming the texts of the failed request.
+ * As the vectors are handed in order, the ones handed before a failure are those of the first
+ * {@code n} texts, so the run may be resumed by skipping them. With a {@link FailureHandler}, the
+ * texts of a failed request are handed to it instead and the run goes on. A request the server
+ * rejects as a bad request is then split in halves and sent again, down to the texts it rejects,
+ * so only those are skipped.
+ * </p>
+ */
+@Getter
+public class EmbeddingPipeline {
+
+    private static final int DEFAULT_MAX_INPUTS_PER_REQUEST = 2048;
+    private static final int DEFAULT_MAX_TOKENS_PER_REQUEST = 300_000;
+    private static final int DEFAULT_MAX_CONCURRENCY = 8;
+    private static final int DEFAULT_MAX_RATE_LIMIT_RETRIES = 5;
+    private static final Duration DEFAULT_RATE_LIMIT_DELAY = Duration.ofSeconds(1);
+    private static final Duration MAX_RATE_LIMIT_DELAY = Duration.ofMinutes(1);
+
+    private final OpenAI.Embeddings embeddings;
+    private final String model;
+    private final Integer dimensions;
+    private final int maxInputsPerRequest;
+    private final int maxTokensPerRequest;
+    private final int maxConcurrency;
+    private final int maxRateLimitRetries;
+    private final ToIntFunction<String> tokenCounter;
+
+    /**
+     * Constructor used to generate a builder.
+     *
+     * @param embeddings          The embeddings service. Mandatory.
+     * @param model               The embedding model. Mandatory.
+     * @param dimensions          The dimensions of the embeddings, for the models supporting it.
+     *                            Optional.
+     * @param maxInputsPerRequest Maximum number of texts per request. Optional, defaults to 2048.
+     * @param maxTokensPerRequest Maximum number of tokens per request, as counted by the
+     *                            tokenCounter. Optional, defaults to 300000.
+     * @param maxConcurrency      Maximum number of requests in progress. Optional, defaults to 8.
+     * @param maxRateLimitRetries Maximum number of times a request is sent again after a rate limit
+     *                            failure. Optional, defaults to 5.
+     * @param tokenCounter        Counts the tokens of a text. Optional, defaults to an estimate of
+     *                            one token per three characters, which errs on the safe side for
+     *                            most texts.
+     */
+    @Builder
+    public EmbeddingPipeline(@NonNull OpenAI.Embeddings embeddings, @NonNull String model, Integer dimensions,
+            Integer maxInputsPerRequest, Integer maxTokensPerRequest, Integer maxConcurrency,
+            Integer maxRateLimitRetries, ToIntFunction<String> tokenCounter) {
+        if (maxInputsPerRequest != null && maxInputsPerRequest < 1) {
+            throw new SimpleOpenAIException("The maxInputsPerRequest must be at least 1.");
+        }
+        if (maxTokensPerRequest != null && maxTokensPerRequest < 1) {
+            throw new SimpleOpenAIException("The maxTokensPerRequest must be at least 1.");
+        }
+        if (maxConcurrency != null && maxConcurrency < 1) {
+            throw new SimpleOpenAIException("The maxConcurrency must be at least 1.");
+        }
+        if (maxRateLimitRetries != null && maxRateLimitRetries < 0) {
+            throw new SimpleOpenAIException("The maxRateLimitRetries must not be negative.");
+        }
+        this.embeddings = embeddings;
+        this.model = model;
+        this.dimensions = dimensions;
+        this.maxInputsPerRequest = Optional.ofNullable(maxInputsPerRequest).orElse(DEFAULT_MAX_INPUTS_PER_REQUEST);
+        this.maxTokensPerRequest = Optional.ofNullable(maxTokensPerRequest).orElse(DEFAULT_MAX_TOKENS_PER_REQUEST);
+        this.maxConcurrency = Optional.ofNullable(maxConcurrency).orElse(DEFAULT_MAX_CONCURRENCY);
+        this.maxRateLimitRetries = Optional.ofNullable(maxRateLimitRetries).orElse(DEFAULT_MAX_RATE_LIMIT_RETRIES);
+        this.tokenCounter = Optional.ofNullable(tokenCounter).orElse(text -> text.length() / 3 + 1);
+    }
+
+    /**
+     * Embeds every text of a Stream.
+     *
+     * @param texts The texts to embed. It is closed at the end of the run.
+     * @param sink  Receives the vectors in the order of the texts.
+     * @return The outcome of the run, once every vector is handed to the sink.
+     */
+    public CompletableFuture<PipelineResult> run(@NonNull Stream<String> texts, @NonNull VectorSink sink) {
+        return run(texts.iterator(), sink, null, texts::close);
+    }
+
+    /**
+     * Embeds every text of a Stream, skipping the texts which cannot be embedded.
+     *
+     * @param texts          The texts to embed. It is closed at the end of the run.
+     * @param sink           Receives the vectors in the order of the texts.
+     * @param failureHandler Receives the texts which cannot be embedded, in their place in the
+     *                       order of the texts.
+     * @return The outcome of the run, once every text is handed to the sink or the failure handler.
+     */
+    public CompletableFuture<PipelineResult> run(@NonNull Stream<String> texts, @NonNull VectorSink sink,
+            @NonNull FailureHandler failureHandler) {
+        return run(texts.iterator(), sink, failureHandler, texts::close);
+    }
+
+    /**
+     * Embeds every text of an Iterator.
+     *
+     * @param texts The texts to embed.
+     * @param sink  Receives the vectors in the order of the texts.
+     * @return The outcome of the run, once every vector is handed to the sink.
+     */
+    public CompletableFuture<PipelineResult> run(@NonNull Iterator<String> texts, @NonNull VectorSink sink) {
+        return run(texts, sink, null, () -> {
+        });
+    }
+
+    /**
+     * Embeds every text of an Iterator, skipping the texts which cannot be embedded.
+     *
+     * @param texts          The texts to embed.
+     * @param sink           Receives the vectors in the order of the texts.
+     * @param failureHandler Receives the texts which cannot be embedded, in their place in the
+     *                       order of the texts.
+     * @return The outcome of the run, once every text is handed to the sink or the failure handler.
+     */
+    public CompletableFuture<PipelineResult> run(@NonNull Iterator<String> texts, @NonNull VectorSink sink,
+            @NonNull FailureHandler failureHandler) {
+        return run(texts, sink, failureHandler, () -> {
+        });
+    }
+
+    private CompletableFuture<PipelineResult> run(Iterator<String> texts, VectorSink sink,
+            FailureHandler failureHandler, Runnable onClose) {
+        var job = new Job(texts, sink, failureHandler, onClose);
+        job.dispatch();
+        return job.result;
+    }
+
+    /**
+     * Receives the vectors of a run.
+     */
+    @FunctionalInterface
+    public interface VectorSink {
+
+        /**
+         * Receives one vector. It is called by one thread at a time, in the order of the texts.
+         *
+         * @param index  The position of the text, starting at 0.
+         * @param vector The embedding of the text.
+         */
+        void accept(long index, float[] vector);
+
+    }
+
+    /**
+     * Receives the texts of a run which cannot be embedded.
+     */
+    @FunctionalInterface
+    public interface FailureHandler {
+
+        /**
+         * Receives one text which cannot be embedded. It is called like the sink, by one thread at a
+         * time, in the order of the texts. Throwing an exception stops the run with it.
+         *
+         * @param index   The position of the text, starting at 0.
+         * @param text    The text.
+         * @param failure The failure of the request holding the text.
+         */
+        void accept(long index, String text, Throwable failure);
+
+    }
+
+    /**
+     * The texts of one request. A request split to find the texts the server rejects is sent again
+     * as parts, which fill in the outcome of the whole batch they come from.
+     */
+    private static final class Batch {
+
+        private final Batch whole;
+        private final long sequence;
+        private final long firstIndex;
+        private final int offset;
+        private final List<String> texts;
+        private float[][] vectors;
+        private Throwable[] failures;
+        private int unresolved;
+        private int attempts;
+
+        Batch(long sequence, long firstIndex, List<String> texts) {
+            this(null, sequence, firstIndex, 0, texts);
+            this.vectors = new float[texts.size()][];
+            this.unresolved = texts.size();
+        }
+
+        private Batch(Batch whole, long sequence, long firstIndex, int offset, List<String> texts) {
+            this.whole = whole != null ? whole : this;
+            this.sequence = sequence;
+            this.firstIndex = firstIndex;
+            this.offset = offset;
+            this.texts = texts;
+        }
+
+        Batch part(int from, int to) {
+            return new Batch(whole, sequence, firstIndex + from, offset + from, texts.subList(from, to));
+        }
+
+        long lastIndex() {
+            return firstIndex + texts.size() - 1;
+        }
+
+    }
+
+    /**
+     * The state of one run.
+     */
+    private final class Job {
+
+        private final CompletableFuture<PipelineResult> result = new CompletableFuture<>();
+        private final Iterator<String> texts;
+        private final VectorSink sink;
+        private final FailureHandler failureHandler;
+        private final Runnable onClose;
+        private final Deque<Batch> retries = new ArrayDeque<>();
+        private final Map<Long, Batch> arrived = new HashMap<>();
+        private final Set<CompletableFuture<?>> inFlight = new HashSet<>();
+        private String carried;
+        private long nextSequence;
+        private long nextIndex;
+        private long nextToHand;
+        private long handed;
+        private long failedTexts;
+        private long requests;
+        private long promptTokens;
+        private int running;
+        private int rateLimitPauses;
+        private long pausedUntil;
+        private boolean exhausted;
+        private boolean dispatching;
+        private boolean finished;
+        private Throwable failure;
+
+        Job(Iterator<String> texts, VectorSink sink, FailureHandler failureHandler, Runnable onClose) {
+            this.texts = texts;
+            this.sink = sink;
+            this.failureHandler = failureHandler;
+            this.onClose = onClose;
+        }
+
+        /**
+         * Hands the vectors arrived in order, sends requests until the slots are full, and completes
+         * the run once nothing is left. Only one thread dispatches at a time; the requests completing
+         * meanwhile leave the dispatching to it instead of recursing.
+         */
+        void dispatch() {
+            synchronized (this) {
+                if (dispatching) {
+                    return;
+                }
+                dispatching = true;
+            }
+            Batch batch;
+            while ((batch = next()) != null) {
+                send(batch);
+            }
+        }
+
+        /**
+         * Gives the next batch to send in a reserved slot, or null once the dispatching stops. The
+         * texts are pulled and the vectors are handed outside the monitor, so neither a lazy source
+         * nor a slow sink holds up the requests completing meanwhile.
+         */
+        private Batch next() {
+            while (true) {
+                Batch ready;
+                synchronized (this) {
+                    if (finished) {
+                        return stop();
+                    }
+                    ready = arrived.remove(nextToHand);
+                    if (ready == null) {
+                        if (pausedUntil != 0 && pausedUntil - System.nanoTime() <= 0) {
+                            pausedUntil = 0;
+                        }
+                        if (pausedUntil != 0 || running >= maxConcurrency) {
+                            return stop();
+                        }
+                        if (!retries.isEmpty()) {
+                            running++;
+                            return retries.poll();
+                        }
+                        // The requests ahead of the oldest one not handed yet are bounded, so a slow
+                        // request does not make the vectors after it pile up.
+                        if (exhausted || nextSequence - nextToHand >= 2L * maxConcurrency) {
+                            if (exhausted && running == 0) {
+                                finish(null);
+                            }
+                            return stop();
+                        }
+                        running++;
+                    }
+                }
+                if (ready != null) {
+                    hand(ready);
+                    continue;
+                }
+                Batch batch;
+                try {
+                    batch = pack();
+                } catch (RuntimeException e) {
+                    synchronized (this) {
+                        running--;
+                        finish(e);
+                        return stop();
+                    }
+                }
+                synchronized (this) {
+                    if (batch == null) {
+                        exhausted = true;
+                    } else if (!finished && pausedUntil == 0) {
+                        return batch;
+                    } else if (!finished) {
+                        retries.addFirst(batch);
+                    }
+                    running--;
+                }
+            }
+        }
+
+        private Batch stop() {
+            dispatching = false;
+            if (finished) {
+                close();
+            }
+            return null;
+        }
+
+        /**
+         * Takes the next texts fitting in one request. A text too large for any request is sent
+         * alone, and left to the server to accept or not.
+         */
+        private Batch pack() {
+            var batchTexts = new ArrayList<String>();
+            var tokens = 0L;
+            while (batchTexts.size() < maxInputsPerRequest) {
+                var text = carried != null ? carried : texts.hasNext() ? texts.next() : null;
+                carried = null;
+                if (text == null) {
+                    break;
+                }
+                var textTokens = tokenCounter.applyAsInt(text);
+                if (!batchTexts.isEmpty() && tokens + textTokens > maxTokensPerRequest) {
+                    carried = text;
+                    break;
+                }
+                batchTexts.add(text);
+                tokens += textTokens;
+            }
+            if (batchTexts.isEmpty()) {
+                return null;
+            }
+            var batch = new Batch(nextSequence++, nextIndex, batchTexts);
+            nextIndex += batchTexts.size();
+            return batch;
+        }
+
+        private void send(Batch batch) {
+            var request = EmbeddingRequest.builder().input(batch.texts).model(model).dimensions(dimensions).build();
+            CompletableFuture<Embedding<EmbeddingVector>> call;
+            try {
+                call = embeddings.createVectorBase64(request);
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            var sent = call;
+            synchronized (this) {
+                requests++;
+                if (finished) {
+                    sent.cancel(true);
+                } else {
+                    inFlight.add(sent);
+                }
+            }
+            sent.whenComplete((embedding, throwable) -> onDone(batch, sent, embedding, throwable));
+        }
+
+        private void onDone(Batch batch, CompletableFuture<?> call, Embedding<EmbeddingVector> embedding,
+                Throwable throwable) {
+            var cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause()
+                    : throwable;
+            float[][] vectors = null;
+            if (cause == null) {
+                try {
+                    vectors = vectors(batch, embedding);
+                } catch (RuntimeException e) {
+                    cause = e;
+                }
+            }
+            synchronized (this) {
+                running--;
+                inFlight.remove(call);
+                if (finished) {
+                    return;
+                }
+                if (cause instanceof OpenAIException.RateLimitException && ++batch.attempts <= maxRateLimitRetries) {
+                    retries.add(batch);
+                    pause((OpenAIException) cause);
+                    return;
+                }
+                if (cause != null) {
+                    fail(batch, cause);
+                } else {
+                    System.arraycopy(vectors, 0, batch.whole.vectors, batch.offset, vectors.length);
+                    if (embedding.getUsage() != null && embedding.getUsage().getPromptTokens() != null) {
+                        promptTokens += embedding.getUsage().getPromptTokens();
+                    }
+                    resolve(batch);
+                }
+            }
+            dispatch();
+        }
+
+        private float[][] vectors(Batch batch, Embedding<EmbeddingVector> embedding) {
+            var vectors = new float[batch.texts.size()][];
+            for (var data : embedding.getData()) {
+                vectors[data.getIndex()] = data.getEmbedding();
+            }
+            for (var i = 0; i < vectors.length; i++) {
+                if (vectors[i] == null) {
+                    throw new SimpleOpenAIException("The embedding of the text {0} is missing in the response.",
+                            String.valueOf(batch.firstIndex + i), null);
+                }
+            }
+            return vectors;
+        }
+
+        /**
+         * Stops the run on a failed request, or, with a failure handler, splits a bad request to
+         * find the texts the server rejects, and keeps the failure of the texts to skip.
+         */
+        private void fail(Batch batch, Throwable cause) {
+            if (failureHandler == null) {
+                finish(new SimpleOpenAIException("The request of the texts {0} to {1} failed.",
+                        String.valueOf(batch.firstIndex), String.valueOf(batch.lastIndex()), cause));
+                return;
+            }
+            var size = batch.texts.size();
+            if (cause instanceof OpenAIException.BadRequestException && size > 1) {
+                retries.addFirst(batch.part(size / 2, size));
+                retries.addFirst(batch.part(0, size / 2));
+                return;
+            }
+            var whole = batch.whole;
+            if (whole.failures == null) {
+                whole.failures = new Throwable[whole.texts.size()];
+            }
+            Arrays.fill(whole.failures, batch.offset, batch.offset + size, cause);
+            resolve(batch);
+        }
+
+        private void resolve(Batch batch) {
+            var whole = batch.whole;
+            whole.unresolved -= batch.texts.size();
+            if (whole.unresolved == 0) {
+                arrived.put(whole.sequence, whole);
+            }
+        }
+
+        /**
+         * Hands to the sink, or to the failure handler, the outcome of each text of the next batch
+         * in order.
+         */
+        private void hand(Batch batch) {
+            var vectors = 0L;
+            var failures = 0L;
+            try {
+                for (var i = 0; i < batch.vectors.length; i++) {
+                    if (batch.vectors[i] != null) {
+                        sink.accept(batch.firstIndex + i, batch.vectors[i]);
+                        vectors++;
+                    } else {
+                        failureHandler.accept(batch.firstIndex + i, batch.texts.get(i), batch.failures[i]);
+                        failures++;
+                    }
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    finish(e);
+                }
+            } finally {
+                synchronized (this) {
+                    handed += vectors;
+                    failedTexts += failures;
+                    nextToHand++;
+                }
+            }
+        }
+
+        private void pause(OpenAIException exception) {
+            var delay = RetryPolicy.retryAfter(exception).orElseGet(() -> {
+                var grown = DEFAULT_RATE_LIMIT_DELAY.multipliedBy(1L << Math.min(rateLimitPauses, 6));
+                return grown.compareTo(MAX_RATE_LIMIT_DELAY) > 0 ? MAX_RATE_LIMIT_DELAY : grown;
+            });
+            rateLimitPauses++;
+            var until = System.nanoTime() + delay.toNanos();
+            if (until - pausedUntil > 0 || pausedUntil == 0) {
+                pausedUntil = until;
+                CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS).execute(this::dispatch);
+            }
+        }
+
+        /**
+         * Ends the run and cancels the requests in progress. The source is closed by the thread
+         * dispatching, if any, once it is done with it.
+         */
+        private void finish(Throwable throwable) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            failure = throwable;
+            new ArrayList<>(inFlight).forEach(call -> call.cancel(true));
+            inFlight.clear();
+            if (!dispatching) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (result.isDone()) {
+                return;
+            }
+            var throwable = failure;
+            try {
+                onClose.run();
+            } catch (RuntimeException e) {
+                throwable = throwable != null ? throwable : e;
+            }
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.complete(new PipelineResult(handed, failedTexts, requests, promptTokens, rateLimitPauses));
+            }
+        }
+
+    }
+
+    /**
+     * The outcome of a run.
+     */
+    @Getter
+    public static class PipelineResult {
+
+        /**
+         * Number of texts embedded.
+         */
+        private final long texts;
+
+        /**
+         * Number of texts handed to the failure handler.
+         */
+        private final long failedTexts;
+
+        /**
+         * Number of requests sent, including the ones sent again after a rate limit failure.
+         */
+        private final long requests;
+
+        private final long promptTokens;
+        private final int rateLimitPauses;
+
+        PipelineResult(long texts, long failedTexts, long requests, long promptTokens, int rateLimitPauses) {
+            this.texts = texts;
+            this.failedTexts = failedTexts;
+            this.requests = requests;
+            this.promptTokens = promptTokens;
+            this.rateLimitPauses = rateLimitPauses;
+        }
+
+    }
+
+}
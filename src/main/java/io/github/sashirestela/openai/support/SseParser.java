@@ -0,0 +1,208 @@
+package io.github.sashirestela.openai.support;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Incremental parser of Server-Sent Events working on raw bytes.
+ * <p>
+ * Bytes are fed as they arrive from the socket, in buffers of any size, and the payload of each
+ * event (its 'data' lines) is handed to the listener as a region of a reusable array, so no string
+ * is created per line or per event. The payload is always followed by a line feed in the array,
+ * which lets Json parsers end the value without looking for more input. The end-of-stream marker
+ * used by OpenAI ('[DONE]') is reported separately. The 'event' field, sent only by the assistant
+ * streams, is available through {@link #getEventName()} while the listener runs.
+ * </p>
+ */
+public final class SseParser {
+
+    private static final byte[] DATA_FIELD = { 'd', 'a', 't', 'a' };
+    private static final byte[] EVENT_FIELD = { 'e', 'v', 'e', 'n', 't' };
+    private static final byte[] DONE_MARKER = { '[', 'D', 'O', 'N', 'E', ']' };
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Listener listener;
+    private byte[] line = new byte[INITIAL_CAPACITY];
+    private int lineLength;
+    private byte[] data = new byte[INITIAL_CAPACITY];
+    private int dataLength;
+    private boolean hasData;
+    private String eventName;
+    private boolean afterCarriageReturn;
+    private boolean done;
+
+    /**
+     * Receives the events found by the parser.
+     */
+    public interface Listener {
+
+        /**
+         * Called for each event with data, except the end-of-stream marker.
+         *
+         * @param data   Array holding the payload. It is reused for the next event.
+         * @param length Number of payload bytes, starting at index 0, followed by a line feed.
+         */
+        void onData(byte[] data, int length);
+
+        /**
+         * Called once when the end-of-stream marker arrives.
+         */
+        default void onDone() {
+        }
+
+    }
+
+    public SseParser(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Consumes all the remaining bytes of the buffer, without changing its position.
+     *
+     * @param buffer Bytes of the response body.
+     */
+    public void feed(ByteBuffer buffer) {
+        var limit = buffer.limit();
+        for (int i = buffer.position(); i < limit && !done; i++) {
+            feed(buffer.get(i));
+        }
+    }
+
+    /**
+     * Consumes a region of an array.
+     *
+     * @param bytes  Bytes of the response body.
+     * @param offset Start of the region.
+     * @param length Length of the region.
+     */
+    public void feed(byte[] bytes, int offset, int length) {
+        var end = offset + length;
+        for (int i = offset; i < end && !done; i++) {
+            feed(bytes[i]);
+        }
+    }
+
+    /**
+     * Dispatches a pending event if the body ended without the blank line that closes it.
+     */
+    public void finish() {
+        if (lineLength > 0) {
+            endLine();
+        }
+        dispatch();
+    }
+
+    /**
+     * Whether the end-of-stream marker was found. Input after the marker is ignored.
+     *
+     * @return True after the marker.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Name given by the 'event' field to the event being dispatched.
+     *
+     * @return The event name, or null if the event has none.
+     */
+    public String getEventName() {
+        return eventName;
+    }
+
+    private void feed(byte value) {
+        if (value == '\n') {
+            if (afterCarriageReturn) {
+                afterCarriageReturn = false;
+                return;
+            }
+            endLine();
+        } else if (value == '\r') {
+            afterCarriageReturn = true;
+            endLine();
+        } else {
+            afterCarriageReturn = false;
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = value;
+        }
+    }
+
+    private void endLine() {
+        if (lineLength == 0) {
+            dispatch();
+            return;
+        }
+        if (isField(DATA_FIELD)) {
+            appendData(valueStart(DATA_FIELD));
+        } else if (isField(EVENT_FIELD)) {
+            var start = valueStart(EVENT_FIELD);
+            eventName = start < lineLength ? new String(line, start, lineLength - start, StandardCharsets.UTF_8) : null;
+        }
+        // Comments and the 'id' and 'retry' fields are not used by the OpenAI streams.
+        lineLength = 0;
+    }
+
+    private boolean isField(byte[] field) {
+        if (lineLength < field.length + 1 || line[field.length] != ':') {
+            return lineLength == field.length && startsWith(line, field);
+        }
+        return startsWith(line, field);
+    }
+
+    private int valueStart(byte[] field) {
+        var start = field.length + 1;
+        if (start < lineLength && line[start] == ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private void appendData(int start) {
+        var count = Math.max(0, lineLength - start);
+        // Room for the separator between data lines and for the trailing line feed.
+        ensureData(dataLength + count + 2);
+        if (hasData) {
+            data[dataLength++] = '\n';
+        }
+        System.arraycopy(line, start, data, dataLength, count);
+        dataLength += count;
+        hasData = true;
+    }
+
+    private void dispatch() {
+        if (!hasData) {
+            eventName = null;
+            return;
+        }
+        var length = dataLength;
+        hasData = false;
+        dataLength = 0;
+        if (length == DONE_MARKER.length && startsWith(data, DONE_MARKER)) {
+            done = true;
+            listener.onDone();
+        } else {
+            data[length] = '\n';
+            listener.onData(data, length);
+        }
+        eventName = null;
+    }
+
+    private void ensureData(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, capacity));
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,117 @@
+package io.github.sashirestela.openai.support;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * A reusable view of the delta fields carried by one chunk of a chat or completion stream.
+ * <p>
+ * Only the fields needed to rebuild the answer are extracted: the choice index, role, content
+ * (the 'text' of legacy completions), refusal, finish reason, tool call fragments and the final
+ * usage. The same instance is refilled for every choice of every chunk, so it must not be kept
+ * beyond the handler call; copy what you need, e.g. with {@link CharSlice#appendTo(StringBuilder)}.
+ * </p>
+ * <p>
+ * The last chunk of a stream requested with 'include_usage' is reported as a usage delta: its
+ * {@link #getChoiceIndex() choiceIndex} is -1 and only the token counts are set.
+ * </p>
+ */
+@Getter
+public final class StreamDelta {
+
+    int choiceIndex;
+    String role;
+    final CharSlice content = new CharSlice();
+    final CharSlice refusal = new CharSlice();
+    String finishReason;
+    int toolCallCount;
+    int promptTokens;
+    int completionTokens;
+    int totalTokens;
+
+    @Getter(AccessLevel.NONE)
+    ToolCallDelta[] toolCalls = new ToolCallDelta[0];
+
+    StreamDelta() {
+        clearChoice();
+        clearUsage();
+    }
+
+    /**
+     * Whether this delta carries the final usage instead of a choice.
+     *
+     * @return True for the usage delta.
+     */
+    public boolean isUsage() {
+        return choiceIndex < 0;
+    }
+
+    /**
+     * Returns a tool call fragment of this delta.
+     *
+     * @param position Position between 0 and {@link #getToolCallCount()} - 1.
+     * @return The fragment, valid only inside the handler call.
+     */
+    public ToolCallDelta getToolCall(int position) {
+        if (position < 0 || position >= toolCallCount) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of bounds for " + toolCallCount);
+        }
+        return toolCalls[position];
+    }
+
+    void clearChoice() {
+        choiceIndex = 0;
+        role = null;
+        content.clear();
+        refusal.clear();
+        finishReason = null;
+        toolCallCount = 0;
+    }
+
+    void clearUsage() {
+        promptTokens = -1;
+        completionTokens = -1;
+        totalTokens = -1;
+    }
+
+    boolean hasUsage() {
+        return totalTokens >= 0 || promptTokens >= 0 || completionTokens >= 0;
+    }
+
+    ToolCallDelta nextToolCall() {
+        if (toolCallCount == toolCalls.length) {
+            toolCalls = Arrays.copyOf(toolCalls, toolCalls.length + 1);
+            toolCalls[toolCallCount] = new ToolCallDelta();
+        }
+        var toolCall = toolCalls[toolCallCount++];
+        toolCall.clear();
+        return toolCall;
+    }
+
+    /**
+     * A fragment of a tool call. The id and the name come in the first fragment of each call, and
+     * the arguments are split across the following ones.
+     */
+    @Getter
+    public static final class ToolCallDelta {
+
+        int index;
+        final CharSlice id = new CharSlice();
+        final CharSlice name = new CharSlice();
+        final CharSlice arguments = new CharSlice();
+
+        ToolCallDelta() {
+        }
+
+        void clear() {
+            index = 0;
+            id.clear();
+            name.clear();
+            arguments.clear();
+        }
+
+    }
+
+}
@@ -0,0 +1,205 @@
+package io.github.sashirestela.openai.support;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Extracts the delta fields of chat and completion chunks straight from their Json bytes.
+ * <p>
+ * One non-blocking Jackson parser is kept for the whole stream and fed chunk after chunk, so
+ * neither a Json tree nor a {@code Chat} object is built per token: field names are served from
+ * the parser's symbol table, text values are copied from its buffers into the {@link StreamDelta}
+ * view, and every other field is skipped. Instances are not thread-safe; use one per stream.
+ * </p>
+ */
+public final class StreamDeltaParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final StreamDelta delta = new StreamDelta();
+    private JsonParser parser;
+    private ByteArrayFeeder feeder;
+
+    public StreamDeltaParser() {
+        reset();
+    }
+
+    /**
+     * Parses one chunk and calls the handler once per choice, plus once for the usage if present.
+     *
+     * @param data    Array holding the Json of the chunk.
+     * @param offset  Start of the chunk.
+     * @param length  Length of the chunk.
+     * @param handler Receives the reusable delta view.
+     */
+    public void parse(byte[] data, int offset, int length, Consumer<StreamDelta> handler) {
+        try {
+            feeder.feedInput(data, offset, offset + length);
+            if (next() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "A chunk must be a Json object");
+            }
+            delta.clearUsage();
+            while (next() == JsonToken.FIELD_NAME) {
+                var name = parser.currentName();
+                var token = next();
+                if ("choices".equals(name) && token == JsonToken.START_ARRAY) {
+                    parseChoices(handler);
+                } else if ("usage".equals(name) && token == JsonToken.START_OBJECT) {
+                    parseUsage();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (parser.nextToken() != JsonToken.NOT_AVAILABLE) {
+                throw new JsonParseException(parser, "Unexpected content after the chunk");
+            }
+        } catch (IOException e) {
+            reset();
+            throw new SimpleOpenAIException("Cannot parse the stream chunk.", e);
+        }
+        if (delta.hasUsage()) {
+            delta.clearChoice();
+            delta.choiceIndex = -1;
+            handler.accept(delta);
+        }
+    }
+
+    private void parseChoices(Consumer<StreamDelta> handler) throws IOException {
+        while (next() == JsonToken.START_OBJECT) {
+            delta.clearChoice();
+            while (next() == JsonToken.FIELD_NAME) {
+                var name = parser.currentName();
+                var token = next();
+                switch (name) {
+                    case "index":
+                        delta.choiceIndex = parser.getIntValue();
+                        break;
+                    case "delta":
+                        parseMessage(token);
+                        break;
+                    case "text":
+                        appendText(token, delta.content);
+                        break;
+                    case "finish_reason":
+                        delta.finishReason = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+            handler.accept(delta);
+        }
+    }
+
+    private void parseMessage(JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (next() == JsonToken.FIELD_NAME) {
+            var name = parser.currentName();
+            var valueToken = next();
+            switch (name) {
+                case "role":
+                    delta.role = valueToken == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    break;
+                case "content":
+                    appendText(valueToken, delta.content);
+                    break;
+                case "refusal":
+                    appendText(valueToken, delta.refusal);
+                    break;
+                case "tool_calls":
+                    parseToolCalls(valueToken);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+    }
+
+    private void parseToolCalls(JsonToken token) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (next() == JsonToken.START_OBJECT) {
+            var toolCall = delta.nextToolCall();
+            while (next() == JsonToken.FIELD_NAME) {
+                var name = parser.currentName();
+                var valueToken = next();
+                if ("index".equals(name)) {
+                    toolCall.index = parser.getIntValue();
+                } else if ("id".equals(name)) {
+                    appendText(valueToken, toolCall.id);
+                } else if ("function".equals(name) && valueToken == JsonToken.START_OBJECT) {
+                    while (next() == JsonToken.FIELD_NAME) {
+                        var field = parser.currentName();
+                        var fieldToken = next();
+                        if ("name".equals(field)) {
+                            appendText(fieldToken, toolCall.name);
+                        } else if ("arguments".equals(field)) {
+                            appendText(fieldToken, toolCall.arguments);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private void parseUsage() throws IOException {
+        while (next() == JsonToken.FIELD_NAME) {
+            var name = parser.currentName();
+            var token = next();
+            var isNumber = token == JsonToken.VALUE_NUMBER_INT;
+            if ("prompt_tokens".equals(name) && isNumber) {
+                delta.promptTokens = parser.getIntValue();
+            } else if ("completion_tokens".equals(name) && isNumber) {
+                delta.completionTokens = parser.getIntValue();
+            } else if ("total_tokens".equals(name) && isNumber) {
+                delta.totalTokens = parser.getIntValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void appendText(JsonToken token, CharSlice slice) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            slice.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        } else {
+            parser.skipChildren();
+        }
+    }
+
+    private JsonToken next() throws IOException {
+        var token = parser.nextToken();
+        if (token == null || token == JsonToken.NOT_AVAILABLE) {
+            throw new JsonParseException(parser, "The chunk is not a complete Json object");
+        }
+        return token;
+    }
+
+    private void reset() {
+        try {
+            parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new SimpleOpenAIException("Cannot create the stream parser.", e);
+        }
+        feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+}
@@ -0,0 +1,311 @@
+package io.github.sashirestela.openai.support;
+
+import io.github.sashirestela.openai.OpenAI;
+import io.github.sashirestela.openai.base.CallScope;
+import io.github.sashirestela.openai.base.Deadline;
+import io.github.sashirestela.openai.domain.chat.Chat;
+import io.github.sashirestela.openai.domain.chat.ChatRequest;
+import io.github.sashirestela.openai.domain.completion.Completion;
+import io.github.sashirestela.openai.domain.completion.CompletionRequest;
+import io.github.sashirestela.openai.exception.DeadlineExceededException;
+import io.github.sashirestela.openai.exception.DeadlineExceededException.Phase;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Watches chat and completion streams for stalls between chunks.
+ * <p>
+ * Every stream runs in a {@link CallScope} whose {@link Deadline} bounds the wait for the first
+ * chunk and between two chunks, so a stalled exchange is aborted with a
+ * {@link DeadlineExceededException} instead of holding the consumer until the server gives up. With
+ * a fallback, the request is then reissued into the same stream:
+ * </p>
+ * <ul>
+ * <li>A chat stream which stalls before its first chunk is restarted. Once a chunk was delivered,
+ * it fails with the stall: a chat model given the partial answer as an assistant message writes a
+ * new answer instead of continuing it, so the consumer would see the answer repeated or
+ * restarted.</li>
+ * <li>A legacy completion stream is continued: the text already received is appended to the prompt,
+ * which the model does continue, so the consumer sees one continuous completion. An output that
+ * cannot be continued, like several choices or an echoed prompt, fails with the stall once a chunk
+ * of it was delivered.</li>
+ * </ul>
+ * <p>
+ * The reissued request is waited for by the thread reading the stream, as the chunks are. Closing
+ * the stream from another thread aborts that wait.
+ * </p>
+ *
+ * <pre>
+ * var watchdog = StreamWatchdog.builder()
+ *         .stallTimeout(Duration.ofSeconds(5))
+ *         .fallback(Fallback.NON_STREAM)
+ *         .build();
+ * var chatStream = watchdog.createStream(openAI.chatCompletions(), chatRequest).join();
+ * </pre>
+ */
+@Getter
+public class StreamWatchdog {
+
+    private static final int DEFAULT_MAX_REISSUES = 1;
+
+    private final Duration stallTimeout;
+    private final Duration firstChunkTimeout;
+    private final int maxReissues;
+    private final Fallback fallback;
+    private final Deadline deadline;
+
+    /**
+     * Constructor used to generate a builder.
+     *
+     * @param stallTimeout      Maximum time between two chunks of a stream. Mandatory.
+     * @param firstChunkTimeout Maximum time from sending the request to receiving the first chunk.
+     *                          Optional.
+     * @param maxReissues       Maximum number of times a stalled request is reissued. Optional,
+     *                          defaults to 1.
+     * @param fallback          How a stalled request is reissued. Optional, defaults to
+     *                          {@link Fallback#STREAM STREAM}.
+     */
+    @Builder
+    public StreamWatchdog(@NonNull Duration stallTimeout, Duration firstChunkTimeout, Integer maxReissues,
+            Fallback fallback) {
+        if (maxReissues != null && maxReissues < 0) {
+            throw new SimpleOpenAIException("The maxReissues must not be negative.");
+        }
+        this.stallTimeout = stallTimeout;
+        this.firstChunkTimeout = firstChunkTimeout;
+        this.maxReissues = Optional.ofNullable(maxReissues).orElse(DEFAULT_MAX_REISSUES);
+        this.fallback = Optional.ofNullable(fallback).orElse(Fallback.STREAM);
+        this.deadline = Deadline.builder().firstByte(firstChunkTimeout).idle(stallTimeout).build();
+    }
+
+    /**
+     * Creates a chat completion stream watched for stalls.
+     *
+     * @param service     The chat completions service.
+     * @param chatRequest The request to stream.
+     * @return The chunks of the answer, restarted if it stalls before the first one. Closing the
+     *         stream aborts the current request.
+     */
+    public CompletableFuture<Stream<Chat>> createStream(@NonNull OpenAI.ChatCompletions service,
+            @NonNull ChatRequest chatRequest) {
+        return new Splice<>(chatRequest, service::createStream,
+                request -> service.create(request).thenApply(Chat::asChunk), null, null).start();
+    }
+
+    /**
+     * Creates a completion stream watched for stalls.
+     *
+     * @param service           The completions service.
+     * @param completionRequest The request to stream.
+     * @return The chunks of the completion, spliced across the reissued requests. Closing the stream
+     *         aborts the current request.
+     */
+    public CompletableFuture<Stream<Completion>> createStream(@NonNull OpenAI.Completions service,
+            @NonNull CompletionRequest completionRequest) {
+        var continuable = completionRequest.getPrompt() instanceof String
+                && (completionRequest.getN() == null || completionRequest.getN() == 1)
+                && !Boolean.TRUE.equals(completionRequest.getEcho());
+        BiFunction<CompletionRequest, String, CompletionRequest> continuation = continuable
+                ? (request, text) -> request.withPrompt(request.getPrompt() + text)
+                : null;
+        return new Splice<>(completionRequest, service::createStream, service::create, StreamWatchdog::textOf,
+                continuation).start();
+    }
+
+    private static String textOf(Completion completion) {
+        if (completion.getChoices() == null || completion.getChoices().isEmpty()) {
+            return "";
+        }
+        return Optional.ofNullable(completion.getChoices().get(0).getText()).orElse("");
+    }
+
+    private static boolean isStall(Throwable throwable) {
+        for (var cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeadlineExceededException) {
+                return ((DeadlineExceededException) cause).getPhase() != Phase.TOTAL;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * How a stalled request is reissued.
+     */
+    public enum Fallback {
+
+        /**
+         * The stream fails with the stall.
+         */
+        NONE,
+
+        /**
+         * The answer, or the rest of a completion, is requested as a new stream, watched like the
+         * first one.
+         */
+        STREAM,
+
+        /**
+         * The answer, or the rest of a completion, is requested without streaming, and delivered as
+         * one chunk. Its first byte is not bounded, since it only comes once the whole answer is
+         * generated.
+         */
+        NON_STREAM;
+
+    }
+
+    /**
+     * Iterates over the chunks of the current request, reissuing it when it stalls.
+     *
+     * @param <R> Type of the request.
+     * @param <T> Type of the chunks.
+     */
+    private final class Splice<R, T> implements Iterator<T> {
+
+        private final R request;
+        private final Function<R, CompletableFuture<Stream<T>>> streamCall;
+        private final Function<R, CompletableFuture<T>> call;
+        private final Function<T, String> text;
+        private final BiFunction<R, String, R> continuation;
+        private final StringBuilder received = new StringBuilder();
+        private boolean delivered;
+        private int reissues;
+        private Stream<T> current;
+        private Iterator<T> iterator;
+        private volatile CompletableFuture<Void> reissue;
+        private volatile boolean closed;
+
+        /**
+         * The continuation gives the request carrying on from the text received so far. Without
+         * one, the output is not reissued once a chunk of it was delivered.
+         */
+        Splice(R request, Function<R, CompletableFuture<Stream<T>>> streamCall,
+                Function<R, CompletableFuture<T>> call, Function<T, String> text,
+                BiFunction<R, String, R> continuation) {
+            this.request = request;
+            this.streamCall = streamCall;
+            this.call = call;
+            this.text = text;
+            this.continuation = continuation;
+        }
+
+        CompletableFuture<Stream<T>> start() {
+            return open(request).thenApply(ignored -> StreamSupport
+                    .stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+                            false)
+                    .onClose(this::close));
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (true) {
+                try {
+                    return iterator.hasNext();
+                } catch (RuntimeException e) {
+                    var nextRequest = nextRequest();
+                    if (nextRequest == null || !mayReissue(e)) {
+                        throw e;
+                    }
+                    reissues++;
+                    closeCurrent();
+                    reissue = open(nextRequest);
+                    if (closed) {
+                        reissue.cancel(true);
+                    }
+                    CallScope.join(reissue);
+                }
+            }
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            var chunk = iterator.next();
+            if (continuation != null) {
+                received.append(text.apply(chunk));
+            }
+            delivered = true;
+            return chunk;
+        }
+
+        private CompletableFuture<Void> open(R nextRequest) {
+            return send(nextRequest).handle((stream, throwable) -> {
+                if (throwable == null && closed) {
+                    stream.close();
+                    return CompletableFuture.<Void>failedFuture(new CancellationException("The stream was closed."));
+                }
+                if (throwable == null) {
+                    current = stream;
+                    iterator = stream.iterator();
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                if (!mayReissue(throwable)) {
+                    return CompletableFuture.<Void>failedFuture(throwable);
+                }
+                reissues++;
+                return open(nextRequest);
+            }).thenCompose(Function.identity());
+        }
+
+        private CompletableFuture<Stream<T>> send(R nextRequest) {
+            if (reissues > 0 && fallback == Fallback.NON_STREAM) {
+                try (var scope = CallScope.open(Deadline.builder().idle(stallTimeout).build())) {
+                    return call.apply(nextRequest).thenApply(Stream::of);
+                }
+            }
+            try (var scope = CallScope.open(deadline)) {
+                return streamCall.apply(nextRequest);
+            }
+        }
+
+        /**
+         * Returns the request carrying on from the output delivered so far, or null if there is none.
+         */
+        private R nextRequest() {
+            if (!delivered) {
+                return request;
+            }
+            if (continuation == null) {
+                return null;
+            }
+            return received.length() == 0 ? request : continuation.apply(request, received.toString());
+        }
+
+        private boolean mayReissue(Throwable throwable) {
+            return fallback != Fallback.NONE && reissues < maxReissues && isStall(throwable);
+        }
+
+        private void close() {
+            closed = true;
+            var pending = reissue;
+            if (pending != null) {
+                pending.cancel(true);
+            }
+            closeCurrent();
+        }
+
+        private void closeCurrent() {
+            if (current != null) {
+                current.close();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,270 @@
+package io.github.sashirestela.openai.support;
+
+import io.github.sashirestela.openai.OpenAI;
+import io.github.sashirestela.openai.common.content.ContentPart.ContentPartText;
+import io.github.sashirestela.openai.common.function.FunctionExecutor;
+import io.github.sashirestela.openai.common.tool.Tool;
+import io.github.sashirestela.openai.domain.chat.ChatMessage;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.UserMessage;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingVector;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks the tools relevant to a conversation among the functions of a large
+ * {@link FunctionExecutor}, so the requests only carry a few tool definitions.
+ * <p>
+ * The name and description of each tool are embedded once, the first time the tool is seen, and
+ * kept in an in-memory index. Concurrent first calls share that embedding instead of each making
+ * their own. For each request, the last user message is embedded and the tools
+ * closest to it by cosine similarity are chosen, plus the pinned tools, which are always included:
+ * </p>
+ *
+ * <pre>
+ * var toolSelector = ToolSelector.builder()
+ *         .embeddings(openAI.embeddings())
+ *         .model("text-embedding-3-small")
+ *         .topK(5)
+ *         .pinnedFunctions(Set.of("handoff_to_human"))
+ *         .build();
+ * var tools = toolSelector.select(functionExecutor, messages).join();
+ * var chatRequest = ChatRequest.builder().model("gpt-4o-mini").messages(messages).tools(tools).build();
+ * </pre>
+ */
+@Getter
+public class ToolSelector {
+
+    private static final int DEFAULT_TOP_K = 8;
+
+    private final OpenAI.Embeddings embeddings;
+    private final String model;
+    private final Integer dimensions;
+    private final int topK;
+    private final Set<String> pinnedFunctions;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, IndexedTool> index = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor used to generate a builder.
+     *
+     * @param embeddings      The embeddings service. Mandatory.
+     * @param model           The embedding model. Mandatory.
+     * @param dimensions      The dimensions of the embeddings, for the models supporting it.
+     *                        Optional.
+     * @param topK            Maximum number of tools chosen by relevance. Optional, defaults to 8.
+     * @param pinnedFunctions Names of the functions always chosen, in addition to the top k.
+     *                        Optional.
+     */
+    @Builder
+    public ToolSelector(@NonNull OpenAI.Embeddings embeddings, @NonNull String model, Integer dimensions,
+            Integer topK, Set<String> pinnedFunctions) {
+        if (topK != null && topK < 0) {
+            throw new SimpleOpenAIException("The topK must not be negative.");
+        }
+        this.embeddings = embeddings;
+        this.model = model;
+        this.dimensions = dimensions;
+        this.topK = Optional.ofNullable(topK).orElse(DEFAULT_TOP_K);
+        this.pinnedFunctions = Optional.ofNullable(pinnedFunctions).orElse(Set.of());
+    }
+
+    /**
+     * Chooses the tools relevant to the last user message of a conversation.
+     *
+     * @param functionExecutor Executor holding the enrolled functions.
+     * @param messages         The messages of the conversation.
+     * @return The pinned tools followed by the most relevant ones, in decreasing relevance.
+     */
+    public CompletableFuture<List<Tool>> select(@NonNull FunctionExecutor functionExecutor,
+            @NonNull List<ChatMessage> messages) {
+        return select(functionExecutor, lastUserText(messages));
+    }
+
+    /**
+     * Chooses the tools relevant to a text.
+     *
+     * @param functionExecutor Executor holding the enrolled functions.
+     * @param query            The text the tools should be relevant to.
+     * @return The pinned tools followed by the most relevant ones, in decreasing relevance.
+     */
+    public CompletableFuture<List<Tool>> select(@NonNull FunctionExecutor functionExecutor, String query) {
+        var tools = functionExecutor.getToolFunctions();
+        if (tools.size() <= topK + pinnedFunctions.size() || query == null || query.isBlank()) {
+            return CompletableFuture.completedFuture(tools);
+        }
+        var entries = new ArrayList<IndexedTool>(tools.size());
+        var missing = new ArrayList<IndexedTool>();
+        var missingNames = new ArrayList<String>();
+        var texts = new ArrayList<String>();
+        for (var tool : tools) {
+            var name = tool.getFunction().getName();
+            if (pinnedFunctions.contains(name)) {
+                entries.add(null);
+                continue;
+            }
+            var text = textOf(tool);
+            var indexed = index.get(name);
+            if (indexed == null || !indexed.text.equals(text)) {
+                // Only one of the concurrent callers embeds a new text, the others wait for it.
+                var fresh = new IndexedTool(text);
+                indexed = index.compute(name,
+                        (key, current) -> current != null && current.text.equals(text) ? current : fresh);
+                if (indexed == fresh) {
+                    missing.add(fresh);
+                    missingNames.add(name);
+                    texts.add(text);
+                }
+            }
+            entries.add(indexed);
+        }
+        texts.add(query);
+        var embedded = embed(texts).whenComplete((vectors, throwable) -> {
+            for (var i = 0; i < missing.size(); i++) {
+                if (throwable == null) {
+                    missing.get(i).vector.complete(vectors.get(i));
+                } else {
+                    missing.get(i).vector.completeExceptionally(throwable);
+                    index.remove(missingNames.get(i), missing.get(i));
+                }
+            }
+        });
+        return embedded.thenCompose(vectors -> CompletableFuture
+                .allOf(entries.stream().filter(Objects::nonNull).map(entry -> entry.vector)
+                        .toArray(CompletableFuture[]::new))
+                .handle((ignored, throwable) -> rank(tools, entries, vectors.get(vectors.size() - 1))));
+    }
+
+    /**
+     * Ranks the tools whose vectors are ready, leaving out the ones another call failed to embed.
+     */
+    private List<Tool> rank(List<Tool> tools, List<IndexedTool> entries, float[] query) {
+        var selected = new ArrayList<Tool>();
+        var closest = new PriorityQueue<ScoredTool>(Comparator.comparingDouble(scored -> scored.score));
+        for (var i = 0; i < tools.size(); i++) {
+            var tool = tools.get(i);
+            if (pinnedFunctions.contains(tool.getFunction().getName())) {
+                selected.add(tool);
+                continue;
+            }
+            var entry = entries.get(i);
+            if (topK == 0 || entry.vector.isCompletedExceptionally()) {
+                continue;
+            }
+            closest.add(new ScoredTool(tool, dot(entry.vector.join(), query)));
+            if (closest.size() > topK) {
+                closest.poll();
+            }
+        }
+        var ranked = new ArrayList<ScoredTool>(closest);
+        ranked.sort(Comparator.comparingDouble((ScoredTool scored) -> scored.score).reversed());
+        ranked.forEach(scored -> selected.add(scored.tool));
+        return selected;
+    }
+
+    private CompletableFuture<List<float[]>> embed(List<String> texts) {
+        var request = EmbeddingRequest.builder().input(texts).model(model).dimensions(dimensions).build();
+        return embeddings.createVector(request).thenApply(embedding -> {
+            var vectors = new ArrayList<float[]>(texts.size());
+            for (var i = 0; i < texts.size(); i++) {
+                vectors.add(null);
+            }
+            for (EmbeddingVector data : embedding.getData()) {
+                vectors.set(data.getIndex(), normalize(data.getEmbedding()));
+            }
+            return vectors;
+        });
+    }
+
+    private static String textOf(Tool tool) {
+        var function = tool.getFunction();
+        return function.getDescription() != null
+                ? function.getName() + ": " + function.getDescription()
+                : function.getName();
+    }
+
+    private static String lastUserText(List<ChatMessage> messages) {
+        for (var i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage) {
+                var content = ((UserMessage) messages.get(i)).getContent();
+                if (content instanceof String) {
+                    return (String) content;
+                }
+                if (content instanceof List) {
+                    var text = new StringBuilder();
+                    for (var part : (List<?>) content) {
+                        if (part instanceof ContentPartText) {
+                            text.append(((ContentPartText) part).getText()).append('\n');
+                        }
+                    }
+                    return text.toString();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static float[] normalize(float[] vector) {
+        var norm = 0.0;
+        for (var value : vector) {
+            norm += (double) value * value;
+        }
+        if (norm > 0) {
+            var scale = (float) (1 / Math.sqrt(norm));
+            for (var i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private static double dot(float[] first, float[] second) {
+        var length = Math.min(first.length, second.length);
+        var sum = 0.0;
+        for (var i = 0; i < length; i++) {
+            sum += first[i] * second[i];
+        }
+        return sum;
+    }
+
+    /**
+     * The text of a tool and its vector, shared by the calls waiting for it while it is embedded.
+     */
+    private static final class IndexedTool {
+
+        private final String text;
+        private final CompletableFuture<float[]> vector = new CompletableFuture<>();
+
+        IndexedTool(String text) {
+            this.text = text;
+        }
+
+    }
+
+    private static final class ScoredTool {
+
+        private final Tool tool;
+        private final double score;
+
+        ScoredTool(Tool tool, double score) {
+            this.tool = tool;
+            this.score = score;
+        }
+
+    }
+
+}
@@ -0,0 +1,194 @@
+package io.github.sashirestela.openai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.sashirestela.cleverclient.support.Configurator;
+import io.github.sashirestela.openai.common.function.FunctionDef;
+import io.github.sashirestela.openai.common.function.FunctionExecutor;
+import io.github.sashirestela.openai.common.function.Functional;
+import io.github.sashirestela.openai.domain.assistant.ThreadRun;
+import io.github.sashirestela.openai.domain.assistant.ThreadRunRequest;
+import io.github.sashirestela.openai.domain.assistant.ThreadRunSubmitOutputRequest;
+import io.github.sashirestela.openai.domain.assistant.events.EventName;
+import io.github.sashirestela.openai.domain.assistant.events.StreamEvent;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AssistantRunDriverTest {
+
+    OpenAIStreaming streaming = mock(OpenAIStreaming.class);
+    FunctionExecutor functionExecutor = new FunctionExecutor(List.of(
+            FunctionDef.builder()
+                    .name("convert_to_celsius")
+                    .description("Convert Fahrenheit to Celsius degrees")
+                    .functionalClass(ConvertToCelsius.class)
+                    .build()));
+    ThreadRunRequest runRequest = ThreadRunRequest.builder().assistantId("asst_1").build();
+
+    @BeforeAll
+    static void setup() {
+        Configurator.builder().objectMapper(new ObjectMapper()).build();
+    }
+
+    @Test
+    void shouldResumeTheRunWithTheToolOutputsInTheSamePublisher() {
+        functionExecutor.setExecutor(Runnable::run);
+        when(streaming.threadRunPublisher(eq("thread_1"), any(ThreadRunRequest.class))).thenReturn(publisher(
+                event(EventName.THREAD_RUN_CREATED, run("queued", null)),
+                event(EventName.THREAD_RUN_REQUIRES_ACTION, run("requires_action", "{\"fahrenheit\": 212}"))));
+        when(streaming.toolOutputPublisher(eq("thread_1"), eq("run_1"), any(ThreadRunSubmitOutputRequest.class)))
+                .thenReturn(publisher(event(EventName.THREAD_RUN_COMPLETED, run("completed", null))));
+        var driver = new AssistantRunDriver(streaming, functionExecutor);
+        var subscriber = new Collector(1);
+
+        driver.runPublisher("thread_1", runRequest).subscribe(subscriber);
+
+        assertEquals(List.of(EventName.THREAD_RUN_CREATED), subscriber.names());
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(List.of(EventName.THREAD_RUN_CREATED, EventName.THREAD_RUN_REQUIRES_ACTION,
+                EventName.THREAD_RUN_COMPLETED), subscriber.names());
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+        var captor = ArgumentCaptor.forClass(ThreadRunSubmitOutputRequest.class);
+        verify(streaming).toolOutputPublisher(eq("thread_1"), eq("run_1"), captor.capture());
+        assertEquals("call_1", captor.getValue().getToolOutputs().get(0).getToolCallId());
+        assertEquals("100.0", captor.getValue().getToolOutputs().get(0).getOutput());
+    }
+
+    @Test
+    void shouldNotResumeTheRunWhenCancelledWhileTheToolsRun() {
+        var tasks = new ArrayList<Runnable>();
+        functionExecutor.setExecutor(tasks::add);
+        when(streaming.threadRunPublisher(eq("thread_1"), any(ThreadRunRequest.class))).thenReturn(publisher(
+                event(EventName.THREAD_RUN_REQUIRES_ACTION, run("requires_action", "{\"fahrenheit\": 32}"))));
+        var driver = new AssistantRunDriver(streaming, functionExecutor);
+        var subscriber = new Collector(Long.MAX_VALUE);
+
+        driver.runPublisher("thread_1", runRequest).subscribe(subscriber);
+        subscriber.subscription.cancel();
+        tasks.forEach(Runnable::run);
+
+        assertEquals(List.of(EventName.THREAD_RUN_REQUIRES_ACTION), subscriber.names());
+        assertFalse(subscriber.completed);
+        verify(streaming, never()).toolOutputPublisher(any(), any(), any());
+    }
+
+    private static ThreadRun run(String status, String arguments) {
+        var requiredAction = arguments == null ? ""
+                : ",\"required_action\":{\"type\":\"submit_tool_outputs\",\"submit_tool_outputs\":{\"tool_calls\":"
+                        + "[{\"id\":\"call_1\",\"type\":\"function\",\"function\":{\"name\":\"convert_to_celsius\","
+                        + "\"arguments\":" + quote(arguments) + "}}]}}";
+        try {
+            return new ObjectMapper().readValue("{\"id\":\"run_1\",\"thread_id\":\"thread_1\",\"status\":\""
+                    + status + "\"" + requiredAction + "}", ThreadRun.class);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String quote(String text) {
+        return "\"" + text.replace("\"", "\\\"") + "\"";
+    }
+
+    private static StreamEvent event(String name, Object data) {
+        return StreamEvent.of(name, data);
+    }
+
+    /**
+     * Publishes the given events synchronously, as they are requested.
+     */
+    private static Flow.Publisher<StreamEvent> publisher(StreamEvent... events) {
+        return subscriber -> subscriber.onSubscribe(new Flow.Subscription() {
+
+            final List<StreamEvent> pending = new ArrayList<>(Arrays.asList(events));
+            boolean cancelled;
+
+            @Override
+            public void request(long n) {
+                for (var i = 0L; i < n && !pending.isEmpty() && !cancelled; i++) {
+                    subscriber.onNext(pending.remove(0));
+                }
+                if (pending.isEmpty() && !cancelled) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                }
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+            }
+
+        });
+    }
+
+    static class Collector implements Flow.Subscriber<StreamEvent> {
+
+        final List<StreamEvent> events = new ArrayList<>();
+        final long initialDemand;
+        Flow.Subscription subscription;
+        boolean completed;
+        Throwable error;
+
+        Collector(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        List<String> names() {
+            return events.stream().map(StreamEvent::getName).collect(Collectors.toList());
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(StreamEvent item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+
+    }
+
+    static class ConvertToCelsius implements Functional {
+
+        public double fahrenheit;
+
+        @Override
+        public Object execute() {
+            return (fahrenheit - 32) * 5 / 9;
+        }
+
+    }
+
+}
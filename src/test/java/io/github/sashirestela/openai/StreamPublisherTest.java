@@ -0,0 +1,154 @@
+package io.github.sashirestela.openai;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamPublisherTest {
+
+    List<Long> upstreamRequests = new ArrayList<>();
+    boolean upstreamCancelled;
+    Flow.Subscription upstream = new Flow.Subscription() {
+
+        @Override
+        public void request(long n) {
+            upstreamRequests.add(n);
+        }
+
+        @Override
+        public void cancel() {
+            upstreamCancelled = true;
+        }
+
+    };
+    CompletableFuture<Void> response = new CompletableFuture<>();
+    BodySubscriber<Void> bodySubscriber;
+    StreamPublisher<String> publisher = new StreamPublisher<>(bodyHandler -> {
+        bodySubscriber = bodyHandler.apply(null);
+        bodySubscriber.onSubscribe(upstream);
+        return response;
+    }, (eventName, data, length) -> new String(data, 0, length, StandardCharsets.UTF_8));
+
+    List<String> items = new ArrayList<>();
+    Throwable error;
+    boolean completed;
+    Flow.Subscription subscription;
+
+    @Test
+    void shouldSendTheRequestOnTheFirstDemand() {
+        subscribe();
+        assertNull(bodySubscriber);
+
+        subscription.request(1);
+
+        assertEquals(List.of(1L), upstreamRequests);
+    }
+
+    @Test
+    void shouldReadTheBodyOnlyAsFastAsItemsAreRequested() {
+        subscribe();
+        subscription.request(1);
+
+        push("data: a\n\ndata: b\n\ndata: c\n\n");
+        assertEquals(List.of("a"), items);
+        assertEquals(List.of(1L), upstreamRequests);
+
+        subscription.request(1);
+        assertEquals(List.of("a", "b"), items);
+        assertEquals(List.of(1L), upstreamRequests);
+
+        subscription.request(2);
+        assertEquals(List.of("a", "b", "c"), items);
+        assertEquals(List.of(1L, 1L), upstreamRequests);
+    }
+
+    @Test
+    void shouldCompleteAtTheEndMarker() {
+        subscribe();
+        subscription.request(Long.MAX_VALUE);
+
+        push("data: a\n\ndata: [DONE]\n\n");
+
+        assertEquals(List.of("a"), items);
+        assertTrue(completed);
+        assertEquals(List.of(1L, Long.MAX_VALUE), upstreamRequests);
+    }
+
+    @Test
+    void shouldCancelTheExchange() {
+        subscribe();
+        subscription.request(1);
+
+        subscription.cancel();
+        push("data: a\n\n");
+
+        assertTrue(upstreamCancelled);
+        assertTrue(response.isCancelled());
+        assertTrue(items.isEmpty());
+        assertNull(error);
+    }
+
+    @Test
+    void shouldSignalTheFailureOfTheBody() {
+        subscribe();
+        subscription.request(1);
+
+        bodySubscriber.onError(new IOException("Connection reset"));
+
+        assertTrue(error instanceof IOException);
+        assertFalse(completed);
+    }
+
+    @Test
+    void shouldRejectNonPositiveDemand() {
+        subscribe();
+
+        subscription.request(0);
+
+        assertTrue(error instanceof IllegalArgumentException);
+        assertNull(bodySubscriber);
+    }
+
+    private void push(String text) {
+        bodySubscriber.onNext(List.of(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private void subscribe() {
+        publisher.subscribe(new Flow.Subscriber<String>() {
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                StreamPublisherTest.this.subscription = subscription;
+            }
+
+            @Override
+            public void onNext(String item) {
+                items.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error = throwable;
+            }
+
+            @Override
+            public void onComplete() {
+                completed = true;
+            }
+
+        });
+    }
+
+}
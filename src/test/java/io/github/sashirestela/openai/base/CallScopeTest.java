@@ -0,0 +1,234 @@
+package io.github.sashirestela.openai.base;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.sashirestela.openai.domain.chat.Chat;
+import io.github.sashirestela.openai.exception.DeadlineExceededException;
+import io.github.sashirestela.openai.exception.DeadlineExceededException.Phase;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.PushPromiseHandler;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CallScopeTest {
+
+    interface ChatService {
+
+        CompletableFuture<String> call();
+
+        CompletableFuture<Stream<Chat>> stream();
+
+    }
+
+    Deque<CompletableFuture<?>> exchanges = new ArrayDeque<>();
+    Deque<BodyHandler<?>> handlers = new ArrayDeque<>();
+    ScopedHttpClient httpClient = new ScopedHttpClient(new ForwardingHttpClient(null) {
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> handler,
+                PushPromiseHandler<T> pushPromiseHandler) {
+            var exchange = new CompletableFuture<HttpResponse<T>>();
+            exchanges.add(exchange);
+            handlers.add(handler);
+            return exchange;
+        }
+
+    });
+    HttpRequest request = HttpRequest.newBuilder(URI.create("https://example.org/v1/chat/completions")).build();
+    ChatService service = ScopedServices.wrap(ChatService.class, new ChatService() {
+
+        @Override
+        public CompletableFuture<String> call() {
+            return httpClient.sendAsync(request, BodyHandlers.ofString()).thenApply(HttpResponse::body);
+        }
+
+        @Override
+        public CompletableFuture<Stream<Chat>> stream() {
+            httpClient.sendAsync(request, BodyHandlers.ofLines());
+            return CompletableFuture.completedFuture(Stream.of(chat("{\"id\":\"1\"}"),
+                    chat("{\"id\":\"2\",\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":5,\"total_tokens\":8}}")));
+        }
+
+    });
+
+    @Test
+    void shouldAbortTheExchangeWhenTheFutureIsCancelled() {
+        var future = service.call();
+
+        future.cancel(true);
+
+        assertTrue(exchanges.getLast().isCancelled());
+    }
+
+    @Test
+    void shouldAbortTheExchangeWhenTheStreamIsClosed() {
+        var chatStream = service.stream().join();
+
+        chatStream.close();
+
+        assertTrue(exchanges.getLast().isCancelled());
+    }
+
+    @Test
+    void shouldCancelTheCallsOfTheScopeAndKeepTheirUsage() {
+        try (var scope = CallScope.open()) {
+            var pending = service.call();
+            service.stream().join().forEach(chat -> {
+            });
+
+            scope.cancel();
+            service.call();
+
+            assertTrue(pending.isCompletedExceptionally());
+            assertTrue(exchanges.stream().allMatch(CompletableFuture::isCancelled));
+            assertEquals(8, scope.getUsage().orElseThrow().getTotalTokens());
+        }
+        service.call();
+        assertFalse(exchanges.getLast().isCancelled());
+    }
+
+    @Test
+    void shouldLetGoOfTheCallsWhichAreOver() {
+        try (var scope = CallScope.open()) {
+            var futures = Stream.generate(service::call).limit(10).collect(Collectors.toList());
+            assertEquals(10, scope.getPendingAborts());
+
+            exchanges.forEach(exchange -> exchange.complete(null));
+
+            assertTrue(futures.stream().allMatch(CompletableFuture::isDone));
+            assertEquals(0, scope.getPendingAborts());
+            var chatStream = service.stream().join();
+            assertEquals(1, scope.getPendingAborts());
+            chatStream.close();
+            assertEquals(0, scope.getPendingAborts());
+        }
+    }
+
+    @Test
+    void shouldLetGoOfAStreamReadToTheEnd() {
+        try (var scope = CallScope.open()) {
+            var chatStream = service.stream().join();
+            exchanges.getLast().complete(null);
+            assertEquals(1, scope.getPendingAborts());
+
+            assertEquals(2, chatStream.count());
+
+            assertEquals(0, scope.getPendingAborts());
+        }
+    }
+
+    @Test
+    void shouldCancelTheCallWhenTheWaitingThreadIsInterrupted() {
+        var future = service.call();
+
+        Thread.currentThread().interrupt();
+
+        assertThrows(CancellationException.class, () -> CallScope.join(future));
+        assertTrue(Thread.interrupted());
+        assertTrue(exchanges.getLast().isCancelled());
+    }
+
+    @Test
+    void shouldFailWithTheTotalTimeoutOfTheScope() {
+        CompletableFuture<String> future;
+        try (var scope = CallScope.open(Deadline.of(Duration.ofMillis(20)))) {
+            future = service.call();
+        }
+
+        var exception = assertThrows(CompletionException.class, future::join);
+
+        assertEquals(Phase.TOTAL, ((DeadlineExceededException) exception.getCause()).getPhase());
+        assertTrue(exchanges.getLast().isCancelled());
+    }
+
+    @Test
+    void shouldFailWhenTheFirstByteTakesTooLong() {
+        CompletableFuture<String> future;
+        try (var scope = CallScope.open(Deadline.builder().firstByte(Duration.ofMillis(20)).build())) {
+            future = service.call();
+        }
+
+        var exception = assertThrows(CompletionException.class, future::join);
+
+        assertEquals(Phase.FIRST_BYTE, ((DeadlineExceededException) exception.getCause()).getPhase());
+    }
+
+    @Test
+    void shouldEndTheBodyWhenTheStreamGoesIdle() {
+        try (var scope = CallScope.open(Deadline.builder().idle(Duration.ofMillis(20)).build())) {
+            service.call();
+        }
+        var bodySubscriber = handlers.getLast().apply(new ResponseInfo() {
+
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return HttpHeaders.of(Map.of(), (name, value) -> true);
+            }
+
+            @Override
+            public Version version() {
+                return Version.HTTP_1_1;
+            }
+
+        });
+        bodySubscriber.onSubscribe(new Flow.Subscription() {
+
+            @Override
+            public void request(long n) {
+                // The chunks are pushed by the test.
+            }
+
+            @Override
+            public void cancel() {
+                // Nothing to cancel.
+            }
+
+        });
+        bodySubscriber.onNext(List.of(ByteBuffer.wrap("{".getBytes(StandardCharsets.UTF_8))));
+
+        var body = bodySubscriber.getBody().toCompletableFuture();
+        var exception = assertThrows(CompletionException.class, body::join);
+
+        assertEquals(Phase.IDLE, ((DeadlineExceededException) exception.getCause()).getPhase());
+    }
+
+    private static Chat chat(String json) {
+        try {
+            return new ObjectMapper().readValue(json, Chat.class);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package io.github.sashirestela.openai.base;
+
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class RateLimitBucketTest {
+
+    ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+    AtomicLong clock = new AtomicLong();
+    AtomicInteger started = new AtomicInteger();
+
+    @Test
+    void shouldAdmitRequestsWhileTheLimitsAreUnknown() {
+        var bucket = new RateLimitBucket(scheduler, clock::get, null);
+
+        bucket.submit(1000, started::incrementAndGet, new CompletableFuture<>());
+        bucket.submit(1000, started::incrementAndGet, new CompletableFuture<>());
+
+        assertEquals(2, started.get());
+        assertEquals(0, bucket.getWaiting());
+    }
+
+    @Test
+    void shouldHoldRequestsUntilTheTokensAreRefilled() {
+        var bucket = new RateLimitBucket(scheduler, clock::get, null);
+        bucket.submit(100, started::incrementAndGet, new CompletableFuture<>());
+        bucket.onResponse(200, headers(1000, 0, "10s"), 100);
+
+        bucket.submit(100, started::incrementAndGet, new CompletableFuture<>());
+
+        assertEquals(1, started.get());
+        assertEquals(1, bucket.getWaiting());
+        verify(scheduler).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.NANOSECONDS));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        bucket.onFailure(0);
+
+        assertEquals(2, started.get());
+        assertEquals(0, bucket.getWaiting());
+    }
+
+    @Test
+    void shouldGiveBackTheRequestOfAFailedExchange() {
+        var bucket = new RateLimitBucket(scheduler, clock::get, null);
+        bucket.submit(100, started::incrementAndGet, new CompletableFuture<>());
+        bucket.submit(100, started::incrementAndGet, new CompletableFuture<>());
+        bucket.onResponse(200, headers(1000, 1000, "1s", 1, 0), 100);
+        bucket.submit(100, started::incrementAndGet, new CompletableFuture<>());
+        assertEquals(1, bucket.getWaiting());
+
+        bucket.onFailure(100);
+
+        assertEquals(3, started.get());
+        assertEquals(0, bucket.getWaiting());
+    }
+
+    @Test
+    void shouldFailRequestsWhichWouldWaitLongerThanTheMaxDelay() {
+        var bucket = new RateLimitBucket(scheduler, clock::get, Duration.ofMillis(500));
+        bucket.submit(100, started::incrementAndGet, new CompletableFuture<>());
+        bucket.onResponse(200, headers(1000, 0, "1m"), 100);
+        var result = new CompletableFuture<Void>();
+
+        bucket.submit(100, started::incrementAndGet, result);
+
+        var exception = assertThrows(ExecutionException.class, result::get);
+        assertTrue(exception.getCause() instanceof SimpleOpenAIException);
+        assertEquals(1, started.get());
+    }
+
+    @Test
+    void shouldParseResetDurations() {
+        assertEquals(TimeUnit.SECONDS.toNanos(1), RateLimitBucket.parseReset("1s"));
+        assertEquals(TimeUnit.MINUTES.toNanos(6), RateLimitBucket.parseReset("6m0s"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), RateLimitBucket.parseReset("20ms"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1500), RateLimitBucket.parseReset("1.5s"));
+        assertEquals(0, RateLimitBucket.parseReset("soon"));
+    }
+
+    private static HttpHeaders headers(long limitTokens, long remainingTokens, String resetTokens) {
+        return headers(limitTokens, remainingTokens, resetTokens, 100, 99);
+    }
+
+    private static HttpHeaders headers(long limitTokens, long remainingTokens, String resetTokens,
+            long limitRequests, long remainingRequests) {
+        return HttpHeaders.of(Map.of(
+                RateLimitBucket.LIMIT_REQUESTS, List.of(String.valueOf(limitRequests)),
+                RateLimitBucket.REMAINING_REQUESTS, List.of(String.valueOf(remainingRequests)),
+                RateLimitBucket.RESET_REQUESTS, List.of("600ms"),
+                RateLimitBucket.LIMIT_TOKENS, List.of(String.valueOf(limitTokens)),
+                RateLimitBucket.REMAINING_TOKENS, List.of(String.valueOf(remainingTokens)),
+                RateLimitBucket.RESET_TOKENS, List.of(resetTokens)),
+                (name, value) -> true);
+    }
+
+}
@@ -0,0 +1,45 @@
+package io.github.sashirestela.openai.base;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestBodiesTest {
+
+    @Test
+    void shouldReadTheJsonBodyAgain() {
+        var json = "{\"model\":\"gpt-4o\",\"messages\":[{\"role\":\"user\",\"content\":\"Hi\"}]}";
+
+        var body = RequestBodies.readJson(request("application/json", json));
+
+        assertEquals(json, new String(body.orElseThrow(), StandardCharsets.UTF_8));
+        assertTrue(RequestBodies.readJson(request("multipart/form-data", json)).isEmpty());
+    }
+
+    @Test
+    void shouldReadTheTopLevelFieldsOnly() {
+        var json = "{\"messages\":[{\"role\":\"user\",\"content\":\"Hi\",\"model\":\"nested\",\"n\":9}],"
+                + "\"model\":\"gpt-4o\",\"max_tokens\":100,\"n\":2}";
+
+        var head = RequestBodies.readHead(json.getBytes(StandardCharsets.UTF_8)).orElseThrow();
+
+        assertEquals("gpt-4o", head.model);
+        assertEquals(100, head.maxOutputTokens(0));
+        assertEquals(2, head.choices);
+        assertEquals(json.length(), head.length);
+        assertTrue(RequestBodies.readHead("[1,2]".getBytes(StandardCharsets.UTF_8)).isEmpty());
+    }
+
+    private static HttpRequest request(String contentType, String body) {
+        return HttpRequest.newBuilder(URI.create("https://api.openai.com/v1/chat/completions"))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+}
@@ -0,0 +1,145 @@
+package io.github.sashirestela.openai.base;
+
+import io.github.sashirestela.openai.exception.OpenAIException.RateLimitException;
+import io.github.sashirestela.openai.exception.OpenAIResponseInfo;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class RetryPolicyTest {
+
+    HttpClient httpClient = mock(HttpClient.class);
+    HttpResponse<String> response = mock(HttpResponse.class);
+    RetryPolicy retryPolicy = RetryPolicy.builder()
+            .initialDelay(Duration.ofMillis(1))
+            .maxDelay(Duration.ofMillis(5))
+            .build();
+    HttpRequest post = HttpRequest.newBuilder(URI.create("https://example.org/v1/chat/completions"))
+            .POST(HttpRequest.BodyPublishers.ofString("{}"))
+            .build();
+
+    @Test
+    void shouldRetryRateLimitedPostUntilItSucceeds() throws Exception {
+        when(httpClient.sendAsync(any(HttpRequest.class), any(BodyHandler.class)))
+                .thenAnswer(invocation -> answer(invocation.getArgument(1), 429, headers()))
+                .thenAnswer(invocation -> answer(invocation.getArgument(1), 200, headers()));
+        var client = retryPolicy.decorate(httpClient);
+
+        var result = client.sendAsync(post, BodyHandlers.ofString()).get(1, TimeUnit.SECONDS);
+
+        assertSame(response, result);
+        verify(httpClient, times(2)).sendAsync(any(HttpRequest.class), any(BodyHandler.class));
+    }
+
+    @Test
+    void shouldNotRetryPostOnServerErrorsByDefault() throws Exception {
+        when(httpClient.sendAsync(any(HttpRequest.class), any(BodyHandler.class)))
+                .thenAnswer(invocation -> answer(invocation.getArgument(1), 500, headers()));
+        var client = retryPolicy.decorate(httpClient);
+
+        client.sendAsync(post, BodyHandlers.ofString()).get(1, TimeUnit.SECONDS);
+
+        verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(BodyHandler.class));
+    }
+
+    @Test
+    void shouldGiveUpAfterMaxRetriesOrWhenTheServerSaysSo() throws Exception {
+        when(httpClient.sendAsync(any(HttpRequest.class), any(BodyHandler.class)))
+                .thenAnswer(invocation -> answer(invocation.getArgument(1), 429, headers()));
+        retryPolicy.decorate(httpClient).sendAsync(post, BodyHandlers.ofString()).get(1, TimeUnit.SECONDS);
+        verify(httpClient, times(3)).sendAsync(any(HttpRequest.class), any(BodyHandler.class));
+
+        var otherClient = mock(HttpClient.class);
+        when(otherClient.sendAsync(any(HttpRequest.class), any(BodyHandler.class)))
+                .thenAnswer(invocation -> answer(invocation.getArgument(1), 429,
+                        headers(RetryPolicy.SHOULD_RETRY, "false")));
+        retryPolicy.decorate(otherClient).sendAsync(post, BodyHandlers.ofString()).get(1, TimeUnit.SECONDS);
+        verify(otherClient, times(1)).sendAsync(any(HttpRequest.class), any(BodyHandler.class));
+    }
+
+    @Test
+    void shouldRetryConnectFailuresButNotResetsOfPosts() throws Exception {
+        when(httpClient.sendAsync(any(HttpRequest.class), any(BodyHandler.class)))
+                .thenReturn(CompletableFuture.failedFuture(new ConnectException("Connection refused")))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("Connection reset")));
+        var client = retryPolicy.decorate(httpClient);
+
+        var result = client.sendAsync(post, BodyHandlers.ofString());
+
+        var exception = assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+        assertEquals("Connection reset", exception.getCause().getMessage());
+        verify(httpClient, times(2)).sendAsync(any(HttpRequest.class), any(BodyHandler.class));
+    }
+
+    @Test
+    void shouldWaitAtLeastTheDelayRequestedByTheServer() {
+        var delay = retryPolicy.nextDelayNanos(0, headers(RetryPolicy.RETRY_AFTER_MS, "250"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(250), delay);
+
+        var jitter = retryPolicy.nextDelayNanos(TimeUnit.MILLISECONDS.toNanos(4), headers());
+        assertTrue(jitter >= TimeUnit.MILLISECONDS.toNanos(1) && jitter <= TimeUnit.MILLISECONDS.toNanos(5));
+    }
+
+    @Test
+    void shouldReadRetryAfterFromOpenAIException() {
+        var responseInfo = OpenAIResponseInfo.builder()
+                .status(429)
+                .responseHeaders(Map.of("Retry-After", List.of("2")))
+                .build();
+        var exception = new RateLimitException(responseInfo);
+
+        assertEquals(Duration.ofSeconds(2), RetryPolicy.retryAfter(exception).orElseThrow());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenMaxRetriesIsNegative() {
+        var builder = RetryPolicy.builder().maxRetries(-1);
+        assertThrows(SimpleOpenAIException.class, builder::build);
+    }
+
+    private CompletableFuture<HttpResponse<String>> answer(BodyHandler<String> handler, int status,
+            HttpHeaders headers) {
+        var responseInfo = mock(ResponseInfo.class);
+        when(responseInfo.statusCode()).thenReturn(status);
+        when(responseInfo.headers()).thenReturn(headers);
+        handler.apply(responseInfo);
+        return CompletableFuture.completedFuture(response);
+    }
+
+    private static HttpHeaders headers(String... nameValues) {
+        var map = new HashMap<String, List<String>>();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            map.put(nameValues[i], List.of(nameValues[i + 1]));
+        }
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+
+}
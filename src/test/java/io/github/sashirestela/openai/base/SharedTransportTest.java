@@ -0,0 +1,95 @@
+package io.github.sashirestela.openai.base;
+
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class SharedTransportTest {
+
+    HttpClient httpClient = mock(HttpClient.class);
+    HttpRequest request = HttpRequest.newBuilder(URI.create("https://example.org")).build();
+
+    @Test
+    void shouldQueueExchangesBeyondTheCapUntilABodyIsOver() {
+        HttpResponse<Void> response = mock(HttpResponse.class);
+        when(httpClient.sendAsync(any(HttpRequest.class), any(BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(response));
+        var transport = SharedTransport.builder().httpClient(httpClient).maxConnections(1).build();
+        var client = transport.getHttpClient();
+
+        var first = client.sendAsync(request, BodyHandlers.discarding());
+        var second = client.sendAsync(request, BodyHandlers.discarding());
+
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertEquals(1, transport.getInFlight());
+
+        ArgumentCaptor<BodyHandler<Void>> captor = ArgumentCaptor.forClass(BodyHandler.class);
+        verify(httpClient).sendAsync(any(HttpRequest.class), captor.capture());
+        var subscriber = captor.getValue().apply(mock(ResponseInfo.class));
+        subscriber.onSubscribe(mock(Flow.Subscription.class));
+        subscriber.onComplete();
+
+        assertTrue(second.isDone());
+        assertEquals(1, transport.getInFlight());
+        verify(httpClient, times(2)).sendAsync(any(HttpRequest.class), any(BodyHandler.class));
+    }
+
+    @Test
+    void shouldReleaseTheExchangeWhenTheRequestFails() {
+        when(httpClient.sendAsync(any(HttpRequest.class), any(BodyHandler.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("Connection reset")));
+        var transport = SharedTransport.builder().httpClient(httpClient).maxConnections(1).build();
+
+        var result = transport.getHttpClient().sendAsync(request, BodyHandlers.discarding());
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(0, transport.getInFlight());
+    }
+
+    @Test
+    void shouldRejectExchangesAndDrainWhenClosed() throws InterruptedException {
+        var transport = SharedTransport.builder().httpClient(httpClient).build();
+        transport.close();
+
+        var result = transport.getHttpClient().sendAsync(request, BodyHandlers.discarding());
+
+        var exception = assertThrows(ExecutionException.class, result::get);
+        assertTrue(exception.getCause() instanceof SimpleOpenAIException);
+        assertTrue(transport.isClosed());
+        assertTrue(transport.awaitTermination(Duration.ofMillis(10)));
+        verify(httpClient, never()).sendAsync(any(HttpRequest.class), any(BodyHandler.class));
+    }
+
+    @Test
+    void shouldThrowExceptionWhenMaxConnectionsIsNotPositive() {
+        var builder = SharedTransport.builder().httpClient(httpClient).maxConnections(0);
+        assertThrows(SimpleOpenAIException.class, builder::build);
+    }
+
+}
@@ -0,0 +1,145 @@
+package io.github.sashirestela.openai.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaginatorTest {
+
+    static final List<String> IDS = IntStream.range(0, 250).mapToObj(i -> "id" + i).collect(Collectors.toList());
+
+    List<String> cursors = new ArrayList<>();
+
+    @Test
+    void shouldStreamTheItemsOfAllThePages() {
+        var items = Paginator.of(this::fetch).stream().collect(Collectors.toList());
+
+        assertEquals(IDS, items);
+        assertEquals(List.of("", "id99", "id199"), cursors);
+    }
+
+    @Test
+    void shouldStopAtAPageWithoutData() throws JsonProcessingException {
+        var page = new ObjectMapper().readValue("{\"object\":\"list\",\"has_more\":true}",
+                new TypeReference<Page<String>>() {
+                });
+
+        var items = Paginator.<String>of(cursor -> CompletableFuture.completedFuture(page)).stream()
+                .collect(Collectors.toList());
+
+        assertEquals(List.of(), items);
+    }
+
+    @Test
+    void shouldRequestTheNextPageWhileTheCurrentOneIsConsumed() {
+        var iterator = Paginator.of(this::fetch).stream().iterator();
+
+        assertEquals("id0", iterator.next());
+
+        assertEquals(List.of("", "id99"), cursors);
+    }
+
+    @Test
+    void shouldCancelThePrefetchedPageWhenClosedEarly() {
+        var pending = new CompletableFuture<Page<String>>();
+        var paginator = Paginator.<String>of(cursor -> {
+            cursors.add(String.valueOf(cursor));
+            return cursor == null ? CompletableFuture.completedFuture(page(0, 100, true)) : pending;
+        });
+
+        try (var stream = paginator.stream()) {
+            assertEquals(5, stream.limit(5).count());
+        }
+
+        assertEquals(2, cursors.size());
+        assertTrue(pending.isCancelled());
+    }
+
+    @Test
+    void shouldWalkBackwardsWithABeforeCursor() {
+        var pageRequests = new ArrayList<PageRequest>();
+        var paginator = Paginator.<String>of(PageRequest.builder().limit(100).before("id250").build(), request -> {
+            pageRequests.add(request);
+            var end = Integer.parseInt(request.getBefore().substring(2));
+            var start = Math.max(0, end - 100);
+            return CompletableFuture.completedFuture(page(start, end, start > 0));
+        });
+
+        var items = paginator.stream().collect(Collectors.toList());
+
+        assertEquals(250, items.size());
+        assertEquals(List.of("id250", "id150", "id50"),
+                pageRequests.stream().map(PageRequest::getBefore).collect(Collectors.toList()));
+        assertEquals(100, pageRequests.get(1).getLimit());
+    }
+
+    @Test
+    void shouldPublishTheItemsAsTheyAreRequested() {
+        var received = new ArrayList<String>();
+        var completed = new boolean[1];
+        var subscription = new Flow.Subscription[1];
+
+        Paginator.of(this::fetch).publisher().subscribe(new Flow.Subscriber<String>() {
+
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+                s.request(150);
+            }
+
+            @Override
+            public void onNext(String item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new AssertionError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completed[0] = true;
+            }
+
+        });
+
+        assertEquals(IDS.subList(0, 150), received);
+        assertEquals(List.of("", "id99", "id199"), cursors);
+        subscription[0].request(Long.MAX_VALUE);
+        assertEquals(IDS, received);
+        assertTrue(completed[0]);
+    }
+
+    private CompletableFuture<Page<String>> fetch(String after) {
+        cursors.add(after == null ? "" : after);
+        var start = after == null ? 0 : IDS.indexOf(after) + 1;
+        var end = Math.min(start + 100, IDS.size());
+        return CompletableFuture.completedFuture(page(start, end, end < IDS.size()));
+    }
+
+    private static Page<String> page(int start, int end, boolean hasMore) {
+        var data = IDS.subList(start, end).stream().map(id -> "\"" + id + "\"").collect(Collectors.joining(","));
+        var json = "{\"object\":\"list\",\"data\":[" + data + "],\"first_id\":\"" + IDS.get(start)
+                + "\",\"last_id\":\"" + IDS.get(end - 1) + "\",\"has_more\":" + hasMore + "}";
+        try {
+            return new ObjectMapper().readValue(json, new TypeReference<Page<String>>() {
+            });
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
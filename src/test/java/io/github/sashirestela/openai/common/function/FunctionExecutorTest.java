@@ -3,19 +3,34 @@ package io.github.sashirestela.openai.common.function;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.sashirestela.cleverclient.support.Configurator;
 import io.github.sashirestela.openai.common.tool.Tool;
+import io.github.sashirestela.openai.common.tool.ToolCall;
 import io.github.sashirestela.openai.common.tool.ToolChoice;
 import io.github.sashirestela.openai.common.tool.ToolChoiceOption;
+import io.github.sashirestela.openai.common.tool.ToolType;
 import io.github.sashirestela.openai.exception.SimpleOpenAIException;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class FunctionExecutorTest {
 
@@ -177,6 +192,147 @@ class FunctionExecutorTest {
         assertEquals(actualResult, expectedResult);
     }
 
+    @Test
+    void shouldExecuteAllTheToolCallsInParallelAndReturnJson() {
+        Rendezvous.latch = new CountDownLatch(2);
+        var executor = new FunctionExecutor(List.of(FunctionDef.builder()
+                .name("rendezvous")
+                .functionalClass(Rendezvous.class)
+                .build()));
+        var toolCalls = List.of(
+                new ToolCall(0, "call_1", ToolType.FUNCTION, new FunctionCall("rendezvous", "{\"name\":\"a\"}")),
+                new ToolCall(1, "call_2", ToolType.FUNCTION, new FunctionCall("rendezvous", "{\"name\":\"b\"}")));
+
+        var actualList = executor.executeAllAsync(toolCalls, (id, result) -> id + "=" + result).join();
+
+        var expectedList = List.of("call_1={\"name\":\"a\",\"met\":true}", "call_2={\"name\":\"b\",\"met\":true}");
+        assertEquals(expectedList, actualList);
+    }
+
+    @Test
+    void shouldFailTheCallsExceedingTheTimeoutOfTheirFunction() {
+        var executor = new FunctionExecutor(List.of(FunctionDef.builder()
+                .name("sleep")
+                .functionalClass(Sleep.class)
+                .timeout(Duration.ofMillis(50))
+                .build()));
+
+        var result = executor.executeAsync(new FunctionCall("sleep", ""));
+
+        var exception = assertThrows(CompletionException.class, result::join);
+        assertEquals("The function sleep did not finish within PT0.05S.", exception.getCause().getMessage());
+    }
+
+    @Test
+    void shouldQueueTheCallsBeyondTheConcurrencyCapOfTheirFunction() {
+        Deque<Runnable> tasks = new ArrayDeque<>();
+        var executor = new FunctionExecutor(List.of(FunctionDef.builder()
+                .name("get_random_number")
+                .functionalClass(RandomNumber.class)
+                .maxConcurrency(1)
+                .build()));
+        executor.setExecutor(tasks::add);
+
+        var first = executor.executeAsync(new FunctionCall("get_random_number", ""));
+        var second = executor.executeAsync(new FunctionCall("get_random_number", ""));
+        assertEquals(1, tasks.size());
+
+        tasks.poll().run();
+        assertEquals("42", first.join());
+        assertEquals(1, tasks.size());
+
+        tasks.poll().run();
+        assertEquals("42", second.join());
+    }
+
+    @Test
+    void shouldComposeAsyncFunctionsWithoutUsingTheExecutor() {
+        AsyncLookup.pending = new CompletableFuture<>();
+        Deque<Runnable> tasks = new ArrayDeque<>();
+        var executor = new FunctionExecutor(List.of(FunctionDef.builder()
+                .name("lookup")
+                .functionalClass(AsyncLookup.class)
+                .build()));
+        executor.setExecutor(tasks::add);
+
+        var result = executor.executeAsync(new FunctionCall("lookup", "{\"key\":\"color\"}"));
+        assertFalse(result.isDone());
+
+        AsyncLookup.pending.complete(Map.of("color", "blue"));
+        assertEquals("{\"color\":\"blue\"}", result.join());
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    void shouldCancelTheStageOfAnAsyncFunctionExceedingItsTimeout() {
+        AsyncLookup.pending = new CompletableFuture<>();
+        var executor = new FunctionExecutor(List.of(FunctionDef.builder()
+                .name("lookup")
+                .functionalClass(AsyncLookup.class)
+                .timeout(Duration.ofMillis(50))
+                .build()));
+
+        var result = executor.executeAsync(new FunctionCall("lookup", "{\"key\":\"color\"}"));
+
+        assertThrows(CompletionException.class, result::join);
+        assertTrue(AsyncLookup.pending.isCancelled());
+    }
+
+    @Test
+    void shouldBuildTheToolOfAFunctionOnlyWhenItIsEnrolled() {
+        var conversions = new AtomicInteger();
+        var executor = new FunctionExecutor(List.of(FunctionDef.builder()
+                .name("get_random_number")
+                .functionalClass(RandomNumber.class)
+                .schemaConverter(functionalClass -> {
+                    conversions.incrementAndGet();
+                    return new ObjectMapper().createObjectNode().put("type", "object");
+                })
+                .build()));
+
+        executor.getToolFunctions();
+        executor.getToolFunctions(ToolChoice.function("get_random_number"));
+
+        assertEquals(1, conversions.get());
+    }
+
+    @Test
+    void shouldSeeAllTheFunctionsWhileTheyAreEnrolledAgain() throws InterruptedException {
+        var executor = new FunctionExecutor(functionList);
+        var enroller = new Thread(() -> {
+            for (var i = 0; i < 2_000; i++) {
+                executor.enrollFunctions(functionList);
+            }
+        });
+        enroller.start();
+
+        while (enroller.isAlive()) {
+            assertEquals(3, executor.getToolFunctions().size());
+            assertEquals("100.0", executor.executeAsync(
+                    new FunctionCall("convert_to_celsius", "{\"fahrenheit\": 212}")).join());
+        }
+        enroller.join();
+    }
+
+    @Test
+    void shouldReuseTheCachedResultOfTheCallsWithTheSameArguments() {
+        CountingPower.calls.set(0);
+        var executor = new FunctionExecutor(List.of(FunctionDef.builder()
+                .name("exponentiation")
+                .functionalClass(CountingPower.class)
+                .cacheTtl(Duration.ofMinutes(1))
+                .build()));
+
+        var first = executor.executeAsync(new FunctionCall("exponentiation", "{\"base\":2.0,\"exponent\":3.0}"));
+        var second = executor.executeAsync(new FunctionCall("exponentiation", "{\"exponent\": 3.0, \"base\": 2.0}"));
+        var other = executor.executeAsync(new FunctionCall("exponentiation", "{\"base\":3.0,\"exponent\":2.0}"));
+
+        assertEquals("8.0", first.join());
+        assertEquals("8.0", second.join());
+        assertEquals("9.0", other.join());
+        assertEquals(2, CountingPower.calls.get());
+    }
+
     private void sortListFunction(List<Tool> list) {
         list.sort((o1, o2) -> o1.getFunction().getName().compareTo(o2.getFunction().getName()));
     }
@@ -213,4 +369,67 @@ class FunctionExecutorTest {
 
     }
 
+    static class Rendezvous implements Functional {
+
+        static CountDownLatch latch;
+
+        public String name;
+
+        @Override
+        public Object execute() {
+            latch.countDown();
+            try {
+                var met = latch.await(5, TimeUnit.SECONDS);
+                var result = new LinkedHashMap<String, Object>();
+                result.put("name", name);
+                result.put("met", met);
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+    }
+
+    static class AsyncLookup implements AsyncFunctional {
+
+        static CompletableFuture<Object> pending;
+
+        public String key;
+
+        @Override
+        public CompletionStage<?> executeAsync() {
+            return pending;
+        }
+
+    }
+
+    static class CountingPower extends MathPower {
+
+        static AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Object execute() {
+            calls.incrementAndGet();
+            return super.execute();
+        }
+
+    }
+
+    static class Sleep implements Functional {
+
+        @Override
+        public Object execute() {
+            try {
+                Thread.sleep(5000);
+                return "awake";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "interrupted";
+            }
+        }
+
+    }
+
 }
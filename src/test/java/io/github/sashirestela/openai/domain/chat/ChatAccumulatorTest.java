@@ -0,0 +1,92 @@
+package io.github.sashirestela.openai.domain.chat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ChatAccumulatorTest {
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void shouldRebuildTheNonStreamingResponseFromTheChunks() throws JsonProcessingException {
+        var chunks = Stream.of(
+                chunk("{\"role\":\"assistant\",\"content\":\"\"}", null),
+                chunk("{\"content\":\"Hello\"}", null),
+                chunk("{\"content\":\", world\"}", null),
+                chunk("{}", "\"stop\""),
+                "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1700000000,"
+                        + "\"model\":\"gpt-4o-mini\",\"choices\":[],"
+                        + "\"usage\":{\"prompt_tokens\":9,\"completion_tokens\":3,\"total_tokens\":12}}");
+        var expected = "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"created\":1700000000,"
+                + "\"model\":\"gpt-4o-mini\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\","
+                + "\"content\":\"Hello, world\"},\"finish_reason\":\"stop\"}],"
+                + "\"usage\":{\"prompt_tokens\":9,\"completion_tokens\":3,\"total_tokens\":12}}";
+
+        var chat = accumulate(chunks);
+
+        assertEquals(json(read(expected)), json(chat));
+    }
+
+    @Test
+    void shouldStitchTheToolCallsByIndex() {
+        var chunks = Stream.of(
+                chunk("{\"role\":\"assistant\",\"content\":null,\"tool_calls\":[{\"index\":0,\"id\":\"call_1\","
+                        + "\"type\":\"function\",\"function\":{\"name\":\"get_weather\",\"arguments\":\"\"}}]}", null),
+                chunk("{\"tool_calls\":[{\"index\":0,\"function\":{\"arguments\":\"{\\\"city\\\":\"}}]}", null),
+                chunk("{\"tool_calls\":[{\"index\":1,\"id\":\"call_2\",\"type\":\"function\","
+                        + "\"function\":{\"name\":\"get_time\",\"arguments\":\"{}\"}}]}", null),
+                chunk("{\"tool_calls\":[{\"index\":0,\"function\":{\"arguments\":\"\\\"Lima\\\"}\"}}]}", null),
+                chunk("{}", "\"tool_calls\""));
+
+        var message = accumulate(chunks).firstMessage();
+
+        assertEquals(2, message.getToolCalls().size());
+        assertEquals("call_1", message.getToolCalls().get(0).getId());
+        assertEquals("{\"city\":\"Lima\"}", message.getToolCalls().get(0).getFunction().getArguments());
+        assertEquals("get_time", message.getToolCalls().get(1).getFunction().getName());
+        assertNull(message.getContent());
+    }
+
+    @Test
+    void shouldExposeThePartialStateAtAnyTime() {
+        var accumulator = new ChatAccumulator();
+
+        accumulator.accept(read(chunk("{\"role\":\"assistant\",\"content\":\"Hel\"}", null)));
+        var partial = accumulator.getChat();
+        accumulator.accept(read(chunk("{\"content\":\"lo\"}", null)));
+
+        assertEquals("Hel", partial.firstContent());
+        assertEquals("Hello", accumulator.getChat().firstContent());
+    }
+
+    private Chat accumulate(Stream<String> chunks) {
+        var accumulator = new ChatAccumulator();
+        chunks.map(this::read).forEach(accumulator);
+        return accumulator.getChat();
+    }
+
+    private static String chunk(String delta, String finishReason) {
+        return "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1700000000,"
+                + "\"model\":\"gpt-4o-mini\",\"choices\":[{\"index\":0,\"delta\":" + delta
+                + ",\"finish_reason\":" + finishReason + "}]}";
+    }
+
+    private Chat read(String json) {
+        try {
+            return objectMapper.readValue(json, Chat.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Object json(Chat chat) throws JsonProcessingException {
+        return objectMapper.readTree(objectMapper.writeValueAsString(chat));
+    }
+
+}
@@ -0,0 +1,116 @@
+package io.github.sashirestela.openai.domain.chat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.sashirestela.cleverclient.support.Configurator;
+import io.github.sashirestela.openai.common.function.FunctionDef;
+import io.github.sashirestela.openai.common.function.FunctionExecutor;
+import io.github.sashirestela.openai.common.function.Functional;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToolCallDispatcherTest {
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    Deque<Runnable> tasks = new ArrayDeque<>();
+    FunctionExecutor functionExecutor = new FunctionExecutor(List.of(
+            FunctionDef.builder()
+                    .name("convert_to_celsius")
+                    .description("Convert Fahrenheit to Celsius degrees")
+                    .functionalClass(ConvertToCelsius.class)
+                    .build()));
+    ToolCallDispatcher dispatcher = new ToolCallDispatcher(functionExecutor);
+
+    @BeforeAll
+    static void setup() {
+        Configurator.builder().objectMapper(new ObjectMapper()).build();
+    }
+
+    @BeforeEach
+    void init() {
+        functionExecutor.setExecutor(tasks::add);
+    }
+
+    @Test
+    void shouldExecuteEachCallOnceItsArgumentsAreComplete() {
+        dispatcher.accept(chunk("{\"index\":0,\"id\":\"call_1\",\"type\":\"function\","
+                + "\"function\":{\"name\":\"convert_to_celsius\",\"arguments\":\"{\\\"fahren\"}}"));
+        assertEquals(0, tasks.size());
+
+        dispatcher.accept(chunk("{\"index\":0,\"function\":{\"arguments\":\"heit\\\": 212}\"}}"));
+        assertEquals(1, tasks.size());
+
+        dispatcher.accept(chunk("{\"index\":1,\"id\":\"call_2\",\"type\":\"function\","
+                + "\"function\":{\"name\":\"convert_to_celsius\",\"arguments\":\"{\\\"fahrenheit\\\": 32}\"}}"));
+        assertEquals(2, tasks.size());
+
+        var result = dispatcher.complete();
+        tasks.removeLast().run();
+        tasks.removeLast().run();
+        var toolMessages = result.join();
+
+        assertEquals(List.of("call_1", "call_2"),
+                toolMessages.stream().map(ChatMessage.ToolMessage::getToolCallId).collect(Collectors.toList()));
+        assertEquals(List.of("100.0", "0.0"),
+                toolMessages.stream().map(ChatMessage.ToolMessage::getContent).collect(Collectors.toList()));
+    }
+
+    @Test
+    void shouldExecuteTheCallsWithoutArgumentsWhenTheChoiceFinishes() {
+        dispatcher.accept(chunk("{\"index\":0,\"id\":\"call_1\",\"type\":\"function\","
+                + "\"function\":{\"name\":\"convert_to_celsius\",\"arguments\":\"\"}}"));
+        assertEquals(0, tasks.size());
+
+        dispatcher.accept(read("{\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"tool_calls\"}]}"));
+
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    void shouldFailWhenACallHasNoFunctionName() {
+        dispatcher.accept(chunk("{\"index\":0,\"id\":\"call_1\",\"type\":\"function\","
+                + "\"function\":{\"arguments\":\"{}\"}}"));
+
+        var result = dispatcher.complete();
+
+        var exception = assertThrows(CompletionException.class, result::join);
+        assertTrue(exception.getCause() instanceof SimpleOpenAIException);
+        assertEquals(0, tasks.size());
+    }
+
+    private Chat chunk(String toolCall) {
+        return read("{\"choices\":[{\"index\":0,\"delta\":{\"tool_calls\":[" + toolCall + "]}}]}");
+    }
+
+    private Chat read(String json) {
+        try {
+            return objectMapper.readValue(json, Chat.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static class ConvertToCelsius implements Functional {
+
+        public double fahrenheit;
+
+        @Override
+        public Object execute() {
+            return (fahrenheit - 32) * 5 / 9;
+        }
+
+    }
+
+}
@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.net.http.HttpClient;
 import java.util.Arrays;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.mock;
 
@@ -49,4 +50,44 @@ class EmbeddingDomainTest {
         assertNotNull(embeddingResponse);
     }
 
+    @Test
+    void testEmbeddingsCreateVector() throws IOException {
+        var httpClient = mock(HttpClient.class);
+        var openAI = SimpleOpenAI.builder()
+                .apiKey("apiKey")
+                .httpClient(httpClient)
+                .build();
+        DomainTestingHelper.get().mockForObject(httpClient, "src/test/resources/embeddings_create_float.json");
+        var embeddingRequest = EmbeddingRequest.builder()
+                .model("text-embedding-ada-002")
+                .input(Arrays.asList("shiny sun", "blue sky"))
+                .user("test")
+                .build();
+        var embeddingResponse = openAI.embeddings().createVector(embeddingRequest).join();
+        System.out.println(embeddingResponse);
+        assertNotNull(embeddingResponse);
+        var vector = embeddingResponse.getData().get(0);
+        assertEquals(0.006234998f, vector.getEmbedding()[0]);
+        assertEquals(vector.getEmbedding().length, vector.asFloatBuffer().remaining());
+    }
+
+    @Test
+    void testEmbeddingsCreateVectorBase64() throws IOException {
+        var httpClient = mock(HttpClient.class);
+        var openAI = SimpleOpenAI.builder()
+                .apiKey("apiKey")
+                .httpClient(httpClient)
+                .build();
+        DomainTestingHelper.get().mockForObject(httpClient, "src/test/resources/embeddings_create_base64.json");
+        var embeddingRequest = EmbeddingRequest.builder()
+                .model("text-embedding-ada-002")
+                .input(Arrays.asList("shiny sun", "blue sky"))
+                .user("test")
+                .build();
+        var embeddingResponse = openAI.embeddings().createVectorBase64(embeddingRequest).join();
+        System.out.println(embeddingResponse);
+        assertNotNull(embeddingResponse);
+        assertEquals(1536, embeddingResponse.getData().get(0).getEmbedding().length);
+    }
+
 }
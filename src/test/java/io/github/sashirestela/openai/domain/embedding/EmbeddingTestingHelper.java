@@ -0,0 +1,31 @@
+package io.github.sashirestela.openai.domain.embedding;
+
+import io.github.sashirestela.openai.common.Usage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+public class EmbeddingTestingHelper {
+
+    private EmbeddingTestingHelper() {
+    }
+
+    /**
+     * Answers an embedding request as the service would, listing the data in reverse order and
+     * counting one token per input.
+     *
+     * @param request  The request.
+     * @param vectorOf Gives the vector of an input.
+     * @return The response.
+     */
+    public static Embedding<EmbeddingVector> embed(EmbeddingRequest request, Function<Object, float[]> vectorOf) {
+        var inputs = request.getInput() instanceof List ? (List<?>) request.getInput() : List.of(request.getInput());
+        var data = new ArrayList<EmbeddingVector>(inputs.size());
+        for (var i = inputs.size() - 1; i >= 0; i--) {
+            data.add(new EmbeddingVector(i, vectorOf.apply(inputs.get(i)), "embedding"));
+        }
+        return new Embedding<>("list", data, request.getModel(), Usage.of(inputs.size(), null, inputs.size()));
+    }
+
+}
@@ -0,0 +1,92 @@
+package io.github.sashirestela.openai.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncPollerTest {
+
+    AsyncPoller poller = AsyncPoller.builder()
+            .initialInterval(Duration.ofMillis(5))
+            .maxInterval(Duration.ofMillis(20))
+            .multiplier(2.0)
+            .build();
+
+    @AfterEach
+    void close() {
+        poller.close();
+    }
+
+    @Test
+    void shouldCompleteEachWatchWhenItsPredicateTurnsFalse() {
+        var queries = new AtomicInteger();
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+        for (var i = 0; i < 100; i++) {
+            var target = i % 4;
+            futures.add(poller.poll(0, value -> {
+                queries.incrementAndGet();
+                return CompletableFuture.completedFuture(value + 1);
+            }, value -> value <= target));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        for (var i = 0; i < 100; i++) {
+            assertEquals(i % 4 + 1, futures.get(i).join());
+        }
+        assertEquals(250, queries.get());
+    }
+
+    @Test
+    void shouldSpaceTheQueriesWithinTheBudget() {
+        var budgeted = AsyncPoller.builder()
+                .initialInterval(Duration.ofMillis(1))
+                .maxRequestsPerSecond(100.0)
+                .build();
+        var start = System.nanoTime();
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+        for (var i = 0; i < 20; i++) {
+            futures.add(budgeted.poll(0, value -> CompletableFuture.completedFuture(value + 1), value -> false));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        budgeted.close();
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 190);
+    }
+
+    @Test
+    void shouldCancelTheQueryInProgressWhenTheWatchIsCancelled() {
+        var query = new CompletableFuture<Integer>();
+        var started = new CompletableFuture<Void>();
+        var future = poller.poll(0, value -> {
+            started.complete(null);
+            return query;
+        }, value -> true);
+        started.join();
+
+        future.cancel(false);
+
+        assertThrows(CancellationException.class, () -> query.get(1, TimeUnit.SECONDS));
+        assertEquals(0, poller.getWatchCount());
+    }
+
+    @Test
+    void shouldPickTheIntervalFromTheState() {
+        var future = poller.poll(0, value -> CompletableFuture.completedFuture(value + 1), value -> value < 3,
+                value -> Duration.ofMillis(1));
+
+        assertEquals(3, future.join());
+    }
+
+}
@@ -3,7 +3,14 @@ package io.github.sashirestela.openai.support;
 import io.github.sashirestela.openai.support.Base64Util.MediaType;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -33,4 +40,28 @@ class Base64UtilTest {
         assertThrows(Exception.class, () -> Base64Util.decode(base64String, filePath));
     }
 
+    @Test
+    void testDecodeFloats() {
+        var floats = new float[] { 0.5f, -1.25f, 3.0e-7f, Float.MAX_VALUE, -0.0f };
+        var bytes = ByteBuffer.allocate(floats.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (var value : floats) {
+            bytes.putFloat(value);
+        }
+        var base64String = Base64.getEncoder().encodeToString(bytes.array());
+        assertEquals(floats.length, Base64Util.floatCount(base64String));
+        var heap = new float[floats.length];
+        Base64Util.decodeFloats(base64String, FloatBuffer.wrap(heap));
+        assertArrayEquals(floats, heap);
+        var offHeap = ByteBuffer.allocateDirect(floats.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        Base64Util.decodeFloats(base64String, offHeap.asFloatBuffer());
+        assertEquals(-1.25f, offHeap.getFloat(Float.BYTES));
+    }
+
+    @Test
+    void testDecodeFloatsException() {
+        var target = FloatBuffer.allocate(4);
+        assertThrows(Exception.class, () -> Base64Util.decodeFloats("AAA*", target));
+        assertThrows(Exception.class, () -> Base64Util.decodeFloats("AAAA", target));
+    }
+
 }
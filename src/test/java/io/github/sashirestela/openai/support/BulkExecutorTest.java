@@ -0,0 +1,139 @@
+package io.github.sashirestela.openai.support;
+
+import io.github.sashirestela.openai.exception.OpenAIException;
+import io.github.sashirestela.openai.exception.OpenAIResponseInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkExecutorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldRunEveryIdWithBoundedConcurrency() {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var bulkExecutor = BulkExecutor.builder().maxConcurrency(4).build();
+
+        var result = bulkExecutor.run(ids(200), id -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                running.decrementAndGet();
+                return id;
+            }, CompletableFuture.delayedExecutor(1, TimeUnit.MILLISECONDS));
+        }).join();
+
+        assertEquals(200, result.getSucceeded());
+        assertTrue(result.getFailures().isEmpty());
+        assertTrue(maxRunning.get() <= 4);
+    }
+
+    @Test
+    void shouldReportTheFailuresPerId() {
+        var reported = ConcurrentHashMap.<String>newKeySet();
+        var bulkExecutor = BulkExecutor.builder().build();
+
+        var result = bulkExecutor.run(ids(10), id -> id.endsWith("3")
+                ? CompletableFuture.failedFuture(new IllegalStateException("gone"))
+                : CompletableFuture.completedFuture(true),
+                item -> reported.add(item.getId())).join();
+
+        assertEquals(9, result.getSucceeded());
+        assertEquals(Set.of("file_3"), result.getFailures().keySet());
+        assertEquals(10, reported.size());
+    }
+
+    @Test
+    void shouldResumeFromTheJournal() throws IOException {
+        var journal = tempDir.resolve("bulk.journal");
+        var bulkExecutor = BulkExecutor.builder().journal(journal).build();
+        var calls = ConcurrentHashMap.<String>newKeySet();
+
+        var first = bulkExecutor.run(ids(10), id -> Integer.parseInt(id.substring(5)) < 6
+                ? CompletableFuture.completedFuture(true)
+                : CompletableFuture.<Boolean>failedFuture(new IllegalStateException("interrupted"))).join();
+        var second = bulkExecutor.run(ids(10), id -> {
+            calls.add(id);
+            return CompletableFuture.completedFuture(true);
+        }).join();
+
+        assertEquals(4, first.getFailures().size());
+        assertEquals(6, second.getSkipped());
+        assertEquals(Set.of("file_6", "file_7", "file_8", "file_9"), calls);
+        assertEquals(10, Files.readAllLines(journal).size());
+    }
+
+    @Test
+    void shouldPauseAndRetryOnRateLimits() {
+        var attempts = new AtomicInteger();
+        var bulkExecutor = BulkExecutor.builder().maxConcurrency(1).build();
+
+        var result = bulkExecutor.run(ids(3), id -> id.equals("file_1") && attempts.incrementAndGet() == 1
+                ? CompletableFuture.failedFuture(rateLimit())
+                : CompletableFuture.completedFuture(true)).join();
+
+        assertEquals(3, result.getSucceeded());
+        assertEquals(1, result.getRateLimitPauses());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void shouldCompleteTheCallsWhileTheNextIdIsAwaited() throws Exception {
+        var nextPage = new CountDownLatch(1);
+        var call = new CompletableFuture<Boolean>();
+        var reported = new CompletableFuture<String>();
+        var ids = ids(2).peek(id -> {
+            if (id.equals("file_1")) {
+                await(nextPage);
+            }
+        });
+        var bulkExecutor = BulkExecutor.builder().build();
+
+        var result = CompletableFuture.supplyAsync(() -> bulkExecutor.run(ids,
+                id -> id.equals("file_0") ? call : CompletableFuture.completedFuture(true),
+                item -> reported.complete(item.getId()))).thenCompose(job -> job);
+        CompletableFuture.runAsync(() -> call.complete(true));
+
+        assertEquals("file_0", reported.get(5, TimeUnit.SECONDS));
+        nextPage.countDown();
+        assertEquals(2, result.get(5, TimeUnit.SECONDS).getSucceeded());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Stream<String> ids(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "file_" + i);
+    }
+
+    private static OpenAIException rateLimit() {
+        return new OpenAIException.RateLimitException(OpenAIResponseInfo.builder()
+                .status(429)
+                .responseHeaders(Map.of("retry-after-ms", List.of("10")))
+                .build());
+    }
+
+}
@@ -0,0 +1,193 @@
+package io.github.sashirestela.openai.support;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.sashirestela.cleverclient.support.Configurator;
+import io.github.sashirestela.openai.OpenAI;
+import io.github.sashirestela.openai.common.function.FunctionDef;
+import io.github.sashirestela.openai.common.function.FunctionExecutor;
+import io.github.sashirestela.openai.common.function.Functional;
+import io.github.sashirestela.openai.domain.chat.Chat;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.AssistantMessage;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.ToolMessage;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.UserMessage;
+import io.github.sashirestela.openai.domain.chat.ChatRequest;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import io.github.sashirestela.openai.support.ChatAgent.StopReason;
+import io.github.sashirestela.openai.support.ChatAgent.Turn;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatAgentTest {
+
+    static final String TOOL_CALL = "{\"id\":\"call_1\",\"type\":\"function\","
+            + "\"function\":{\"name\":\"convert_to_celsius\",\"arguments\":\"{\\\"fahrenheit\\\": 212}\"}}";
+    static final String USAGE = "\"usage\":{\"prompt_tokens\":10,\"completion_tokens\":5,\"total_tokens\":15}";
+
+    OpenAI.ChatCompletions chatService = mock(OpenAI.ChatCompletions.class);
+    FunctionExecutor functionExecutor = new FunctionExecutor(List.of(
+            FunctionDef.builder()
+                    .name("convert_to_celsius")
+                    .description("Convert Fahrenheit to Celsius degrees")
+                    .functionalClass(ConvertToCelsius.class)
+                    .build()));
+    ChatRequest chatRequest = ChatRequest.builder()
+            .model("gpt-4o-mini")
+            .message(UserMessage.of("How hot is boiling water in Celsius?"))
+            .tools(functionExecutor.getToolFunctions())
+            .build();
+
+    @BeforeAll
+    static void setup() {
+        Configurator.builder().objectMapper(new ObjectMapper()).build();
+    }
+
+    @BeforeEach
+    void init() {
+        functionExecutor.setExecutor(Runnable::run);
+    }
+
+    @Test
+    void shouldCallTheToolsUntilTheModelAnswers() {
+        when(chatService.create(any(ChatRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(chat("{\"role\":\"assistant\",\"tool_calls\":[" + TOOL_CALL + "]}",
+                        "tool_calls")),
+                CompletableFuture.completedFuture(chat("{\"role\":\"assistant\",\"content\":\"100 degrees.\"}",
+                        "stop")));
+        var turns = new ArrayList<Turn>();
+        var agent = ChatAgent.builder()
+                .chatCompletions(chatService)
+                .functionExecutor(functionExecutor)
+                .turnListener(turns::add)
+                .build();
+
+        var result = agent.run(chatRequest).join();
+
+        assertEquals(StopReason.COMPLETED, result.getStopReason());
+        assertEquals("100 degrees.", result.getChat().firstContent());
+        assertEquals(30, result.getUsage().getTotalTokens());
+        assertEquals(2, turns.size());
+        assertEquals(1, turns.get(0).getToolMessages().size());
+        var captor = ArgumentCaptor.forClass(ChatRequest.class);
+        verify(chatService, times(2)).create(captor.capture());
+        var messages = captor.getAllValues().get(1).getMessages();
+        assertEquals(3, messages.size());
+        assertEquals("call_1", ((AssistantMessage) messages.get(1)).getToolCalls().get(0).getId());
+        assertEquals("100.0", ((ToolMessage) messages.get(2)).getContent());
+        assertEquals(4, result.getMessages().size());
+    }
+
+    @Test
+    void shouldStopAtTheMaximumTurns() {
+        when(chatService.create(any(ChatRequest.class))).thenAnswer(invocation -> CompletableFuture.completedFuture(
+                chat("{\"role\":\"assistant\",\"tool_calls\":[" + TOOL_CALL + "]}", "tool_calls")));
+        var agent = ChatAgent.builder()
+                .chatCompletions(chatService)
+                .functionExecutor(functionExecutor)
+                .maxTurns(3)
+                .build();
+
+        var result = agent.run(chatRequest).join();
+
+        assertEquals(StopReason.MAX_TURNS, result.getStopReason());
+        assertEquals(3, result.getTurns().size());
+        verify(chatService, times(3)).create(any(ChatRequest.class));
+    }
+
+    @Test
+    void shouldStopAtTheTokenBudget() {
+        when(chatService.create(any(ChatRequest.class))).thenAnswer(invocation -> CompletableFuture.completedFuture(
+                chat("{\"role\":\"assistant\",\"tool_calls\":[" + TOOL_CALL + "]}", "tool_calls")));
+        var agent = ChatAgent.builder()
+                .chatCompletions(chatService)
+                .functionExecutor(functionExecutor)
+                .maxTokens(20)
+                .build();
+
+        var result = agent.run(chatRequest).join();
+
+        assertEquals(StopReason.MAX_TOKENS, result.getStopReason());
+        assertEquals(2, result.getTurns().size());
+    }
+
+    @Test
+    void shouldRunTheToolsOfAStreamedAnswer() {
+        when(chatService.createStream(any(ChatRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(Stream.of(
+                        chunk("{\"role\":\"assistant\",\"tool_calls\":[{\"index\":0,"
+                                + TOOL_CALL.substring(1) + "]}", null),
+                        chunk("{}", "\"tool_calls\""))),
+                CompletableFuture.completedFuture(Stream.of(
+                        chunk("{\"role\":\"assistant\",\"content\":\"100 \"}", null),
+                        chunk("{\"content\":\"degrees.\"}", "\"stop\""))));
+        var chunks = new ArrayList<Chat>();
+        var agent = ChatAgent.builder()
+                .chatCompletions(chatService)
+                .functionExecutor(functionExecutor)
+                .stream(true)
+                .chunkListener(chunks::add)
+                .executor(Runnable::run)
+                .build();
+
+        var result = agent.run(chatRequest).join();
+
+        assertEquals(StopReason.COMPLETED, result.getStopReason());
+        assertEquals("100 degrees.", result.getChat().firstContent());
+        assertEquals("100.0", ((ToolMessage) result.getMessages().get(2)).getContent());
+        assertEquals(4, chunks.size());
+    }
+
+    @Test
+    void shouldRequireAnExecutorToReadTheStreamedAnswers() {
+        var builder = ChatAgent.builder().chatCompletions(chatService).functionExecutor(functionExecutor).stream(true);
+
+        assertThrows(SimpleOpenAIException.class, builder::build);
+    }
+
+    private static Chat chat(String message, String finishReason) {
+        return read("{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"model\":\"gpt-4o-mini\","
+                + "\"choices\":[{\"index\":0,\"message\":" + message + ",\"finish_reason\":\"" + finishReason
+                + "\"}]," + USAGE + "}");
+    }
+
+    private static Chat chunk(String delta, String finishReason) {
+        return read("{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"model\":\"gpt-4o-mini\","
+                + "\"choices\":[{\"index\":0,\"delta\":" + delta + ",\"finish_reason\":" + finishReason + "}]}");
+    }
+
+    private static Chat read(String json) {
+        try {
+            return new ObjectMapper().readValue(json, Chat.class);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static class ConvertToCelsius implements Functional {
+
+        public double fahrenheit;
+
+        @Override
+        public Object execute() {
+            return (fahrenheit - 32) * 5 / 9;
+        }
+
+    }
+
+}
@@ -0,0 +1,217 @@
+package io.github.sashirestela.openai.support;
+
+import io.github.sashirestela.openai.OpenAI;
+import io.github.sashirestela.openai.domain.embedding.Embedding;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingTestingHelper;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingVector;
+import io.github.sashirestela.openai.exception.OpenAIException;
+import io.github.sashirestela.openai.exception.OpenAIResponseInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmbeddingBatcherTest {
+
+    OpenAI.Embeddings embeddings = mock(OpenAI.Embeddings.class);
+    EmbeddingBatcher batcher;
+
+    @AfterEach
+    void close() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    @Test
+    void shouldGatherConcurrentRequestsIntoOne() {
+        when(embeddings.createVectorPrimitive(any(EmbeddingRequest.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(embed(invocation.getArgument(0))));
+        batcher = EmbeddingBatcher.builder().embeddings(embeddings).maxDelay(Duration.ofMillis(50)).build();
+
+        var futures = IntStream.range(0, 10)
+                .mapToObj(i -> batcher.createVector(request("text-embedding-3-small", i % 3 == 0
+                        ? List.of(String.valueOf(i), String.valueOf(i + 100))
+                        : String.valueOf(i))))
+                .collect(Collectors.toList());
+
+        for (var i = 0; i < futures.size(); i++) {
+            var data = futures.get(i).join().getData();
+            assertEquals(i % 3 == 0 ? 2 : 1, data.size());
+            assertEquals(0, data.get(0).getIndex());
+            assertEquals(i, data.get(0).getEmbedding()[0]);
+            if (i % 3 == 0) {
+                assertEquals(1, data.get(1).getIndex());
+                assertEquals(i + 100, data.get(1).getEmbedding()[0]);
+            }
+        }
+        var captor = ArgumentCaptor.forClass(EmbeddingRequest.class);
+        verify(embeddings, times(1)).createVectorPrimitive(captor.capture());
+        assertEquals(14, ((List<?>) captor.getValue().getInput()).size());
+    }
+
+    @Test
+    void shouldSendAFullBatchRightAway() {
+        when(embeddings.createVectorPrimitive(any(EmbeddingRequest.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(embed(invocation.getArgument(0))));
+        batcher = EmbeddingBatcher.builder()
+                .embeddings(embeddings)
+                .maxBatchSize(4)
+                .maxDelay(Duration.ofMinutes(1))
+                .build();
+
+        var futures = IntStream.range(0, 5)
+                .mapToObj(i -> batcher.createVector(request("text-embedding-3-small", String.valueOf(i))))
+                .collect(Collectors.toList());
+
+        futures.subList(0, 4).forEach(CompletableFuture::join);
+        assertFalse(futures.get(4).isDone());
+        batcher.close();
+        assertEquals(4, futures.get(4).join().getData().get(0).getEmbedding()[0]);
+        verify(embeddings, times(2)).createVectorPrimitive(any(EmbeddingRequest.class));
+    }
+
+    @Test
+    void shouldKeepApartTheRequestsForOtherModels() {
+        when(embeddings.createVectorPrimitive(any(EmbeddingRequest.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(embed(invocation.getArgument(0))));
+        batcher = EmbeddingBatcher.builder().embeddings(embeddings).maxDelay(Duration.ofMillis(20)).build();
+
+        var small = batcher.createVector(request("text-embedding-3-small", "1"));
+        var large = batcher.createVector(request("text-embedding-3-large", "2"));
+        var tokens = batcher.createVector(request("text-embedding-3-small", List.of(List.of(1, 2, 3))));
+
+        assertEquals(1, small.join().getData().get(0).getEmbedding()[0]);
+        assertEquals(2, large.join().getData().get(0).getEmbedding()[0]);
+        assertTrue(tokens.isDone());
+        verify(embeddings, times(3)).createVectorPrimitive(any(EmbeddingRequest.class));
+    }
+
+    @Test
+    void shouldFailEveryCallerOfAFailedBatch() {
+        var failure = new IllegalStateException("unavailable");
+        when(embeddings.createVectorPrimitive(any(EmbeddingRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(failure));
+        batcher = EmbeddingBatcher.builder().embeddings(embeddings).maxDelay(Duration.ofMillis(20)).build();
+
+        var first = batcher.createVector(request("text-embedding-3-small", "1"));
+        var second = batcher.createVector(request("text-embedding-3-small", "2"));
+
+        assertSame(failure, assertThrows(CompletionException.class, first::join).getCause());
+        assertSame(failure, assertThrows(CompletionException.class, second::join).getCause());
+    }
+
+    @Test
+    void shouldSendABatchOnceItsTokensAreFull() {
+        when(embeddings.createVectorPrimitive(any(EmbeddingRequest.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(embed(invocation.getArgument(0))));
+        batcher = EmbeddingBatcher.builder()
+                .embeddings(embeddings)
+                .maxBatchTokens(25)
+                .maxDelay(Duration.ofMillis(20))
+                .tokenCounter(text -> 10)
+                .build();
+
+        var futures = IntStream.range(0, 5)
+                .mapToObj(i -> batcher.createVector(request("text-embedding-3-small", String.valueOf(i))))
+                .collect(Collectors.toList());
+
+        futures.forEach(CompletableFuture::join);
+        var captor = ArgumentCaptor.forClass(EmbeddingRequest.class);
+        verify(embeddings, times(3)).createVectorPrimitive(captor.capture());
+        assertEquals(List.of(2, 2, 1), captor.getAllValues().stream()
+                .map(request -> ((List<?>) request.getInput()).size())
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void shouldSendTheRequestsAloneWhenTheBatchIsRejected() {
+        var rejected = new OpenAIException.BadRequestException(OpenAIResponseInfo.builder().status(400).build());
+        when(embeddings.createVectorPrimitive(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            var input = request.getInput();
+            var isBad = input instanceof List ? ((List<?>) input).contains("bad") : "bad".equals(input);
+            return isBad
+                    ? CompletableFuture.failedFuture(rejected)
+                    : CompletableFuture.completedFuture(embed(request));
+        });
+        batcher = EmbeddingBatcher.builder().embeddings(embeddings).maxDelay(Duration.ofMillis(20)).build();
+
+        var first = batcher.createVector(request("text-embedding-3-small", "1"));
+        var bad = batcher.createVector(request("text-embedding-3-small", "bad"));
+        var second = batcher.createVector(request("text-embedding-3-small", "2"));
+
+        assertEquals(1, first.join().getData().get(0).getEmbedding()[0]);
+        assertEquals(2, second.join().getData().get(0).getEmbedding()[0]);
+        assertSame(rejected, assertThrows(CompletionException.class, bad::join).getCause());
+        verify(embeddings, times(4)).createVectorPrimitive(any(EmbeddingRequest.class));
+    }
+
+    @Test
+    void shouldSendTheFullBatchesStillQueuedOnClose() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        when(embeddings.createVectorPrimitive(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            if (List.of("0").equals(request.getInput())) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return CompletableFuture.completedFuture(embed(request));
+        });
+        batcher = EmbeddingBatcher.builder()
+                .embeddings(embeddings)
+                .maxBatchSize(1)
+                .maxDelay(Duration.ofMinutes(1))
+                .build();
+
+        var first = batcher.createVector(request("text-embedding-3-small", "0"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        var second = batcher.createVector(request("text-embedding-3-small", "1"));
+        batcher.close();
+        release.countDown();
+
+        assertEquals(1, second.get(5, TimeUnit.SECONDS).getData().get(0).getEmbedding()[0]);
+        assertEquals(0, first.get(5, TimeUnit.SECONDS).getData().get(0).getEmbedding()[0]);
+        verify(embeddings, times(2)).createVectorPrimitive(any(EmbeddingRequest.class));
+    }
+
+    private static EmbeddingRequest request(String model, Object input) {
+        return EmbeddingRequest.builder().model(model).input(input).build();
+    }
+
+    /**
+     * Embeds each text on one dimension holding its number, listing the data in reverse order.
+     */
+    private static Embedding<EmbeddingVector> embed(EmbeddingRequest request) {
+        return EmbeddingTestingHelper.embed(request,
+                input -> new float[] { input instanceof String ? Float.parseFloat((String) input) : 0 });
+    }
+
+}
@@ -0,0 +1,165 @@
+package io.github.sashirestela.openai.support;
+
+import io.github.sashirestela.openai.OpenAI;
+import io.github.sashirestela.openai.domain.embedding.Embedding;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingTestingHelper;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingVector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmbeddingCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    OpenAI.Embeddings embeddings = mock(OpenAI.Embeddings.class);
+
+    @Test
+    void shouldSendOnlyTheTextsNotInTheCache() {
+        mockEmbeddings();
+        try (var cache = EmbeddingCache.builder().embeddings(embeddings).directory(tempDir).build()) {
+            cache.createVector(request("text-embedding-3-small", List.of("1", "2"))).join();
+
+            var embedding = cache.createVector(request("text-embedding-3-small", List.of("3", "1", "4", "2"))).join();
+
+            assertEquals(List.of(0, 1, 2, 3),
+                    embedding.getData().stream().map(EmbeddingVector::getIndex).collect(Collectors.toList()));
+            assertEquals(List.of(3f, 1f, 4f, 2f),
+                    embedding.getData().stream().map(data -> data.getEmbedding()[0]).collect(Collectors.toList()));
+            var captor = ArgumentCaptor.forClass(EmbeddingRequest.class);
+            verify(embeddings, times(2)).createVectorPrimitive(captor.capture());
+            assertEquals(List.of("3", "4"), captor.getAllValues().get(1).getInput());
+        }
+    }
+
+    @Test
+    void shouldAnswerFromTheCacheWithoutCallingTheService() {
+        mockEmbeddings();
+        try (var cache = EmbeddingCache.builder().embeddings(embeddings).directory(tempDir).build()) {
+            cache.createVector(request("text-embedding-3-small", "7")).join();
+
+            var embedding = cache.createVector(request("text-embedding-3-small", "7")).join();
+            var floats = cache.createPrimitive(request("text-embedding-3-small", "7")).join();
+            var base64 = cache.createBase64(request("text-embedding-3-small", "7")).join();
+
+            assertArrayEquals(vector(7), embedding.getData().get(0).getEmbedding());
+            assertEquals(List.of(7.0, 1.0), floats.getData().get(0).getEmbedding());
+            assertArrayEquals(vector(7), base64.getData().get(0).toFloatArray());
+            assertEquals(0, embedding.getUsage().getPromptTokens());
+            verify(embeddings, times(1)).createVectorPrimitive(any(EmbeddingRequest.class));
+        }
+    }
+
+    @Test
+    void shouldShareTheFilesBetweenInstances() {
+        mockEmbeddings();
+        try (var cache = EmbeddingCache.builder().embeddings(embeddings).directory(tempDir).build()) {
+            cache.createVector(request("text-embedding-3-small", texts(500))).join();
+        }
+
+        try (var cache = EmbeddingCache.builder().embeddings(embeddings).directory(tempDir).build()) {
+            var embedding = cache.createVector(request("text-embedding-3-small", texts(500))).join();
+
+            assertArrayEquals(vector(499), embedding.getData().get(499).getEmbedding());
+            verify(embeddings, times(1)).createVectorPrimitive(any(EmbeddingRequest.class));
+        }
+    }
+
+    @Test
+    void shouldKeepApartTheModelsAndDimensions() {
+        mockEmbeddings();
+        try (var cache = EmbeddingCache.builder().embeddings(embeddings).directory(tempDir).build()) {
+            cache.createVector(request("text-embedding-3-small", "1")).join();
+            cache.createVector(request("text-embedding-3-large", "1")).join();
+            cache.createVector(EmbeddingRequest.builder()
+                    .model("text-embedding-3-small")
+                    .dimensions(256)
+                    .input("1")
+                    .build()).join();
+
+            verify(embeddings, times(3)).createVectorPrimitive(any(EmbeddingRequest.class));
+        }
+    }
+
+    @Test
+    void shouldStopKeepingVectorsWhenFull() {
+        mockEmbeddings();
+        try (var cache = EmbeddingCache.builder().embeddings(embeddings).directory(tempDir).maxEntries(2).build()) {
+            cache.createVector(request("text-embedding-3-small", List.of("1", "2", "3"))).join();
+
+            cache.createVector(request("text-embedding-3-small", List.of("1", "2", "3"))).join();
+
+            var captor = ArgumentCaptor.forClass(EmbeddingRequest.class);
+            verify(embeddings, times(2)).createVectorPrimitive(captor.capture());
+            assertEquals(List.of("3"), captor.getAllValues().get(1).getInput());
+        }
+    }
+
+    @Test
+    void shouldKeepOneVectorForConcurrentMissesOfTheSameText() {
+        var deferred = new ArrayList<Runnable>();
+        when(embeddings.createVectorPrimitive(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            var response = embed(invocation.getArgument(0));
+            if (deferred.size() == 2) {
+                return CompletableFuture.completedFuture(response);
+            }
+            var future = new CompletableFuture<Embedding<EmbeddingVector>>();
+            deferred.add(() -> future.complete(response));
+            return future;
+        });
+        try (var cache = EmbeddingCache.builder().embeddings(embeddings).directory(tempDir).maxEntries(2).build()) {
+            var first = cache.createVector(request("text-embedding-3-small", "1"));
+            var second = cache.createVector(request("text-embedding-3-small", "1"));
+            deferred.forEach(Runnable::run);
+            first.join();
+            second.join();
+
+            cache.createVector(request("text-embedding-3-small", List.of("1", "2"))).join();
+            cache.createVector(request("text-embedding-3-small", List.of("1", "2"))).join();
+
+            verify(embeddings, times(3)).createVectorPrimitive(any(EmbeddingRequest.class));
+        }
+    }
+
+    private void mockEmbeddings() {
+        when(embeddings.createVectorPrimitive(any(EmbeddingRequest.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(embed(invocation.getArgument(0))));
+    }
+
+    private static EmbeddingRequest request(String model, Object input) {
+        return EmbeddingRequest.builder().model(model).input(input).build();
+    }
+
+    private static List<String> texts(int count) {
+        return IntStream.range(0, count).mapToObj(String::valueOf).collect(Collectors.toList());
+    }
+
+    private static float[] vector(int number) {
+        return new float[] { number, 1 };
+    }
+
+    /**
+     * Embeds each text, a number, on two dimensions: the number and 1.
+     */
+    private static Embedding<EmbeddingVector> embed(EmbeddingRequest request) {
+        return EmbeddingTestingHelper.embed(request, input -> vector(Integer.parseInt((String) input)));
+    }
+
+}
@@ -0,0 +1,187 @@
+package io.github.sashirestela.openai.support;
+
+import io.github.sashirestela.openai.OpenAI;
+import io.github.sashirestela.openai.domain.embedding.Embedding;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingTestingHelper;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingVector;
+import io.github.sashirestela.openai.exception.OpenAIException;
+import io.github.sashirestela.openai.exception.OpenAIResponseInfo;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmbeddingPipelineTest {
+
+    OpenAI.Embeddings embeddings = mock(OpenAI.Embeddings.class);
+    List<Integer> requestSizes = new ArrayList<>();
+    List<Long> handed = new ArrayList<>();
+
+    @Test
+    void shouldPackTheTextsAndHandTheVectorsInOrder() {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        when(embeddings.createVectorBase64(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            var response = embed(invocation.getArgument(0));
+            return CompletableFuture.supplyAsync(() -> {
+                running.decrementAndGet();
+                return response;
+            }, CompletableFuture.delayedExecutor(ThreadLocalRandom.current().nextInt(5), TimeUnit.MILLISECONDS));
+        });
+        var pipeline = EmbeddingPipeline.builder()
+                .embeddings(embeddings)
+                .model("text-embedding-3-small")
+                .maxInputsPerRequest(10)
+                .maxTokensPerRequest(100)
+                .maxConcurrency(4)
+                .tokenCounter(String::length)
+                .build();
+
+        var result = pipeline.run(texts(1000), this::check).join();
+
+        assertEquals(1000, result.getTexts());
+        assertEquals(1000, handed.size());
+        assertTrue(requestSizes.stream().allMatch(size -> size <= 10));
+        assertTrue(maxRunning.get() <= 4);
+        assertEquals(result.getRequests(), requestSizes.size());
+    }
+
+    @Test
+    void shouldPackByTokensWhenTheTextsAreLong() {
+        when(embeddings.createVectorBase64(any(EmbeddingRequest.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(embed(invocation.getArgument(0))));
+        var pipeline = EmbeddingPipeline.builder()
+                .embeddings(embeddings)
+                .model("text-embedding-3-small")
+                .maxTokensPerRequest(25)
+                .tokenCounter(text -> 10)
+                .build();
+
+        var result = pipeline.run(texts(7), this::check).join();
+
+        assertEquals(List.of(2, 2, 2, 1), requestSizes);
+        assertEquals(7, result.getTexts());
+        assertEquals(7, result.getPromptTokens());
+    }
+
+    @Test
+    void shouldPauseAndResendOnRateLimits() {
+        var attempts = new AtomicInteger();
+        when(embeddings.createVectorBase64(any(EmbeddingRequest.class))).thenAnswer(invocation -> attempts
+                .incrementAndGet() == 2
+                        ? CompletableFuture.failedFuture(rateLimit())
+                        : CompletableFuture.completedFuture(embed(invocation.getArgument(0))));
+        var pipeline = EmbeddingPipeline.builder()
+                .embeddings(embeddings)
+                .model("text-embedding-3-small")
+                .maxInputsPerRequest(5)
+                .maxConcurrency(1)
+                .build();
+
+        var result = pipeline.run(texts(20), this::check).join();
+
+        assertEquals(20, result.getTexts());
+        assertEquals(1, result.getRateLimitPauses());
+        assertEquals(5, result.getRequests());
+    }
+
+    @Test
+    void shouldStopOnFailuresAfterHandingAPrefix() {
+        when(embeddings.createVectorBase64(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            return ((List<?>) request.getInput()).contains("text 42")
+                    ? CompletableFuture.failedFuture(new IllegalStateException("bad input"))
+                    : CompletableFuture.completedFuture(embed(request));
+        });
+        var pipeline = EmbeddingPipeline.builder()
+                .embeddings(embeddings)
+                .model("text-embedding-3-small")
+                .maxInputsPerRequest(10)
+                .maxConcurrency(1)
+                .build();
+
+        var future = pipeline.run(texts(100), this::check);
+
+        var exception = assertThrows(CompletionException.class, future::join);
+        assertTrue(exception.getCause() instanceof SimpleOpenAIException);
+        assertEquals("The request of the texts 40 to 49 failed.", exception.getCause().getMessage());
+        assertTrue(exception.getCause().getCause() instanceof IllegalStateException);
+        assertEquals(40, handed.size());
+    }
+
+    @Test
+    void shouldSkipTheTextsTheServerRejects() {
+        when(embeddings.createVectorBase64(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            return ((List<?>) request.getInput()).contains("text 42")
+                    ? CompletableFuture.failedFuture(new OpenAIException.BadRequestException(
+                            OpenAIResponseInfo.builder().status(400).build()))
+                    : CompletableFuture.completedFuture(embed(request));
+        });
+        var pipeline = EmbeddingPipeline.builder()
+                .embeddings(embeddings)
+                .model("text-embedding-3-small")
+                .maxInputsPerRequest(10)
+                .maxConcurrency(2)
+                .build();
+        var outcomes = new ArrayList<String>();
+
+        var result = pipeline.run(texts(100), (index, vector) -> outcomes.add("vector " + (long) vector[0]),
+                (index, text, failure) -> outcomes.add("failure " + index + " " + text)).join();
+
+        var expected = IntStream.range(0, 100)
+                .mapToObj(i -> i == 42 ? "failure 42 text 42" : "vector " + i)
+                .collect(Collectors.toList());
+        assertEquals(expected, outcomes);
+        assertEquals(99, result.getTexts());
+        assertEquals(1, result.getFailedTexts());
+    }
+
+    private synchronized void check(long index, float[] vector) {
+        assertEquals(handed.size(), index);
+        assertEquals(index, (long) vector[0]);
+        handed.add(index);
+    }
+
+    private static Stream<String> texts(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "text " + i);
+    }
+
+    /**
+     * Embeds each text on one dimension holding its number, and counts one token per text.
+     */
+    private Embedding<EmbeddingVector> embed(EmbeddingRequest request) {
+        synchronized (this) {
+            requestSizes.add(((List<?>) request.getInput()).size());
+        }
+        return EmbeddingTestingHelper.embed(request,
+                input -> new float[] { Float.parseFloat(((String) input).substring(5)) });
+    }
+
+    private static OpenAIException rateLimit() {
+        return new OpenAIException.RateLimitException(OpenAIResponseInfo.builder()
+                .status(429)
+                .responseHeaders(Map.of("retry-after-ms", List.of("10")))
+                .build());
+    }
+
+}
@@ -0,0 +1,89 @@
+package io.github.sashirestela.openai.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SseParserTest {
+
+    List<String> events = new ArrayList<>();
+    List<String> eventNames = new ArrayList<>();
+    int doneCount;
+    SseParser parser = new SseParser(new SseParser.Listener() {
+
+        @Override
+        public void onData(byte[] data, int length) {
+            assertEquals('\n', data[length]);
+            events.add(new String(data, 0, length, StandardCharsets.UTF_8));
+            eventNames.add(parser.getEventName());
+        }
+
+        @Override
+        public void onDone() {
+            doneCount++;
+        }
+
+    });
+
+    @Test
+    void shouldDispatchEventsSplitAcrossBuffers() {
+        var bytes = "data: {\"a\":1}\n\ndata:{\"b\":2}\n\n".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i += 3) {
+            parser.feed(ByteBuffer.wrap(bytes, i, Math.min(3, bytes.length - i)).slice());
+        }
+
+        assertEquals(List.of("{\"a\":1}", "{\"b\":2}"), events);
+    }
+
+    @Test
+    void shouldHandleCarriageReturnsCommentsAndMultilineData() {
+        feed(": keep-alive\r\nevent: message\r\ndata: first\r\ndata: second\r\n\r\ndata: third\r\r");
+
+        assertEquals(List.of("first\nsecond", "third"), events);
+    }
+
+    @Test
+    void shouldExposeTheNameOfEachEvent() {
+        feed("event: thread.run.created\ndata: {}\n\ndata: {}\n\n"
+                + "event:error\ndata: x\n\nevent: done\ndata: [DONE]\n\n");
+
+        assertEquals(Arrays.asList("thread.run.created", null, "error"), eventNames);
+        assertEquals(1, doneCount);
+        assertNull(parser.getEventName());
+    }
+
+    @Test
+    void shouldStopAtTheDoneMarker() {
+        feed("data: {}\n\ndata: [DONE]\n\ndata: ignored\n\n");
+
+        assertEquals(List.of("{}"), events);
+        assertEquals(1, doneCount);
+        assertTrue(parser.isDone());
+    }
+
+    @Test
+    void shouldDispatchPendingEventWhenFinished() {
+        feed("data: last");
+        assertTrue(events.isEmpty());
+
+        parser.finish();
+
+        assertEquals(List.of("last"), events);
+        assertFalse(parser.isDone());
+    }
+
+    private void feed(String text) {
+        var bytes = text.getBytes(StandardCharsets.UTF_8);
+        parser.feed(bytes, 0, bytes.length);
+    }
+
+}
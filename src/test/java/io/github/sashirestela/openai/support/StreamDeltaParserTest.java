@@ -0,0 +1,171 @@
+package io.github.sashirestela.openai.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.sashirestela.openai.exception.SimpleOpenAIException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class StreamDeltaParserTest {
+
+    StreamDeltaParser deltaParser = new StreamDeltaParser();
+    StringBuilder content = new StringBuilder();
+    String finishReason;
+    int totalTokens;
+
+    Consumer<StreamDelta> handler = delta -> {
+        if (delta.isUsage()) {
+            totalTokens = delta.getTotalTokens();
+            return;
+        }
+        delta.getContent().appendTo(content);
+        if (delta.getFinishReason() != null) {
+            finishReason = delta.getFinishReason();
+        }
+    };
+
+    @Test
+    void shouldRebuildChatContentAndUsage() throws IOException {
+        var bytes = Files.readAllBytes(Path.of("src/test/resources/chatcompletions_create_stream.txt"));
+        var sseParser = new SseParser((data, length) -> deltaParser.parse(data, 0, length, handler));
+
+        for (int i = 0; i < bytes.length; i += 13) {
+            sseParser.feed(ByteBuffer.wrap(bytes, i, Math.min(13, bytes.length - i)).slice());
+        }
+
+        assertEquals(expectedContent(bytes, "delta", "content"), content.toString());
+        assertEquals("stop", finishReason);
+        assertEquals(102, totalTokens);
+        assertTrue(sseParser.isDone());
+    }
+
+    @Test
+    void shouldReadTheTextOfLegacyCompletions() throws IOException {
+        var bytes = Files.readAllBytes(Path.of("src/test/resources/completions_create_stream.txt"));
+        var sseParser = new SseParser((data, length) -> deltaParser.parse(data, 0, length, handler));
+
+        sseParser.feed(bytes, 0, bytes.length);
+
+        assertEquals(expectedContent(bytes, null, "text"), content.toString());
+    }
+
+    @Test
+    void shouldExtractToolCallFragments() {
+        var chunk = "{\"choices\":[{\"index\":1,\"delta\":{\"role\":\"assistant\",\"tool_calls\":["
+                + "{\"index\":0,\"id\":\"call_1\",\"type\":\"function\","
+                + "\"function\":{\"name\":\"f\",\"arguments\":\"\"}},"
+                + "{\"index\":1,\"function\":{\"arguments\":\"{\\\"x\\\":\"}}]},\"finish_reason\":null}]}";
+        var bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        var seen = new int[1];
+
+        deltaParser.parse(bytes, 0, bytes.length, delta -> {
+            seen[0]++;
+            assertEquals(1, delta.getChoiceIndex());
+            assertEquals("assistant", delta.getRole());
+            assertEquals(2, delta.getToolCallCount());
+            assertEquals("call_1", delta.getToolCall(0).getId().toString());
+            assertEquals("f", delta.getToolCall(0).getName().toString());
+            assertEquals(1, delta.getToolCall(1).getIndex());
+            assertEquals("{\"x\":", delta.getToolCall(1).getArguments().toString());
+        });
+
+        assertEquals(1, seen[0]);
+    }
+
+    @Test
+    void shouldRecoverAfterAMalformedChunk() {
+        var broken = "{\"choices\":[{\"index\":0,".getBytes(StandardCharsets.UTF_8);
+        var valid = "{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"ok\"}}]}".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(SimpleOpenAIException.class, () -> deltaParser.parse(broken, 0, broken.length, handler));
+        deltaParser.parse(valid, 0, valid.length, handler);
+
+        assertEquals("ok", content.toString());
+    }
+
+    /**
+     * Benchmark of the allocations per chunk, compared with reading each chunk as a string and a
+     * Json tree, as the line-based streams do before binding the {@code Chat} object. It depends
+     * on the JIT and the agents attached to the JVM, so it only runs with the 'benchmark' profile.
+     */
+    @Test
+    @Tag("benchmark")
+    void shouldAllocateAlmostNothingPerChunk() {
+        var threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        var allocations = (com.sun.management.ThreadMXBean) threadBean;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        var chunk = ("data: {\"id\":\"chatcmpl-9MEw3bKUxW4tUpBe9ajJdN57u0nmo\",\"object\":\"chat.completion.chunk\","
+                + "\"created\":1715087655,\"model\":\"gpt-4-1106-preview\",\"system_fingerprint\":null,"
+                + "\"choices\":[{\"index\":0,\"delta\":{\"content\":\" token\"},\"logprobs\":null,"
+                + "\"finish_reason\":null}],\"usage\":null}\n\n").getBytes(StandardCharsets.UTF_8);
+        var buffer = ByteBuffer.wrap(chunk);
+        Consumer<StreamDelta> sink = delta -> {
+            if (content.length() > 1 << 16) {
+                content.setLength(0);
+            }
+            delta.getContent().appendTo(content);
+        };
+        var sseParser = new SseParser((data, length) -> deltaParser.parse(data, 0, length, sink));
+        var objectMapper = new ObjectMapper();
+        Runnable legacy = () -> {
+            try {
+                var line = new String(chunk, 6, chunk.length - 8, StandardCharsets.UTF_8);
+                content.append(objectMapper.readTree(line).path("choices").path(0).path("delta").path("content"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        var bytesPerChunk = bytesPerOperation(allocations, () -> sseParser.feed(buffer));
+        var legacyBytesPerChunk = bytesPerOperation(allocations, legacy);
+
+        assertTrue(bytesPerChunk < 16, "Bytes per chunk: " + bytesPerChunk);
+        assertTrue(bytesPerChunk * 50 < legacyBytesPerChunk,
+                "Bytes per chunk: " + bytesPerChunk + ", legacy: " + legacyBytesPerChunk);
+    }
+
+    private double bytesPerOperation(com.sun.management.ThreadMXBean allocations, Runnable operation) {
+        final int WARM_UP = 20_000;
+        final int MEASURED = 100_000;
+        for (int i = 0; i < WARM_UP; i++) {
+            operation.run();
+        }
+        var threadId = Thread.currentThread().getId();
+        var before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED; i++) {
+            operation.run();
+        }
+        return (double) (allocations.getThreadAllocatedBytes(threadId) - before) / MEASURED;
+    }
+
+    private String expectedContent(byte[] bytes, String parent, String field) throws IOException {
+        var objectMapper = new ObjectMapper();
+        var expected = new StringBuilder();
+        for (var line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+            if (!line.startsWith("data: {")) {
+                continue;
+            }
+            for (var choice : objectMapper.readTree(line.substring(6)).path("choices")) {
+                var node = parent == null ? choice.path(field) : choice.path(parent).path(field);
+                expected.append(node.asText(""));
+            }
+        }
+        return expected.toString();
+    }
+
+}
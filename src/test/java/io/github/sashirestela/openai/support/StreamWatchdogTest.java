@@ -0,0 +1,166 @@
+package io.github.sashirestela.openai.support;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.sashirestela.openai.OpenAI;
+import io.github.sashirestela.openai.domain.chat.Chat;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.UserMessage;
+import io.github.sashirestela.openai.domain.chat.ChatRequest;
+import io.github.sashirestela.openai.domain.completion.Completion;
+import io.github.sashirestela.openai.domain.completion.CompletionRequest;
+import io.github.sashirestela.openai.exception.DeadlineExceededException;
+import io.github.sashirestela.openai.exception.DeadlineExceededException.Phase;
+import io.github.sashirestela.openai.support.StreamWatchdog.Fallback;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StreamWatchdogTest {
+
+    OpenAI.ChatCompletions chatService = mock(OpenAI.ChatCompletions.class);
+    OpenAI.Completions completionService = mock(OpenAI.Completions.class);
+    ChatRequest chatRequest = ChatRequest.builder()
+            .model("gpt-4o-mini")
+            .message(UserMessage.of("Tell me a story."))
+            .build();
+
+    @Test
+    void shouldRestartAChatStreamStalledBeforeItsFirstChunk() {
+        when(chatService.createStream(any(ChatRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(StreamWatchdogTest.<Chat>stalledAfter()),
+                CompletableFuture.completedFuture(Stream.of(chat("Once "), chat("upon a time."))));
+        var watchdog = StreamWatchdog.builder().stallTimeout(Duration.ofSeconds(1)).build();
+
+        var text = watchdog.createStream(chatService, chatRequest)
+                .join()
+                .map(Chat::firstContent)
+                .collect(Collectors.joining());
+
+        assertEquals("Once upon a time.", text);
+        var captor = ArgumentCaptor.forClass(ChatRequest.class);
+        verify(chatService, times(2)).createStream(captor.capture());
+        assertSame(chatRequest, captor.getAllValues().get(1));
+    }
+
+    @Test
+    void shouldRestartAStalledChatStreamWithoutStreamingAsOneChunk() {
+        when(chatService.createStream(any(ChatRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(StreamWatchdogTest.<Chat>stalledAfter()));
+        when(chatService.create(any(ChatRequest.class))).thenReturn(CompletableFuture.completedFuture(
+                json("{\"object\":\"chat.completion\",\"choices\":[{\"index\":0,\"message\":{\"role\":"
+                        + "\"assistant\",\"tool_calls\":[{\"id\":\"call_1\",\"type\":\"function\","
+                        + "\"function\":{\"name\":\"get_weather\",\"arguments\":\"{}\"}}]},"
+                        + "\"finish_reason\":\"tool_calls\"}]}", Chat.class)));
+        var watchdog = StreamWatchdog.builder()
+                .stallTimeout(Duration.ofSeconds(1))
+                .fallback(Fallback.NON_STREAM)
+                .build();
+
+        var chunks = watchdog.createStream(chatService, chatRequest).join().collect(Collectors.toList());
+
+        assertEquals(1, chunks.size());
+        assertEquals("chat.completion.chunk", chunks.get(0).getObject());
+        assertEquals(0, chunks.get(0).firstMessage().getToolCalls().get(0).getIndex());
+        assertEquals("tool_calls", chunks.get(0).getChoices().get(0).getFinishReason());
+    }
+
+    @Test
+    void shouldFailAChatStreamStalledAfterItsFirstChunk() {
+        when(chatService.createStream(any(ChatRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(stalledAfter(chat("Once "), chat("upon "))));
+        var watchdog = StreamWatchdog.builder().stallTimeout(Duration.ofSeconds(1)).build();
+
+        var chatStream = watchdog.createStream(chatService, chatRequest).join();
+
+        assertThrows(UncheckedIOException.class, () -> chatStream.forEach(chat -> {
+        }));
+        verify(chatService, times(1)).createStream(any(ChatRequest.class));
+    }
+
+    @Test
+    void shouldContinueAStalledCompletionStreamWithoutStreaming() {
+        var completionRequest = CompletionRequest.builder()
+                .model("gpt-3.5-turbo-instruct")
+                .prompt("Tell me a story: ")
+                .build();
+        when(completionService.createStream(any(CompletionRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(stalledAfter(completion("Once "), completion("upon "))));
+        when(completionService.create(any(CompletionRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(completion("a time.")));
+        var watchdog = StreamWatchdog.builder()
+                .stallTimeout(Duration.ofSeconds(1))
+                .fallback(Fallback.NON_STREAM)
+                .build();
+
+        var text = watchdog.createStream(completionService, completionRequest)
+                .join()
+                .map(completion -> completion.getChoices().get(0).getText())
+                .collect(Collectors.joining());
+
+        assertEquals("Once upon a time.", text);
+        var captor = ArgumentCaptor.forClass(CompletionRequest.class);
+        verify(completionService).create(captor.capture());
+        assertEquals("Tell me a story: Once upon ", captor.getValue().getPrompt());
+    }
+
+    @Test
+    void shouldFailWithTheStallWhenTheOutputCannotBeContinued() {
+        var completionRequest = CompletionRequest.builder()
+                .model("gpt-3.5-turbo-instruct")
+                .prompt("Tell me a story: ")
+                .n(2)
+                .build();
+        when(completionService.createStream(any(CompletionRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(stalledAfter(completion("Once "))));
+        var watchdog = StreamWatchdog.builder().stallTimeout(Duration.ofSeconds(1)).build();
+
+        var completionStream = watchdog.createStream(completionService, completionRequest).join();
+
+        var exception = assertThrows(UncheckedIOException.class, () -> completionStream.forEach(completion -> {
+        }));
+        assertEquals(Phase.IDLE, ((DeadlineExceededException) exception.getCause().getCause()).getPhase());
+        verify(completionService, times(1)).createStream(any(CompletionRequest.class));
+        verify(completionService, never()).create(any(CompletionRequest.class));
+    }
+
+    @SafeVarargs
+    private static <T> Stream<T> stalledAfter(T... chunks) {
+        return Stream.concat(Stream.of(chunks), Stream.generate(() -> {
+            throw new UncheckedIOException(
+                    new IOException(new DeadlineExceededException(Phase.IDLE, Duration.ofSeconds(1))));
+        }));
+    }
+
+    private static Chat chat(String content) {
+        return json("{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + content + "\"}}]}", Chat.class);
+    }
+
+    private static Completion completion(String text) {
+        return json("{\"choices\":[{\"index\":0,\"text\":\"" + text + "\"}]}", Completion.class);
+    }
+
+    private static <T> T json(String json, Class<T> type) {
+        try {
+            return new ObjectMapper().readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
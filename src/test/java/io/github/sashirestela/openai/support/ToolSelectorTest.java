@@ -0,0 +1,136 @@
+package io.github.sashirestela.openai.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.sashirestela.cleverclient.support.Configurator;
+import io.github.sashirestela.openai.OpenAI;
+import io.github.sashirestela.openai.common.function.FunctionDef;
+import io.github.sashirestela.openai.common.function.FunctionExecutor;
+import io.github.sashirestela.openai.common.function.Functional;
+import io.github.sashirestela.openai.common.tool.Tool;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.SystemMessage;
+import io.github.sashirestela.openai.domain.chat.ChatMessage.UserMessage;
+import io.github.sashirestela.openai.domain.embedding.Embedding;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingRequest;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingTestingHelper;
+import io.github.sashirestela.openai.domain.embedding.EmbeddingVector;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ToolSelectorTest {
+
+    static final List<String> TOPICS = List.of("weather", "time", "email");
+
+    OpenAI.Embeddings embeddings = mock(OpenAI.Embeddings.class);
+    FunctionExecutor functionExecutor = new FunctionExecutor(List.of(
+            function("get_weather", "Get the weather forecast of a city"),
+            function("get_time", "Get the local time of a city"),
+            function("send_email", "Send an email to a contact"),
+            function("handoff_to_human", "Transfer the conversation to a human agent")));
+    ToolSelector toolSelector = ToolSelector.builder()
+            .embeddings(embeddings)
+            .model("text-embedding-3-small")
+            .topK(1)
+            .pinnedFunctions(Set.of("handoff_to_human"))
+            .build();
+
+    @BeforeAll
+    static void setup() {
+        Configurator.builder().objectMapper(new ObjectMapper()).build();
+    }
+
+    @BeforeEach
+    void init() {
+        when(embeddings.createVector(any(EmbeddingRequest.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(embed(invocation.getArgument(0))));
+    }
+
+    @Test
+    void shouldSelectThePinnedToolsAndTheClosestOnes() {
+        var messages = List.of(
+                SystemMessage.of("You are a helpful assistant."),
+                UserMessage.of("What is the weather like in Lima?"));
+
+        var tools = toolSelector.select(functionExecutor, messages).join();
+
+        assertEquals(List.of("handoff_to_human", "get_weather"), names(tools));
+    }
+
+    @Test
+    void shouldEmbedTheToolsOnlyOnce() {
+        toolSelector.select(functionExecutor, "What time is it in Tokyo?").join();
+        var tools = toolSelector.select(functionExecutor, "Send an email to Ana").join();
+
+        assertEquals(List.of("handoff_to_human", "send_email"), names(tools));
+        var captor = ArgumentCaptor.forClass(EmbeddingRequest.class);
+        verify(embeddings, times(2)).createVector(captor.capture());
+        assertEquals(4, ((List<?>) captor.getAllValues().get(0).getInput()).size());
+        assertEquals(1, ((List<?>) captor.getAllValues().get(1).getInput()).size());
+    }
+
+    @Test
+    void shouldShareTheEmbeddingOfTheToolsBetweenConcurrentCalls() {
+        var pending = new CompletableFuture<Embedding<EmbeddingVector>>();
+        when(embeddings.createVector(any(EmbeddingRequest.class)))
+                .thenReturn(pending)
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(embed(invocation.getArgument(0))));
+
+        var first = toolSelector.select(functionExecutor, "What is the weather like in Lima?");
+        var second = toolSelector.select(functionExecutor, "Send an email to Ana");
+
+        assertFalse(second.isDone());
+        var captor = ArgumentCaptor.forClass(EmbeddingRequest.class);
+        verify(embeddings, times(2)).createVector(captor.capture());
+        assertEquals(1, ((List<?>) captor.getAllValues().get(1).getInput()).size());
+        pending.complete(embed(captor.getAllValues().get(0)));
+        assertEquals(List.of("handoff_to_human", "get_weather"), names(first.join()));
+        assertEquals(List.of("handoff_to_human", "send_email"), names(second.join()));
+    }
+
+    private static List<String> names(List<Tool> tools) {
+        return tools.stream().map(tool -> tool.getFunction().getName()).collect(Collectors.toList());
+    }
+
+    private static FunctionDef function(String name, String description) {
+        return FunctionDef.builder().name(name).description(description).functionalClass(NoOp.class).build();
+    }
+
+    /**
+     * Embeds each text on one dimension per topic it mentions, and a last one for everything else.
+     */
+    private static Embedding<EmbeddingVector> embed(EmbeddingRequest request) {
+        return EmbeddingTestingHelper.embed(request, input -> {
+            var text = ((String) input).toLowerCase();
+            var vector = new float[TOPICS.size() + 1];
+            for (var i = 0; i < TOPICS.size(); i++) {
+                vector[i] = text.contains(TOPICS.get(i)) ? 1 : 0;
+            }
+            vector[TOPICS.size()] = TOPICS.stream().anyMatch(text::contains) ? 0 : 1;
+            return vector;
+        });
+    }
+
+    static class NoOp implements Functional {
+
+        @Override
+        public Object execute() {
+            return "";
+        }
+
+    }
+
+}